@@ -18,7 +18,7 @@
 package com.monarchapis.client.authentication;
 
 public class AccessTokenHolder {
-	private static InheritableThreadLocal<String> accessToken;
+	private static final InheritableThreadLocal<String> accessToken = new InheritableThreadLocal<String>();
 
 	public static String get() {
 		return accessToken.get();
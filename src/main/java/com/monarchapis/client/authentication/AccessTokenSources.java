@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.authentication;
+
+import com.monarchapis.client.rest.BaseClient;
+import com.monarchapis.client.rest.RestException;
+
+final class AccessTokenSources {
+	private AccessTokenSources() {
+	}
+
+	/**
+	 * Gets the access token for the client's request, looking it up by the
+	 * client's principal if the source supports it.
+	 * 
+	 * @throws RestException
+	 *             if the source is a {@link PrincipalAccessTokenSource} and the
+	 *             client has no principal
+	 */
+	static String getAccessToken(AccessTokenSource accessTokenSource, BaseClient<?> client) {
+		if (accessTokenSource instanceof PrincipalAccessTokenSource) {
+			String principal = client.getPrincipal();
+
+			if (principal == null) {
+				throw new RestException("A principal is required to look up the access token");
+			}
+
+			return ((PrincipalAccessTokenSource) accessTokenSource).getAccessToken(principal);
+		}
+
+		return accessTokenSource.getAccessToken();
+	}
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.authentication;
+
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.monarchapis.client.rest.OAuthToken;
+
+/**
+ * A size-bounded store of access tokens keyed by principal.
+ * 
+ * <p>
+ * Lookups are lock-free reads of a concurrent map; updates are serialized so
+ * that the map and the expiry order stay consistent. When the store grows past
+ * its maximum size, the tokens closest to expiry are evicted first. Unlike
+ * {@link AccessTokenHolder}, the principal is passed explicitly with each
+ * request, so tokens are not tied to the calling thread.
+ * </p>
+ */
+public class AccessTokenStore implements PrincipalAccessTokenSource {
+	private final int maximumSize;
+
+	private final ConcurrentMap<String, Entry> tokens = new ConcurrentHashMap<String, Entry>();
+
+	/** Entries ordered by expiry, used for eviction. Guarded by this. */
+	private final TreeSet<Entry> expiryOrder = new TreeSet<Entry>();
+
+	/** Guarded by this. */
+	private long sequence;
+
+	public AccessTokenStore(int maximumSize) {
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("maximumSize must be positive");
+		}
+
+		this.maximumSize = maximumSize;
+	}
+
+	/**
+	 * Returns <tt>null</tt>; tokens are only available by principal.
+	 */
+	@Override
+	public String getAccessToken() {
+		return null;
+	}
+
+	@Override
+	public String getAccessToken(String principal) {
+		OAuthToken token = getToken(principal);
+
+		return token != null ? token.getAccessToken() : null;
+	}
+
+	/**
+	 * Gets the unexpired token for the principal.
+	 * 
+	 * @param principal
+	 *            the principal
+	 * @return the token or <tt>null</tt> if there is none or it has expired
+	 */
+	public OAuthToken getToken(String principal) {
+		if (principal == null) {
+			throw new IllegalArgumentException("principal must not be null");
+		}
+
+		Entry entry = tokens.get(principal);
+
+		if (entry == null) {
+			return null;
+		}
+
+		if (entry.token.isAccessTokenExpired()) {
+			remove(entry);
+			return null;
+		}
+
+		return entry.token;
+	}
+
+	public void put(String principal, OAuthToken token) {
+		if (principal == null) {
+			throw new IllegalArgumentException("principal must not be null");
+		}
+
+		if (token == null) {
+			throw new IllegalArgumentException("token must not be null");
+		}
+
+		synchronized (this) {
+			Entry entry = new Entry(principal, token, ++sequence);
+			Entry previous = tokens.put(principal, entry);
+			expiryOrder.add(entry);
+
+			if (previous != null) {
+				expiryOrder.remove(previous);
+			}
+
+			evict();
+		}
+	}
+
+	public synchronized void remove(String principal) {
+		Entry entry = tokens.remove(principal);
+
+		if (entry != null) {
+			expiryOrder.remove(entry);
+		}
+	}
+
+	public int size() {
+		return tokens.size();
+	}
+
+	public synchronized void clear() {
+		tokens.clear();
+		expiryOrder.clear();
+	}
+
+	public int getMaximumSize() {
+		return maximumSize;
+	}
+
+	private synchronized void remove(Entry entry) {
+		if (tokens.remove(entry.principal, entry)) {
+			expiryOrder.remove(entry);
+		}
+	}
+
+	private void evict() {
+		while (tokens.size() > maximumSize) {
+			Entry eldest = expiryOrder.pollFirst();
+
+			if (eldest == null) {
+				return;
+			}
+
+			tokens.remove(eldest.principal, eldest);
+		}
+	}
+
+	private static final class Entry implements Comparable<Entry> {
+		private final String principal;
+		private final OAuthToken token;
+		private final long expiry;
+		private final long sequence;
+
+		private Entry(String principal, OAuthToken token, long sequence) {
+			this.principal = principal;
+			this.token = token;
+			this.sequence = sequence;
+
+			long expiry = token.getAccessTokenExpiry();
+			this.expiry = expiry == OAuthToken.NO_EXPIRATION ? Long.MAX_VALUE : expiry;
+		}
+
+		@Override
+		public int compareTo(Entry o) {
+			if (expiry != o.expiry) {
+				return expiry < o.expiry ? -1 : 1;
+			}
+
+			return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+		}
+	}
+}
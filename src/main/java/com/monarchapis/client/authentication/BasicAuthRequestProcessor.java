@@ -18,21 +18,21 @@
 package com.monarchapis.client.authentication;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.StringUtils;
 
 import com.monarchapis.client.rest.BaseClient;
 import com.monarchapis.client.rest.RequestProcessor;
 
 public class BasicAuthRequestProcessor implements RequestProcessor {
-	private String username;
-	private String password;
+	private final String authorization;
 
 	public BasicAuthRequestProcessor(String username, String password) {
-		this.username = username;
-		this.password = password;
+		// The credentials never change, so the header value is encoded once.
+		this.authorization = "Basic " + Base64.encodeBase64String(StringUtils.getBytesUtf8(username + ":" + password));
 	}
 
 	@Override
 	public void processRequest(BaseClient<?> client) {
-		client.addHeader("Authorization", "Basic " + Base64.encodeBase64String((username + ":" + password).getBytes()));
+		client.setHeader("Authorization", authorization);
 	}
 }
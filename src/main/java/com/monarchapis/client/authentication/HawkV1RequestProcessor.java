@@ -17,26 +17,51 @@
 
 package com.monarchapis.client.authentication;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
+import java.security.DigestOutputStream;
 import java.security.MessageDigest;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.apache.commons.codec.binary.Base64;
-import org.apache.commons.lang3.RandomStringUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.utils.DateUtils;
 
 import com.monarchapis.client.rest.BaseClient;
 import com.monarchapis.client.rest.RequestProcessor;
+import com.monarchapis.client.rest.ResponseProcessor;
+import com.monarchapis.client.rest.RestResponse;
 import com.monarchapis.common.util.HmacUtils;
 
-public class HawkV1RequestProcessor implements RequestProcessor {
+public class HawkV1RequestProcessor implements RequestProcessor, ResponseProcessor {
+	private static final Pattern AUTHENTICATE_ATTRIBUTE = Pattern.compile("(\\w+)=\"([^\"]*)\"");
+
+	/**
+	 * Offsets learned from Date headers within this many seconds of the
+	 * current offset are ignored to avoid churn.
+	 */
+	private static final long DATE_OFFSET_TOLERANCE = 1;
+
+	/** Server clock offsets in seconds, keyed by host and port. */
+	private final ConcurrentMap<String, Long> serverTimeOffsets = new ConcurrentHashMap<String, Long>();
+
 	private String apiKey;
 	private String sharedSecret;
 	private String algorithm;
 	private boolean requestPayloadVerification = true;
 	private AccessTokenSource accessTokenSource;
+	private NonceGenerator nonceGenerator = new RandomNonceGenerator();
 
 	public HawkV1RequestProcessor(String apiKey, String sharedSecret, String algorithm) {
 		this(apiKey, sharedSecret, algorithm, null);
@@ -62,54 +87,273 @@ public class HawkV1RequestProcessor implements RequestProcessor {
 		this.accessTokenSource = accessTokenSource;
 	}
 
+	public NonceGenerator getNonceGenerator() {
+		return nonceGenerator;
+	}
+
+	public void setNonceGenerator(NonceGenerator nonceGenerator) {
+		if (nonceGenerator == null) {
+			throw new IllegalArgumentException("nonceGenerator must not be null");
+		}
+
+		this.nonceGenerator = nonceGenerator;
+	}
+
 	@Override
 	public void processRequest(BaseClient<?> client) {
+		sign(client, requestPayloadVerification ? getHawkHash(client) : null);
+	}
+
+	/**
+	 * Signs the client again for a resend. The payload has not changed, so the
+	 * hash from the previous signature is reused rather than hashing the body
+	 * again, which would read a file body on the I/O thread of the asynchronous
+	 * client.
+	 */
+	private void resign(BaseClient<?> client) {
+		String payloadHash = null;
+
+		if (requestPayloadVerification) {
+			payloadHash = getSignedPayloadHash(client.getHeader("Authorization"));
+
+			if (payloadHash == null) {
+				payloadHash = getHawkHash(client);
+			}
+		}
+
+		sign(client, payloadHash);
+	}
+
+	private void sign(BaseClient<?> client, String payloadHash) {
 		String accessToken = null;
 
 		if (accessTokenSource != null) {
-			accessToken = accessTokenSource.getAccessToken();
+			accessToken = AccessTokenSources.getAccessToken(accessTokenSource, client);
 		}
 
-		String payloadHash = requestPayloadVerification ? getHawkHash(client) : null;
 		String header = getHawkHeader(client, accessToken, payloadHash, null);
 		client.authorization(header);
+		client.addResponseProcessor(this);
 	}
 
-	private static String getHawkHash(BaseClient<?> client) {
+	/**
+	 * Extracts the payload hash from a Hawk authorization header.
+	 * 
+	 * @return the hash or <tt>null</tt> if the header is not a Hawk header
+	 *         with one
+	 */
+	private static String getSignedPayloadHash(String authorization) {
+		if (authorization == null || !StringUtils.startsWithIgnoreCase(authorization, "Hawk")) {
+			return null;
+		}
+
+		Matcher matcher = AUTHENTICATE_ATTRIBUTE.matcher(authorization);
+
+		while (matcher.find()) {
+			if ("hash".equals(matcher.group(1))) {
+				return matcher.group(2);
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Learns the server's clock offset from the response. A stale timestamp
+	 * rejection carries the server time in the <code>WWW-Authenticate</code>
+	 * header, in which case the request is re-signed and a resend is
+	 * requested. Otherwise the offset is taken from the <code>Date</code>
+	 * header. A request whose compressed body was rejected is re-signed so the
+	 * uncompressed resend carries a fresh nonce. Nothing is re-signed when the
+	 * client will not resend the request.
+	 */
+	@Override
+	public boolean processResponse(BaseClient<?> client, RestResponse response) {
+		String server = getServerKey(URI.create(client.getUrl()));
+		long now = System.currentTimeMillis() / 1000;
+
+		if (response.getStatusCode() == 415 && client.isRequestCompressed()) {
+			if (!client.isResendAllowed()) {
+				return false;
+			}
+
+			resign(client);
+
+			return true;
+		}
+
+		if (response.getStatusCode() == 401) {
+			Long serverTime = getStaleTimestamp(response.getHeader("WWW-Authenticate"));
+
+			if (serverTime == null) {
+				return false;
+			}
+
+			serverTimeOffsets.put(server, serverTime - now);
+
+			if (!client.isResendAllowed()) {
+				return false;
+			}
+
+			resign(client);
+
+			return true;
+		}
+
+		String date = response.getHeader("Date");
+
+		if (date != null) {
+			Date serverDate = DateUtils.parseDate(date);
+
+			if (serverDate != null) {
+				long offset = serverDate.getTime() / 1000 - now;
+				Long current = serverTimeOffsets.get(server);
+
+				if (current == null ? offset != 0 : Math.abs(current - offset) > DATE_OFFSET_TOLERANCE) {
+					serverTimeOffsets.put(server, offset);
+				}
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * Extracts the server timestamp from a Hawk stale timestamp challenge,
+	 * provided its <code>tsm</code> was signed with the shared secret.
+	 * 
+	 * @return the server timestamp or <tt>null</tt> if not present or not
+	 *         authentic
+	 */
+	private Long getStaleTimestamp(String authenticate) {
+		if (authenticate == null || !StringUtils.startsWithIgnoreCase(authenticate, "Hawk")) {
+			return null;
+		}
+
+		String ts = null;
+		String tsm = null;
+		Matcher matcher = AUTHENTICATE_ATTRIBUTE.matcher(authenticate);
+
+		while (matcher.find()) {
+			if ("ts".equals(matcher.group(1))) {
+				ts = matcher.group(2);
+			} else if ("tsm".equals(matcher.group(1))) {
+				tsm = matcher.group(2);
+			}
+		}
+
+		if (ts == null || tsm == null || !StringUtils.isNumeric(ts)) {
+			return null;
+		}
+
 		try {
-			StringBuilder sb = new StringBuilder();
-			String httpContent = client.getBody();
-			String mimeType = "";
-			String content = "";
+			byte[] expected = Base64.encodeBase64(hmac("hawk.1.ts\n" + ts + "\n"));
 
-			if (httpContent != null) {
-				mimeType = StringUtils.trimToEmpty(StringUtils.substringBefore(client.getContentType(), ";"));
-				content = httpContent;
+			if (!MessageDigest.isEqual(expected, tsm.getBytes("UTF-8"))) {
+				return null;
 			}
+		} catch (Exception e) {
+			throw new RuntimeException("Could not verify hawk timestamp", e);
+		}
 
-			sb.append("hawk.1.payload\n");
-			sb.append(mimeType);
-			sb.append("\n");
-			sb.append(content);
-			sb.append("\n");
+		return Long.parseLong(ts);
+	}
+
+	private static String getServerKey(URI uri) {
+		return uri.getHost() + ":" + uri.getPort();
+	}
+
+	private byte[] hmac(String data) throws Exception {
+		String algo = HmacUtils.getHMacAlgorithm(algorithm);
+		byte[] key = sharedSecret.getBytes();
+		SecretKeySpec signingKey = new SecretKeySpec(key, algo);
+
+		Mac mac = Mac.getInstance(algo);
+		mac.init(signingKey);
 
+		// compute the hmac on input data bytes
+		return mac.doFinal(data.getBytes("UTF-8"));
+	}
+
+	/**
+	 * Hashes the payload before any request compression is applied, since
+	 * servers verify it after decoding the body.
+	 */
+	private static String getHawkHash(BaseClient<?> client) {
+		try {
 			MessageDigest digest = MessageDigest.getInstance("SHA-256");
-			byte[] hash = digest.digest(sb.toString().getBytes("UTF-8"));
-			return Base64.encodeBase64String(hash);
+			HttpEntity entity = client.getEntity();
+
+			if (entity != null) {
+				updatePayloadHash(digest, getMimeType(client, entity), entity);
+			} else {
+				String httpContent = client.getBody();
+				String mimeType = "";
+				String content = "";
+
+				if (httpContent != null) {
+					mimeType = getMimeType(client, null);
+					content = httpContent;
+				}
+
+				digest.update(("hawk.1.payload\n" + mimeType + "\n" + content + "\n").getBytes("UTF-8"));
+			}
+
+			return Base64.encodeBase64String(digest.digest());
 		} catch (Exception e) {
 			throw new RuntimeException("Could not create hawk hash", e);
 		}
 	}
 
+	/**
+	 * Feeds the Hawk payload normalization string into the digest. The entity
+	 * writes its content into the digest as it would into the connection, so
+	 * large bodies (e.g. files) and serialized values are hashed in constant
+	 * memory.
+	 */
+	private static void updatePayloadHash(MessageDigest digest, String mimeType, HttpEntity entity)
+			throws IOException {
+		if (!entity.isRepeatable()) {
+			throw new IllegalStateException("Cannot hash a non-repeatable request entity");
+		}
+
+		digest.update(("hawk.1.payload\n" + mimeType + "\n").getBytes("UTF-8"));
+
+		OutputStream content = new DigestOutputStream(NullOutputStream.NULL_OUTPUT_STREAM, digest);
+
+		try {
+			entity.writeTo(content);
+		} finally {
+			IOUtils.closeQuietly(content);
+		}
+
+		digest.update((byte) '\n');
+	}
+
+	/**
+	 * Returns the mime type that will be sent on the wire: the explicit
+	 * Content-Type header if one was set, otherwise the entity's content type.
+	 */
+	private static String getMimeType(BaseClient<?> client, HttpEntity entity) {
+		String contentType = client.getContentType();
+
+		if (contentType == null && entity != null && entity.getContentType() != null) {
+			contentType = entity.getContentType().getValue();
+		}
+
+		return StringUtils.trimToEmpty(StringUtils.substringBefore(contentType, ";"));
+	}
+
 	private String getHawkHeader(BaseClient<?> client, String accessToken, String payloadHash, String extData) {
 		try {
 			StringBuilder sb = new StringBuilder();
 
-			long ts = System.currentTimeMillis() / 1000;
-			String nonce = RandomStringUtils.randomAlphanumeric(6);
-
 			URI uri = URI.create(client.getUrl());
 
+			Long offset = serverTimeOffsets.get(getServerKey(uri));
+			long ts = System.currentTimeMillis() / 1000 + (offset != null ? offset : 0);
+			String nonce = nonceGenerator.generateNonce();
+
 			sb.append("hawk.1.header\n");
 			sb.append(ts);
 			sb.append("\n");
@@ -149,15 +393,7 @@ public class HawkV1RequestProcessor implements RequestProcessor {
 
 			String stringData = sb.toString();
 
-			String algo = HmacUtils.getHMacAlgorithm(algorithm);
-			byte[] key = sharedSecret.getBytes();
-			SecretKeySpec signingKey = new SecretKeySpec(key, algo);
-
-			Mac mac256 = Mac.getInstance(algo);
-			mac256.init(signingKey);
-
-			// compute the hmac on input data bytes
-			byte[] hash = mac256.doFinal(stringData.getBytes("UTF-8"));
+			byte[] hash = hmac(stringData);
 			String mac = Base64.encodeBase64String(hash);
 
 			return "Hawk id=\"" + (accessToken != null ? accessToken : apiKey) + "\", ts=\"" + ts + "\", nonce=\""
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.authentication;
+
+import com.monarchapis.client.rest.OAuthToken;
+
+/**
+ * Obtains OAuth tokens from a token endpoint.
+ */
+public interface OAuthTokenProvider {
+	/**
+	 * Requests a new token.
+	 * 
+	 * @param current
+	 *            the current token, whose refresh token may be used, or
+	 *            <tt>null</tt> if there is none
+	 * @return the new token
+	 */
+	public OAuthToken getToken(OAuthToken current);
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.authentication;
+
+/**
+ * An access token source that holds tokens for multiple principals. Request
+ * processors look tokens up using the principal set on the client.
+ * 
+ * @see com.monarchapis.client.rest.BaseClient#principal(String)
+ */
+public interface PrincipalAccessTokenSource extends AccessTokenSource {
+	/**
+	 * Gets the access token for the principal. Request processors fail the
+	 * request rather than calling this method when the client has no
+	 * principal.
+	 * 
+	 * @param principal
+	 *            the principal, never <tt>null</tt>
+	 * @return the access token or <tt>null</tt> if there is none
+	 */
+	public String getAccessToken(String principal);
+}
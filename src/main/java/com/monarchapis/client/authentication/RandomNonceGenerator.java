@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.authentication;
+
+import java.security.SecureRandom;
+import java.util.Random;
+
+/**
+ * Generates alphanumeric nonces using a random number generator per thread,
+ * so that concurrent signing threads do not contend on a shared seed.
+ */
+public class RandomNonceGenerator implements NonceGenerator {
+	private static final char[] ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz"
+			.toCharArray();
+
+	/** The number of characters drawn from a single random integer. */
+	private static final int CHARS_PER_INT = 5;
+
+	/** ALPHABET.length ^ CHARS_PER_INT, which fits in a positive int. */
+	private static final int INT_BOUND = 916132832;
+
+	private final int length;
+
+	private final ThreadLocal<Random> random;
+
+	public RandomNonceGenerator() {
+		this(6);
+	}
+
+	public RandomNonceGenerator(int length) {
+		this(length, false);
+	}
+
+	/**
+	 * Creates a nonce generator.
+	 * 
+	 * @param length
+	 *            the number of characters in each nonce
+	 * @param secure
+	 *            whether to draw from a <code>SecureRandom</code> instead of a
+	 *            plain <code>Random</code>
+	 */
+	public RandomNonceGenerator(int length, final boolean secure) {
+		this(length, new RandomFactory() {
+			@Override
+			public Random newRandom() {
+				return secure ? new SecureRandom() : new Random();
+			}
+		});
+	}
+
+	/**
+	 * Creates a nonce generator.
+	 * 
+	 * @param length
+	 *            the number of characters in each nonce
+	 * @param randomFactory
+	 *            creates the random number generator used by each thread
+	 */
+	public RandomNonceGenerator(int length, final RandomFactory randomFactory) {
+		if (length < 1) {
+			throw new IllegalArgumentException("length must be positive");
+		}
+
+		if (randomFactory == null) {
+			throw new IllegalArgumentException("randomFactory must not be null");
+		}
+
+		this.length = length;
+		this.random = new ThreadLocal<Random>() {
+			@Override
+			protected Random initialValue() {
+				return randomFactory.newRandom();
+			}
+		};
+	}
+
+	@Override
+	public String generateNonce() {
+		Random random = this.random.get();
+		char[] nonce = new char[length];
+		int bits = 0;
+		int remaining = 0;
+
+		for (int i = 0; i < length; i++) {
+			if (remaining == 0) {
+				bits = random.nextInt(INT_BOUND);
+				remaining = CHARS_PER_INT;
+			}
+
+			nonce[i] = ALPHABET[bits % ALPHABET.length];
+			bits /= ALPHABET.length;
+			remaining--;
+		}
+
+		return new String(nonce);
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	/**
+	 * Creates random number generators, such as a <code>SecureRandom</code>
+	 * with a specific algorithm or a seeded <code>Random</code> for tests. It
+	 * is called once for each thread that generates a nonce.
+	 */
+	public interface RandomFactory {
+		Random newRandom();
+	}
+}
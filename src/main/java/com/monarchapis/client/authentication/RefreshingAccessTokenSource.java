@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.authentication;
+
+import java.io.Closeable;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.PreDestroy;
+
+import com.monarchapis.client.rest.OAuthToken;
+import com.monarchapis.client.rest.RestException;
+
+/**
+ * An access token source that manages an {@link OAuthToken}, refreshing it in
+ * the background shortly before it expires.
+ * 
+ * <p>
+ * Reads never block while a valid token is held. Concurrent refreshes are
+ * collapsed into a single call to the {@link OAuthTokenProvider}; only callers
+ * that find no valid token wait for it to complete.
+ * </p>
+ */
+public class RefreshingAccessTokenSource implements AccessTokenSource, Closeable {
+	private static final long DEFAULT_SKEW = 60;
+
+	private static final long RETRY_DELAY = 5;
+
+	private final OAuthTokenProvider tokenProvider;
+
+	private final ScheduledExecutorService executor;
+
+	private final boolean ownsExecutor;
+
+	/** Seconds before expiry at which the token is refreshed. */
+	private final long skew;
+
+	private volatile OAuthToken token;
+
+	private final AtomicReference<FutureTask<OAuthToken>> refresh = new AtomicReference<FutureTask<OAuthToken>>();
+
+	/** The pending background refresh, guarded by <code>this</code>. */
+	private ScheduledFuture<?> scheduled;
+
+	public RefreshingAccessTokenSource(OAuthTokenProvider tokenProvider) {
+		this(tokenProvider, DEFAULT_SKEW);
+	}
+
+	public RefreshingAccessTokenSource(OAuthTokenProvider tokenProvider, long skew) {
+		this(tokenProvider, skew, null);
+	}
+
+	/**
+	 * Creates a refreshing access token source.
+	 * 
+	 * @param tokenProvider
+	 *            obtains new tokens
+	 * @param skew
+	 *            seconds before expiry at which the token is refreshed
+	 * @param executor
+	 *            the executor used for background refreshes, or <tt>null</tt>
+	 *            to use a dedicated daemon thread
+	 */
+	public RefreshingAccessTokenSource(OAuthTokenProvider tokenProvider, long skew, ScheduledExecutorService executor) {
+		if (tokenProvider == null) {
+			throw new IllegalArgumentException("tokenProvider must not be null");
+		}
+
+		if (skew < 0) {
+			throw new IllegalArgumentException("skew must not be negative");
+		}
+
+		this.tokenProvider = tokenProvider;
+		this.skew = skew;
+
+		if (executor != null) {
+			this.executor = executor;
+			this.ownsExecutor = false;
+		} else {
+			this.executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "oauth-token-refresh");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			this.ownsExecutor = true;
+		}
+	}
+
+	@Override
+	public String getAccessToken() {
+		OAuthToken token = this.token;
+
+		if (token == null || token.isAccessTokenExpired()) {
+			token = refresh(false);
+		}
+
+		return token.getAccessToken();
+	}
+
+	public OAuthToken getToken() {
+		return token;
+	}
+
+	/**
+	 * Refreshes the token, joining a refresh already in flight if there is
+	 * one.
+	 * 
+	 * @return the refreshed token
+	 */
+	public OAuthToken refresh() {
+		return refresh(true);
+	}
+
+	/**
+	 * @param force
+	 *            whether to fetch a token even if a valid one is held. Callers
+	 *            that refresh because they found no valid token pass
+	 *            <tt>false</tt> so that a refresh completed by another thread
+	 *            in the meantime is not repeated.
+	 */
+	private OAuthToken refresh(final boolean force) {
+		FutureTask<OAuthToken> task = refresh.get();
+
+		while (task == null) {
+			FutureTask<OAuthToken> newTask = new FutureTask<OAuthToken>(new Callable<OAuthToken>() {
+				@Override
+				public OAuthToken call() throws Exception {
+					OAuthToken current = token;
+
+					if (!force && current != null && !current.isAccessTokenExpired()) {
+						return current;
+					}
+
+					return fetchToken();
+				}
+			});
+
+			if (refresh.compareAndSet(null, newTask)) {
+				try {
+					newTask.run();
+				} finally {
+					refresh.compareAndSet(newTask, null);
+				}
+
+				task = newTask;
+			} else {
+				task = refresh.get();
+			}
+		}
+
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RestException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new RestException(e.getCause());
+		}
+	}
+
+	@PreDestroy
+	public void close() {
+		synchronized (this) {
+			if (scheduled != null) {
+				scheduled.cancel(false);
+				scheduled = null;
+			}
+		}
+
+		if (ownsExecutor) {
+			executor.shutdownNow();
+		}
+	}
+
+	private OAuthToken fetchToken() {
+		OAuthToken newToken = tokenProvider.getToken(token);
+
+		if (newToken == null) {
+			throw new RestException("The token provider did not return a token");
+		}
+
+		token = newToken;
+		scheduleRefresh(newToken);
+
+		return newToken;
+	}
+
+	private void scheduleRefresh(OAuthToken token) {
+		if (token.getAccessTokenExpiry() == OAuthToken.NO_EXPIRATION) {
+			return;
+		}
+
+		long expiresIn = token.getAccessTokenExpiry() - System.currentTimeMillis() / 1000;
+
+		// Tokens that live shorter than the skew are refreshed half way
+		// through their lifetime rather than immediately and repeatedly.
+		if (expiresIn > skew) {
+			schedule(expiresIn - skew);
+		} else if (expiresIn > 1) {
+			schedule(expiresIn / 2);
+		}
+	}
+
+	/**
+	 * Schedules the next background refresh, replacing any pending one so that
+	 * on-demand refreshes do not start additional refresh chains.
+	 */
+	private synchronized void schedule(long delay) {
+		if (executor.isShutdown()) {
+			return;
+		}
+
+		if (scheduled != null) {
+			scheduled.cancel(false);
+		}
+
+		try {
+			scheduled = executor.schedule(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						refresh();
+					} catch (RuntimeException e) {
+						OAuthToken current = token;
+
+						// Keep retrying while the current token will still be
+						// usable when the retry runs. Once it expires, readers
+						// refresh on demand.
+						if (current != null && !current.isAccessTokenExpired(RETRY_DELAY)) {
+							schedule(RETRY_DELAY);
+						}
+					}
+				}
+			}, delay, TimeUnit.SECONDS);
+		} catch (RejectedExecutionException e) {
+			// Closed concurrently
+		}
+	}
+
+	public long getSkew() {
+		return skew;
+	}
+}
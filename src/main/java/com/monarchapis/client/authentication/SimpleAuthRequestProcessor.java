@@ -26,6 +26,9 @@ public class SimpleAuthRequestProcessor implements RequestProcessor {
 	private String apiKey;
 	private AccessTokenSource accessTokenSource;
 
+	/** The last access token seen and its Authorization header value. */
+	private volatile String[] bearer = new String[] { null, null };
+
 	public SimpleAuthRequestProcessor(String apiKey) {
 		this(apiKey, null);
 	}
@@ -41,14 +44,29 @@ public class SimpleAuthRequestProcessor implements RequestProcessor {
 
 	@Override
 	public void processRequest(BaseClient<?> client) {
-		client.addHeader("X-Api-Key", apiKey);
+		client.setHeader("X-Api-Key", apiKey);
 
 		if (accessTokenSource != null) {
-			String accessToken = accessTokenSource.getAccessToken();
+			String accessToken = AccessTokenSources.getAccessToken(accessTokenSource, client);
 
 			if (StringUtils.isNotBlank(accessToken)) {
-				client.addHeader("Authorization", "Bearer " + accessToken);
+				client.setHeader("Authorization", getBearerHeader(accessToken));
 			}
 		}
 	}
+
+	/**
+	 * Returns the Authorization header for the access token, reusing the
+	 * previously built value while the token is unchanged.
+	 */
+	private String getBearerHeader(String accessToken) {
+		String[] bearer = this.bearer;
+
+		if (!accessToken.equals(bearer[0])) {
+			bearer = new String[] { accessToken, "Bearer " + accessToken };
+			this.bearer = bearer;
+		}
+
+		return bearer[1];
+	}
 }
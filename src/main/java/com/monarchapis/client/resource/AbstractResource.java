@@ -17,40 +17,62 @@
 
 package com.monarchapis.client.resource;
 
+import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.lang3.StringUtils;
 import org.joda.time.DateTime;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.SerializationFeature;
-import com.fasterxml.jackson.datatype.guava.GuavaModule;
-import com.fasterxml.jackson.datatype.joda.JodaModule;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.monarchapis.client.rest.AsyncFuture;
 import com.monarchapis.client.rest.BaseClient;
+import com.monarchapis.client.rest.BaseClient.CollectionFormat;
+import com.monarchapis.client.rest.Batch;
 import com.monarchapis.client.rest.Callback;
+import com.monarchapis.client.rest.CompositeRequestProcessor;
+import com.monarchapis.client.rest.ContentDecoding;
+import com.monarchapis.client.rest.EventHandler;
+import com.monarchapis.client.rest.EventStream;
+import com.monarchapis.client.rest.HttpHeader;
 import com.monarchapis.client.rest.RequestProcessor;
 import com.monarchapis.client.rest.RestAsyncClient;
 import com.monarchapis.client.rest.RestClient;
 import com.monarchapis.client.rest.RestClientFactory;
 import com.monarchapis.client.rest.RestException;
 import com.monarchapis.client.rest.RestResponse;
+import com.monarchapis.client.rest.ServerSentEvent;
+import com.monarchapis.client.rest.StreamingResponse;
 
 public abstract class AbstractResource {
-	private static ObjectMapper MAPPER = getObjectMapper();
-
 	private String baseUrl;
 	private List<RequestProcessor> requestSigners;
+	private RequestProcessor requestSigner;
 	private RestClientFactory clientFactory;
+	private ContentNegotiator contentNegotiator;
 
 	public AbstractResource(String baseUrl, RestClientFactory clientFactory) {
 		this(baseUrl, clientFactory, null);
 	}
 
 	public AbstractResource(String baseUrl, RestClientFactory clientFactory, List<RequestProcessor> requestSigners) {
+		this(baseUrl, clientFactory, requestSigners, JacksonCodec.getDefault());
+	}
+
+	public AbstractResource(String baseUrl, RestClientFactory clientFactory, List<RequestProcessor> requestSigners,
+			JacksonCodec codec) {
+		this(baseUrl, clientFactory, requestSigners, new ContentNegotiator(codec));
+	}
+
+	public AbstractResource(String baseUrl, RestClientFactory clientFactory, List<RequestProcessor> requestSigners,
+			ContentNegotiator contentNegotiator) {
 		baseUrl = StringUtils.removeEnd(baseUrl, "/");
 
 		if (StringUtils.isBlank(baseUrl)) {
@@ -61,31 +83,72 @@ public abstract class AbstractResource {
 			throw new IllegalArgumentException("clientFactory must not be null");
 		}
 
+		if (contentNegotiator == null) {
+			throw new IllegalArgumentException("contentNegotiator must not be null");
+		}
+
 		this.baseUrl = baseUrl;
 		this.clientFactory = clientFactory;
-		this.requestSigners = requestSigners;
+		this.contentNegotiator = contentNegotiator;
+		setRequestSigner(requestSigners);
 	}
 
 	public RestClient newClient(String method, String path) {
-		return clientFactory.create(method, getBaseUrl() + path);
+		RestClient client = clientFactory.create(method, getBaseUrl() + path);
+		contentNegotiator.negotiate(client);
+
+		return client;
 	}
 
 	public RestAsyncClient newAsyncClient(String method, String path) {
-		return clientFactory.createAsync(method, getBaseUrl() + path);
+		RestAsyncClient client = clientFactory.createAsync(method, getBaseUrl() + path);
+		contentNegotiator.negotiate(client);
+
+		return client;
+	}
+
+	public RestClient newClient(String method, String path, String principal) {
+		return newClient(method, path).principal(principal);
+	}
+
+	public RestAsyncClient newAsyncClient(String method, String path, String principal) {
+		return newAsyncClient(method, path).principal(principal);
 	}
 
 	public String getBaseUrl() {
 		return baseUrl;
 	}
 
+	/**
+	 * Sets the request signers. The list is copied, so later changes to it
+	 * have no effect; call this method again to change the signers.
+	 */
 	public void setRequestSigner(List<RequestProcessor> requestSigners) {
-		this.requestSigners = requestSigners;
+		if (requestSigners != null) {
+			this.requestSigners = Collections.unmodifiableList(new ArrayList<RequestProcessor>(requestSigners));
+			this.requestSigner = new CompositeRequestProcessor(this.requestSigners);
+		} else {
+			this.requestSigners = null;
+			this.requestSigner = null;
+		}
 	}
 
+	/**
+	 * @return an unmodifiable view of the request signers or <tt>null</tt> if
+	 *         there are none
+	 */
 	public List<RequestProcessor> getRequestSigners() {
 		return requestSigners;
 	}
 
+	public JacksonCodec getCodec() {
+		return contentNegotiator.getCodec();
+	}
+
+	public ContentNegotiator getContentNegotiator() {
+		return contentNegotiator;
+	}
+
 	protected static void require(String argument, String message) {
 		if (StringUtils.isBlank(argument)) {
 			throw new IllegalArgumentException(message);
@@ -112,100 +175,613 @@ public abstract class AbstractResource {
 
 	protected String toJson(Object value) {
 		try {
-			return MAPPER.writeValueAsString(value);
-		} catch (JsonProcessingException e) {
+			return getCodec().writeValueAsString(value);
+		} catch (IOException e) {
 			throw new RestException(e);
 		}
 	}
 
+	/**
+	 * Sets the client's request body to the value encoded in the negotiated
+	 * format, along with the matching <code>Content-Type</code>.
+	 * 
+	 * @param client
+	 *            the client whose body to set
+	 * @param value
+	 *            the value to encode
+	 */
+	protected void setBody(BaseClient<?> client, Object value) {
+		contentNegotiator.writeBody(client, value);
+	}
+
+	/**
+	 * Resolves and caches the codec's readers and writers for the specified
+	 * types so that the first request using them does not pay for Jackson's
+	 * introspection. Intended to be called from subclass constructors.
+	 * 
+	 * @param types
+	 *            the request and response types used by the resource
+	 */
+	protected void warmUp(Type... types) {
+		contentNegotiator.getCodec().warmUp(types);
+
+		if (contentNegotiator.getAlternativeCodec() != null) {
+			contentNegotiator.getAlternativeCodec().warmUp(types);
+		}
+	}
+
 	protected void signRequest(BaseClient<?> client) {
-		if (requestSigners != null) {
-			for (RequestProcessor requestSigner : requestSigners) {
-				requestSigner.processRequest(client);
-			}
+		if (requestSigner != null) {
+			requestSigner.processRequest(client);
 		}
 	}
 
+	/**
+	 * Parses the response, then closes it, which deletes the body if it was
+	 * spilled to disk.
+	 * 
+	 * @param response
+	 *            the response to parse
+	 * @param clazz
+	 *            the value type
+	 * @return the value
+	 */
 	protected <T> T parseAs(RestResponse response, Class<T> clazz) {
-		checkStatusCode(response);
+		try {
+			checkStatusCode(response);
 
-		return parseAs(response.getResponseBody(), clazz);
+			return parseAs(contentNegotiator, response, clazz);
+		} finally {
+			response.close();
+		}
 	}
 
 	protected <T> T parseAs(RestResponse response, TypeReference<T> reference) {
-		checkStatusCode(response);
+		try {
+			checkStatusCode(response);
 
-		return parseAs(response.getResponseBody(), reference);
+			return parseAs(contentNegotiator, response, reference);
+		} finally {
+			response.close();
+		}
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Parses only the value at the JSON Pointer, such as
+	 * <code>/data/items</code>, skipping the rest of the response without
+	 * binding it. The response is closed afterwards.
+	 * 
+	 * @param response
+	 *            the response to parse
+	 * @param pointer
+	 *            JSON Pointer to the value
+	 * @param clazz
+	 *            the value type
+	 * @return the value or <tt>null</tt> if nothing is at the pointer
+	 */
+	protected <T> T parseAt(RestResponse response, String pointer, Class<T> clazz) {
+		try {
+			checkStatusCode(response);
+
+			return parseAt(contentNegotiator, response, pointer, clazz);
+		} finally {
+			response.close();
+		}
+	}
+
+	protected <T> T parseAt(RestResponse response, String pointer, TypeReference<T> reference) {
+		try {
+			checkStatusCode(response);
+
+			return parseAt(contentNegotiator, response, pointer, reference.getType());
+		} finally {
+			response.close();
+		}
+	}
+
+	/**
+	 * Parses the response using the default codec.
+	 * 
+	 * @see JacksonCodec#getDefault()
+	 */
 	protected static <T> T parseAs(String response, Class<T> clazz) {
+		return parseAs(JacksonCodec.getDefault(), response, clazz);
+	}
+
+	/**
+	 * Parses the response using the default codec.
+	 * 
+	 * @see JacksonCodec#getDefault()
+	 */
+	protected static <T> T parseAs(String response, TypeReference<T> reference) {
+		return parseAs(JacksonCodec.getDefault(), response, reference);
+	}
+
+	@SuppressWarnings("unchecked")
+	protected static <T> T parseAs(JacksonCodec codec, String response, Class<T> clazz) {
 		try {
 			if (clazz == Void.class) {
 				return (T) Void.TYPE;
 			}
 
-			return MAPPER.readValue(response, clazz);
+			return codec.readValue(response, clazz);
 		} catch (Exception e) {
 			throw new RestException(e);
 		}
 	}
 
-	protected static <T> T parseAs(String response, final TypeReference<T> reference) {
+	protected static <T> T parseAs(JacksonCodec codec, String response, TypeReference<T> reference) {
 		try {
-			return MAPPER.readValue(response, new com.fasterxml.jackson.core.type.TypeReference<T>() {
-				public Type getType() {
-					return reference.getType();
-				}
-			});
+			return codec.readValue(response, reference.getType());
 		} catch (Exception e) {
 			throw new RestException(e);
 		}
 	}
 
-	protected void checkStatusCode(RestResponse response) {
-		if (response.getStatusCode() >= 400) {
-			throwErrorException(response);
+	@SuppressWarnings("unchecked")
+	private static <T> T parseAs(ContentNegotiator contentNegotiator, RestResponse response, Class<T> clazz) {
+		try {
+			if (clazz == Void.class) {
+				return (T) Void.TYPE;
+			}
+
+			return contentNegotiator.readValue(response, clazz);
+		} catch (Exception e) {
+			throw new RestException(e);
 		}
 	}
 
-	protected abstract void throwErrorException(RestResponse response);
+	private static <T> T parseAs(ContentNegotiator contentNegotiator, RestResponse response,
+			TypeReference<T> reference) {
+		try {
+			return contentNegotiator.readValue(response, reference.getType());
+		} catch (Exception e) {
+			throw new RestException(e);
+		}
+	}
 
-	private static ObjectMapper getObjectMapper() {
-		ObjectMapper mapper = new ObjectMapper();
+	private static <T> T parseAt(ContentNegotiator contentNegotiator, RestResponse response, String pointer,
+			Type type) {
+		try {
+			return contentNegotiator.readValueAt(response, pointer, type);
+		} catch (Exception e) {
+			throw new RestException(e);
+		}
+	}
 
-		mapper.registerModule(new JodaModule());
-		mapper.registerModule(new GuavaModule());
+	/**
+	 * Sends the request and iterates over the elements of the JSON array at
+	 * the pointer as they are read from the connection, rather than
+	 * materializing the whole list. The iterator must be closed unless it is
+	 * read to the end.
+	 * 
+	 * @param client
+	 *            the prepared and signed client
+	 * @param pointer
+	 *            JSON Pointer to the array, e.g. <code>/data/items</code>, or
+	 *            empty for a top-level array
+	 * @param clazz
+	 *            the element type
+	 * @return the element iterator
+	 */
+	protected <T> JsonArrayIterator<T> iterate(RestClient client, String pointer, Class<T> clazz) {
+		return iterate(client, pointer, (Type) clazz);
+	}
+
+	protected <T> JsonArrayIterator<T> iterate(RestClient client, String pointer, TypeReference<T> reference) {
+		return iterate(client, pointer, reference.getType());
+	}
 
-		mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
-		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+	private <T> JsonArrayIterator<T> iterate(RestClient client, String pointer, Type type) {
+		StreamingResponse response = client.stream();
+
+		try {
+			if (response.getStatusCode() >= 400) {
+				RestResponse error = response.buffer();
+				checkStatusCode(error);
 
-		return mapper;
+				throw new RestException(error.getStatusCode(), error.getResponseBody());
+			}
+
+			String contentType = response.getHeader("Content-Type");
+			contentNegotiator.recordResponse(contentType);
+
+			JacksonCodec codec = contentNegotiator.getResponseCodec(contentType);
+			JsonParser parser = codec.createParser(response.getContent(), response.getCharset());
+
+			if (!JsonNavigator.seek(parser, pointer) || parser.getCurrentToken() != JsonToken.START_ARRAY) {
+				throw new RestException("No array found at " + (StringUtils.isEmpty(pointer) ? "the root" : pointer));
+			}
+
+			return new JsonArrayIterator<T>(parser, codec.getReader(type), response);
+		} catch (IOException ioe) {
+			response.close();
+			throw new RestException(ioe);
+		} catch (RuntimeException e) {
+			response.close();
+			throw e;
+		}
 	}
 
+	/**
+	 * Creates a decoder for newline-delimited JSON records using the resource's
+	 * codec.
+	 * 
+	 * @param clazz
+	 *            the record type
+	 * @param handler
+	 *            receives each record
+	 * @return the decoder, which can be tuned before use
+	 */
+	protected <T> NdjsonDecoder<T> ndjsonDecoder(Class<T> clazz, RecordHandler<? super T> handler) {
+		return new NdjsonDecoder<T>(contentNegotiator.getCodec().getReader(clazz), handler);
+	}
+
+	protected <T> NdjsonDecoder<T> ndjsonDecoder(TypeReference<T> reference, RecordHandler<? super T> handler) {
+		return new NdjsonDecoder<T>(contentNegotiator.getCodec().getReader(reference.getType()), handler);
+	}
+
+	/**
+	 * Sends the request and decodes its newline-delimited JSON content as it
+	 * is read, returning once every record has been handled.
+	 * 
+	 * @param client
+	 *            the prepared client
+	 * @param decoder
+	 *            the record decoder
+	 * @return the number of records handled
+	 */
+	protected long readLines(RestClient client, NdjsonDecoder<?> decoder) {
+		StreamingResponse response = client.stream();
+
+		try {
+			if (response.getStatusCode() >= 400) {
+				RestResponse error = response.buffer();
+				checkStatusCode(error);
+
+				throw new RestException(error.getStatusCode(), error.getResponseBody());
+			}
+
+			return decoder.decode(response.getContent());
+		} finally {
+			response.close();
+		}
+	}
+
+	/**
+	 * Sends the request and decodes its newline-delimited JSON content as it
+	 * arrives. Reading is suspended while the decoder is at capacity. The
+	 * content is requested without compression because it is fed to the
+	 * decoder straight from the connection.
+	 * 
+	 * @param client
+	 *            the prepared client
+	 * @param decoder
+	 *            the record decoder
+	 * @param callback
+	 *            notified with the number of records handled
+	 */
+	protected void readLines(RestAsyncClient client, final NdjsonDecoder<?> decoder, Callback<Long> callback) {
+		if (client.getHeader(ContentDecoding.ACCEPT_ENCODING) == null) {
+			client.setHeader(ContentDecoding.ACCEPT_ENCODING, ContentDecoding.IDENTITY);
+		}
+
+		decoder.onComplete(callback);
+		client.send(new NdjsonResponseConsumer(decoder), new Callback<RestResponse>() {
+			@Override
+			public void completed(RestResponse error) {
+				if (error != null) {
+					try {
+						checkStatusCode(error);
+						decoder.fail(new RestException(error.getStatusCode(), error.getResponseBody()));
+					} catch (RuntimeException e) {
+						decoder.fail(e);
+					}
+				}
+			}
+
+			@Override
+			public void failed(Exception ex) {
+				decoder.fail(ex);
+			}
+
+			@Override
+			public void cancelled() {
+				decoder.fail(new CancellationException());
+			}
+		});
+	}
+
+	/**
+	 * Signs the request and opens a stream of events, signing the request
+	 * again before each reconnect.
+	 * 
+	 * @param client
+	 *            the prepared client
+	 * @param handler
+	 *            receives the events
+	 * @return the open stream
+	 */
+	protected EventStream openEventStream(RestAsyncClient client, final EventHandler handler) {
+		signRequest(client);
+
+		return client.openEventStream(new EventHandler() {
+			@Override
+			public void onEvent(ServerSentEvent event) {
+				handler.onEvent(event);
+			}
+
+			@Override
+			public void failed(Exception ex) {
+				if (ex instanceof RestException && ((RestException) ex).getStatusCode() >= 400) {
+					RestException e = (RestException) ex;
+
+					try {
+						checkStatusCode(new RestResponse(e.getStatusCode(), e.getErrorMessage(), new HttpHeader[0]));
+					} catch (RuntimeException mapped) {
+						ex = mapped;
+					}
+				}
+
+				handler.failed(ex);
+			}
+
+			@Override
+			public void closed() {
+				handler.closed();
+			}
+		}, requestSigner);
+	}
+
+	/**
+	 * Publishes the items of a paginated collection, fetching pages as the
+	 * subscriber asks for items. Each page is requested with a new signed
+	 * client and its items are read from the array at the pointer.
+	 * 
+	 * @param path
+	 *            the collection path, including any fixed query
+	 * @param pagination
+	 *            how to find the next page
+	 * @param pointer
+	 *            JSON Pointer to the item array in each page, or empty for a
+	 *            top-level array
+	 * @param clazz
+	 *            the item type
+	 * @return the publisher
+	 */
+	protected <T> PagePublisher<T> paginate(String path, Pagination pagination, String pointer, Class<T> clazz) {
+		return paginate(path, pagination, pointer, (Type) clazz);
+	}
+
+	protected <T> PagePublisher<T> paginate(String path, Pagination pagination, String pointer,
+			TypeReference<T> reference) {
+		return paginate(path, pagination, pointer, reference.getType());
+	}
+
+	private <T> PagePublisher<T> paginate(String path, Pagination pagination, final String pointer, Type type) {
+		TypeFactory typeFactory = TypeFactory.defaultInstance();
+		final Type listType = typeFactory.constructCollectionType(List.class, typeFactory.constructType(type));
+
+		PagePublisher.ClientFactory clients = new PagePublisher.ClientFactory() {
+			@Override
+			public RestAsyncClient newClient(String url) {
+				RestAsyncClient client = clientFactory.createAsync("GET", url);
+				contentNegotiator.negotiate(client);
+				signRequest(client);
+
+				return client;
+			}
+		};
+
+		PagePublisher.PageReader<T> reader = new PagePublisher.PageReader<T>() {
+			@Override
+			public List<T> read(RestResponse response) {
+				checkStatusCode(response);
+
+				return parseAt(contentNegotiator, response, pointer, listType);
+			}
+		};
+
+		return new PagePublisher<T>(getBaseUrl() + path, pagination, contentNegotiator, clients, reader);
+	}
+
+	/**
+	 * Creates a batch of asynchronous requests that must finish within the
+	 * timeout. Add clients from {@link #newAsyncClient(String, String)},
+	 * signed, with a parser from {@link #responseParser(Class)}.
+	 * 
+	 * @param timeout
+	 *            the overall deadline
+	 * @param unit
+	 *            the deadline unit
+	 * @return the empty batch
+	 */
+	protected <T> Batch<T> newBatch(long timeout, TimeUnit unit) {
+		return clientFactory.newBatch(timeout, unit);
+	}
+
+	/**
+	 * Creates a batch response parser that checks the status code and parses
+	 * the response as the type.
+	 * 
+	 * @param clazz
+	 *            the value type
+	 * @return the parser
+	 */
+	protected <T> Batch.ResponseParser<T> responseParser(final Class<T> clazz) {
+		return new Batch.ResponseParser<T>() {
+			@Override
+			public T parse(RestResponse response) {
+				return parseAs(response, clazz);
+			}
+		};
+	}
+
+	protected <T> Batch.ResponseParser<T> responseParser(final TypeReference<T> reference) {
+		return new Batch.ResponseParser<T>() {
+			@Override
+			public T parse(RestResponse response) {
+				return parseAs(response, reference);
+			}
+		};
+	}
+
+	/**
+	 * Creates a loader that coalesces single-item loads into one
+	 * <code>GET</code> per batch, passing the distinct keys as a
+	 * comma-separated query parameter, e.g. <code>/items?ids=a,b,c</code>.
+	 * 
+	 * @param path
+	 *            the collection path
+	 * @param parameter
+	 *            the query parameter carrying the keys
+	 * @param pointer
+	 *            JSON Pointer to the item array in the response, or empty for
+	 *            a top-level array
+	 * @param clazz
+	 *            the item type
+	 * @param keyFunction
+	 *            gets the key of each item returned
+	 * @return the loader
+	 */
+	protected <K, V> BatchLoader<K, V> batchLoader(String path, String parameter, String pointer, Class<V> clazz,
+			BatchLoader.KeyFunction<K, V> keyFunction) {
+		return batchLoader(path, parameter, pointer, (Type) clazz, keyFunction);
+	}
+
+	protected <K, V> BatchLoader<K, V> batchLoader(String path, String parameter, String pointer,
+			TypeReference<V> reference, BatchLoader.KeyFunction<K, V> keyFunction) {
+		return batchLoader(path, parameter, pointer, reference.getType(), keyFunction);
+	}
+
+	private <K, V> BatchLoader<K, V> batchLoader(final String path, final String parameter, final String pointer,
+			Type type, final BatchLoader.KeyFunction<K, V> keyFunction) {
+		TypeFactory typeFactory = TypeFactory.defaultInstance();
+		final Type listType = typeFactory.constructCollectionType(List.class, typeFactory.constructType(type));
+
+		return new BatchLoader<K, V>(new BatchLoader.BatchFunction<K, V>() {
+			@Override
+			public void load(List<K> keys, final Callback<Map<K, V>> callback) {
+				RestAsyncClient client = newAsyncClient("GET", path);
+				client.addQueryCollection(parameter, keys, CollectionFormat.CSV);
+				signRequest(client);
+
+				client.send(new Callback<RestResponse>() {
+					@Override
+					public void completed(RestResponse response) {
+						Map<K, V> values;
+
+						try {
+							checkStatusCode(response);
+							List<V> items = parseAt(contentNegotiator, response, pointer, listType);
+							values = BatchLoader.index(items, keyFunction);
+						} catch (RuntimeException e) {
+							callback.failed(e);
+							return;
+						} finally {
+							response.close();
+						}
+
+						callback.completed(values);
+					}
+
+					@Override
+					public void failed(Exception ex) {
+						callback.failed(ex);
+					}
+
+					@Override
+					public void cancelled() {
+						callback.cancelled();
+					}
+				});
+			}
+		});
+	}
+
+	protected void checkStatusCode(RestResponse response) {
+		if (response.getStatusCode() >= 400) {
+			throwErrorException(response);
+		}
+	}
+
+	protected abstract void throwErrorException(RestResponse response);
+
 	protected <T> CallbackAdapter<T> callbackAdapter(final AsyncFuture<T> callback, Class<T> clazz) {
-		return new CallbackAdapter<T>(callback, clazz);
+		return new CallbackAdapter<T>(callback, clazz, contentNegotiator);
 	}
 
 	protected <T> CallbackAdapter<T> callbackAdapter(final AsyncFuture<T> callback, TypeReference<T> typeReference) {
-		return new CallbackAdapter<T>(callback, typeReference);
+		return new CallbackAdapter<T>(callback, typeReference, contentNegotiator);
+	}
+
+	/**
+	 * Creates a callback adapter that parses only the value at the JSON
+	 * Pointer.
+	 * 
+	 * @see #parseAt(RestResponse, String, Class)
+	 */
+	protected <T> CallbackAdapter<T> callbackAdapter(final AsyncFuture<T> callback, String pointer, Class<T> clazz) {
+		return new CallbackAdapter<T>(callback, pointer, clazz, contentNegotiator);
+	}
+
+	protected <T> CallbackAdapter<T> callbackAdapter(final AsyncFuture<T> callback, String pointer,
+			TypeReference<T> typeReference) {
+		return new CallbackAdapter<T>(callback, pointer, typeReference, contentNegotiator);
 	}
 
 	protected static class CallbackAdapter<T> implements Callback<RestResponse> {
 		final private AsyncFuture<T> callback;
 		final private Class<T> clazz;
 		final private TypeReference<T> typeReference;
+		final private ContentNegotiator contentNegotiator;
+		final private String pointer;
 
 		public CallbackAdapter(AsyncFuture<T> callback, Class<T> clazz) {
+			this(callback, clazz, JacksonCodec.getDefault());
+		}
+
+		public CallbackAdapter(AsyncFuture<T> callback, TypeReference<T> typeReference) {
+			this(callback, typeReference, JacksonCodec.getDefault());
+		}
+
+		public CallbackAdapter(AsyncFuture<T> callback, Class<T> clazz, JacksonCodec codec) {
+			this(callback, clazz, new ContentNegotiator(codec));
+		}
+
+		public CallbackAdapter(AsyncFuture<T> callback, TypeReference<T> typeReference, JacksonCodec codec) {
+			this(callback, typeReference, new ContentNegotiator(codec));
+		}
+
+		public CallbackAdapter(AsyncFuture<T> callback, Class<T> clazz, ContentNegotiator contentNegotiator) {
+			this(callback, null, clazz, contentNegotiator);
+		}
+
+		public CallbackAdapter(AsyncFuture<T> callback, TypeReference<T> typeReference,
+				ContentNegotiator contentNegotiator) {
+			this(callback, null, typeReference, contentNegotiator);
+		}
+
+		/**
+		 * Creates an adapter that parses only the value at the JSON Pointer, or
+		 * the whole response if the pointer is <tt>null</tt>.
+		 */
+		public CallbackAdapter(AsyncFuture<T> callback, String pointer, Class<T> clazz,
+				ContentNegotiator contentNegotiator) {
 			this.callback = callback;
 			this.clazz = clazz;
 			this.typeReference = null;
+			this.contentNegotiator = contentNegotiator;
+			this.pointer = pointer;
 		}
 
-		public CallbackAdapter(AsyncFuture<T> callback, TypeReference<T> typeReference) {
+		public CallbackAdapter(AsyncFuture<T> callback, String pointer, TypeReference<T> typeReference,
+				ContentNegotiator contentNegotiator) {
 			this.callback = callback;
 			this.clazz = null;
 			this.typeReference = typeReference;
+			this.contentNegotiator = contentNegotiator;
+			this.pointer = pointer;
 		}
 
 		@Override
@@ -213,15 +789,20 @@ public abstract class AbstractResource {
 			try {
 				T result;
 
-				if (clazz != null) {
-					result = parseAs(response.getResponseBody(), clazz);
+				if (pointer != null) {
+					result = parseAt(contentNegotiator, response, pointer,
+							clazz != null ? clazz : typeReference.getType());
+				} else if (clazz != null) {
+					result = parseAs(contentNegotiator, response, clazz);
 				} else {
-					result = parseAs(response.getResponseBody(), typeReference);
+					result = parseAs(contentNegotiator, response, typeReference);
 				}
 
 				callback.completed(result);
 			} catch (Exception ex) {
 				callback.failed(ex);
+			} finally {
+				response.close();
 			}
 		}
 
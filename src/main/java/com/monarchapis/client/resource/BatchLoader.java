@@ -0,0 +1,339 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.monarchapis.client.rest.AsyncFuture;
+import com.monarchapis.client.rest.Callback;
+import com.monarchapis.client.rest.RestException;
+
+/**
+ * Coalesces loads of single items into batched requests, in the manner of a
+ * DataLoader. Keys requested within a short window are collected, duplicates
+ * are merged, and the whole set is loaded with one call to the batch function,
+ * e.g. <code>GET /items?ids=a,b,c</code>. Each caller's future then completes
+ * with the value for its key, or <tt>null</tt> if the response had none.
+ * 
+ * <p>
+ * A batch is dispatched once the delay has passed since its first key was
+ * added, or as soon as it holds the maximum number of keys. The batch function
+ * is called on an executor, by default a shared pool of daemon threads, one
+ * per processor, rather than on the thread timing every loader's batches. A
+ * batch function that blocks should be given an executor of its own.
+ * </p>
+ * 
+ * @param <K>
+ *            the key type
+ * @param <V>
+ *            the value type
+ */
+public class BatchLoader<K, V> {
+	/**
+	 * Loads the values for a set of distinct keys, completing the callback
+	 * with the values found by key.
+	 */
+	public interface BatchFunction<K, V> {
+		void load(List<K> keys, Callback<Map<K, V>> callback);
+	}
+
+	/**
+	 * Gets the key a loaded value belongs to.
+	 */
+	public interface KeyFunction<K, V> {
+		K keyOf(V value);
+	}
+
+	private static final ScheduledExecutorService TICKS = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "batch-loader-tick");
+					thread.setDaemon(true);
+
+					return thread;
+				}
+			});
+
+	private static final Executor DEFAULT_EXECUTOR = newExecutor(Runtime.getRuntime().availableProcessors());
+
+	private final BatchFunction<K, V> batchFunction;
+
+	private volatile int maxBatchSize = 100;
+
+	private volatile long delay = 5;
+
+	private volatile Executor executor = DEFAULT_EXECUTOR;
+
+	// Guarded by this
+
+	private Map<K, List<AsyncFuture<V>>> pending = new LinkedHashMap<K, List<AsyncFuture<V>>>();
+
+	private ScheduledFuture<?> tick;
+
+	public BatchLoader(BatchFunction<K, V> batchFunction) {
+		if (batchFunction == null) {
+			throw new IllegalArgumentException("batchFunction must not be null");
+		}
+
+		this.batchFunction = batchFunction;
+	}
+
+	private static Executor newExecutor(int threads) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "batch-loader");
+						thread.setDaemon(true);
+
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+
+		return executor;
+	}
+
+	public AsyncFuture<V> load(K key) {
+		return load(key, null);
+	}
+
+	/**
+	 * Queues the key for the next batch.
+	 * 
+	 * @param key
+	 *            the key to load
+	 * @param callback
+	 *            notified with the value, or <tt>null</tt>
+	 * @return the future value
+	 */
+	public AsyncFuture<V> load(K key, Callback<V> callback) {
+		if (key == null) {
+			throw new IllegalArgumentException("key must not be null");
+		}
+
+		AsyncFuture<V> future = new AsyncFuture<V>(callback);
+		Map<K, List<AsyncFuture<V>>> batch = null;
+
+		synchronized (this) {
+			List<AsyncFuture<V>> waiting = pending.get(key);
+
+			if (waiting == null) {
+				waiting = new ArrayList<AsyncFuture<V>>(1);
+				pending.put(key, waiting);
+			}
+
+			waiting.add(future);
+
+			if (pending.size() >= maxBatchSize) {
+				batch = takeBatch();
+			} else if (tick == null) {
+				tick = TICKS.schedule(new Runnable() {
+					@Override
+					public void run() {
+						dispatch();
+					}
+				}, delay, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		if (batch != null) {
+			send(batch);
+		}
+
+		return future;
+	}
+
+	/**
+	 * Dispatches the keys collected so far without waiting for the delay.
+	 */
+	public void dispatch() {
+		Map<K, List<AsyncFuture<V>>> batch;
+
+		synchronized (this) {
+			batch = takeBatch();
+		}
+
+		if (batch != null) {
+			send(batch);
+		}
+	}
+
+	/**
+	 * Takes the collected keys, if any, and stops the pending tick. Called
+	 * with the lock held.
+	 */
+	private Map<K, List<AsyncFuture<V>>> takeBatch() {
+		if (tick != null) {
+			tick.cancel(false);
+			tick = null;
+		}
+
+		if (pending.isEmpty()) {
+			return null;
+		}
+
+		Map<K, List<AsyncFuture<V>>> batch = pending;
+		pending = new LinkedHashMap<K, List<AsyncFuture<V>>>();
+
+		return batch;
+	}
+
+	/**
+	 * Hands the batch to the batch function on the executor, leaving the tick
+	 * thread free to time other loaders' batches.
+	 */
+	private void send(final Map<K, List<AsyncFuture<V>>> batch) {
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					load(batch);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			fail(batch, e);
+		}
+	}
+
+	private void load(final Map<K, List<AsyncFuture<V>>> batch) {
+		try {
+			batchFunction.load(new ArrayList<K>(batch.keySet()), new Callback<Map<K, V>>() {
+				@Override
+				public void completed(Map<K, V> values) {
+					for (Map.Entry<K, List<AsyncFuture<V>>> entry : batch.entrySet()) {
+						V value = values != null ? values.get(entry.getKey()) : null;
+
+						for (AsyncFuture<V> future : entry.getValue()) {
+							future.completed(value);
+						}
+					}
+				}
+
+				@Override
+				public void failed(Exception ex) {
+					fail(batch, ex);
+				}
+
+				@Override
+				public void cancelled() {
+					for (List<AsyncFuture<V>> futures : batch.values()) {
+						for (AsyncFuture<V> future : futures) {
+							future.cancel(false);
+						}
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			fail(batch, e);
+		}
+	}
+
+	private void fail(Map<K, List<AsyncFuture<V>>> batch, Exception ex) {
+		for (List<AsyncFuture<V>> futures : batch.values()) {
+			for (AsyncFuture<V> future : futures) {
+				future.failed(ex);
+			}
+		}
+	}
+
+	/**
+	 * Indexes loaded values by their keys.
+	 */
+	static <K, V> Map<K, V> index(List<V> values, KeyFunction<K, V> keyFunction) {
+		Map<K, V> byKey = new LinkedHashMap<K, V>();
+
+		if (values != null) {
+			for (V value : values) {
+				if (value != null) {
+					K key = keyFunction.keyOf(value);
+
+					if (key == null) {
+						throw new RestException("Loaded value has no key: " + value);
+					}
+
+					byKey.put(key, value);
+				}
+			}
+		}
+
+		return byKey;
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	/**
+	 * Sets the most distinct keys in one batch, which also bounds the request
+	 * URL length. Defaults to 100.
+	 * 
+	 * @param maxBatchSize
+	 *            the maximum batch size
+	 */
+	public void setMaxBatchSize(int maxBatchSize) {
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+	}
+
+	public long getDelay() {
+		return delay;
+	}
+
+	/**
+	 * Sets how long, in milliseconds, keys are collected before a batch is
+	 * dispatched. Defaults to 5.
+	 * 
+	 * @param delay
+	 *            the collection window
+	 */
+	public void setDelay(long delay) {
+		this.delay = Math.max(0, delay);
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the executor the batch function is called on. Defaults to a shared
+	 * pool of daemon threads, one per processor.
+	 * 
+	 * @param executor
+	 *            the executor
+	 */
+	public void setExecutor(Executor executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("executor must not be null");
+		}
+
+		this.executor = executor;
+	}
+}
@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.monarchapis.client.rest.BaseClient;
+import com.monarchapis.client.rest.RestResponse;
+
+/**
+ * Negotiates between JSON and an optional alternative format, typically a
+ * binary Jackson format such as Smile or CBOR.
+ * 
+ * <p>
+ * Requests offer the alternative format first with JSON as the fallback.
+ * Responses are decoded according to their <code>Content-Type</code>. Once a
+ * response in the alternative format has been recorded, request bodies are
+ * encoded in it as well; if a JSON response is recorded, request bodies revert
+ * to JSON. Reading a response body records it.
+ * </p>
+ */
+public class ContentNegotiator {
+	private final JacksonCodec codec;
+
+	private final JacksonCodec alternativeCodec;
+
+	/** Whether the upstream was last seen responding in the alternative. */
+	private volatile boolean alternativeAccepted;
+
+	private boolean bufferedBodies;
+
+	public ContentNegotiator(JacksonCodec codec) {
+		this(codec, null);
+	}
+
+	/**
+	 * Creates a content negotiator.
+	 * 
+	 * @param codec
+	 *            the JSON codec, used as the fallback
+	 * @param alternativeCodec
+	 *            the preferred codec, or <tt>null</tt> for JSON only
+	 */
+	public ContentNegotiator(JacksonCodec codec, JacksonCodec alternativeCodec) {
+		if (codec == null) {
+			throw new IllegalArgumentException("codec must not be null");
+		}
+
+		this.codec = codec;
+		this.alternativeCodec = alternativeCodec;
+	}
+
+	public JacksonCodec getCodec() {
+		return codec;
+	}
+
+	public JacksonCodec getAlternativeCodec() {
+		return alternativeCodec;
+	}
+
+	/**
+	 * Sets the client's <code>Accept</code> header to offer the alternative
+	 * format, if any, ahead of JSON.
+	 * 
+	 * @param client
+	 *            the client to prepare
+	 */
+	public void negotiate(BaseClient<?> client) {
+		if (alternativeCodec != null) {
+			client.prefer(alternativeCodec.getMimeType());
+			client.accepts(codec.getMimeType());
+		}
+	}
+
+	/**
+	 * Gets the codec used to encode request bodies.
+	 * 
+	 * @return the negotiated request codec
+	 */
+	public JacksonCodec getRequestCodec() {
+		return alternativeCodec != null && alternativeAccepted ? alternativeCodec : codec;
+	}
+
+	/**
+	 * Gets the codec matching the response's content type.
+	 * 
+	 * @param response
+	 *            the response to decode
+	 * @return the response codec
+	 */
+	public JacksonCodec getResponseCodec(RestResponse response) {
+		return getResponseCodec(response.getHeader("Content-Type"));
+	}
+
+	/**
+	 * Gets the codec matching the content type.
+	 * 
+	 * @param contentType
+	 *            the response's <code>Content-Type</code> header
+	 * @return the response codec
+	 */
+	public JacksonCodec getResponseCodec(String contentType) {
+		if (alternativeCodec != null && alternativeCodec.getMimeType().equalsIgnoreCase(getMimeType(contentType))) {
+			return alternativeCodec;
+		}
+
+		return codec;
+	}
+
+	/**
+	 * Records the format the upstream responded in, which selects the format
+	 * of subsequent request bodies.
+	 * 
+	 * @param response
+	 *            the response received
+	 */
+	public void recordResponse(RestResponse response) {
+		recordResponse(response.getHeader("Content-Type"));
+	}
+
+	/**
+	 * Records the format the upstream responded in, which selects the format
+	 * of subsequent request bodies. Content types other than JSON and the
+	 * alternative leave the request format unchanged.
+	 * 
+	 * @param contentType
+	 *            the response's <code>Content-Type</code> header
+	 */
+	public void recordResponse(String contentType) {
+		if (alternativeCodec == null) {
+			return;
+		}
+
+		String mimeType = getMimeType(contentType);
+
+		if (alternativeCodec.getMimeType().equalsIgnoreCase(mimeType)) {
+			alternativeAccepted = true;
+		} else if (codec.getMimeType().equalsIgnoreCase(mimeType)) {
+			alternativeAccepted = false;
+		}
+	}
+
+	private static String getMimeType(String contentType) {
+		return StringUtils.trimToEmpty(StringUtils.substringBefore(contentType, ";"));
+	}
+
+	/**
+	 * Records the response and reads its body. The body is parsed from its
+	 * stream, so it is neither copied nor, if it spilled to disk, read back
+	 * into memory first.
+	 * 
+	 * @param response
+	 *            the response to decode
+	 * @param type
+	 *            the value type
+	 * @return the value
+	 * @throws IOException
+	 *             if the response could not be decoded
+	 */
+	public <T> T readValue(RestResponse response, Type type) throws IOException {
+		recordResponse(response);
+
+		JacksonCodec codec = getResponseCodec(response);
+		JsonParser parser = codec.createParser(response.getResponseStream(), response.getCharset());
+
+		try {
+			return codec.getReader(type).readValue(parser);
+		} finally {
+			parser.close();
+		}
+	}
+
+	/**
+	 * Records the response and reads only the value at the JSON Pointer,
+	 * streaming past everything before it without binding or building a tree
+	 * for it.
+	 * 
+	 * @param response
+	 *            the response to decode
+	 * @param pointer
+	 *            JSON Pointer to the value, e.g. <code>/meta/next</code>
+	 * @param type
+	 *            the value type
+	 * @return the value or <tt>null</tt> if nothing is at the pointer
+	 * @throws IOException
+	 *             if the response could not be decoded
+	 */
+	public <T> T readValueAt(RestResponse response, String pointer, Type type) throws IOException {
+		recordResponse(response);
+
+		JacksonCodec codec = getResponseCodec(response);
+		JsonParser parser = codec.createParser(response.getResponseStream(), response.getCharset());
+
+		try {
+			if (!JsonNavigator.seek(parser, pointer)) {
+				return null;
+			}
+
+			return codec.getReader(type).readValue(parser);
+		} finally {
+			parser.close();
+		}
+	}
+
+	/**
+	 * Encodes the value as the client's request body in the negotiated format.
+	 * 
+	 * @param client
+	 *            the client whose body to set
+	 * @param value
+	 *            the value to encode
+	 * @see JacksonEntity
+	 */
+	public void writeBody(BaseClient<?> client, Object value) {
+		JacksonCodec codec = getRequestCodec();
+
+		client.setBody(new JacksonEntity(codec, value, bufferedBodies));
+		client.contentType(codec.getMimeType());
+	}
+
+	public boolean isBufferedBodies() {
+		return bufferedBodies;
+	}
+
+	/**
+	 * Sets whether request bodies are serialized up front so that their
+	 * content length is known, instead of being streamed with chunked
+	 * transfer encoding.
+	 * 
+	 * @param bufferedBodies
+	 *            whether to buffer request bodies
+	 */
+	public void setBufferedBodies(boolean bufferedBodies) {
+		this.bufferedBodies = bufferedBodies;
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+
+/**
+ * Serializes request bodies and deserializes responses for a resource using a
+ * Jackson <code>ObjectMapper</code>.
+ * 
+ * <p>
+ * Readers and writers are resolved once per type and cached. The mapper must
+ * be fully configured before it is passed to the codec and not modified
+ * afterwards.
+ * </p>
+ */
+public class JacksonCodec {
+	public static final String JSON = "application/json";
+
+	public static final String SMILE = "application/x-jackson-smile";
+
+	public static final String CBOR = "application/cbor";
+
+	private static final JacksonCodec DEFAULT = new JacksonCodec(createDefaultObjectMapper());
+
+	private final ObjectMapper mapper;
+
+	/** The mime type of the format produced by the mapper. */
+	private final String mimeType;
+
+	/** Readers with their root type resolved, keyed by target type. */
+	private final ConcurrentMap<Type, ObjectReader> readers = new ConcurrentHashMap<Type, ObjectReader>();
+
+	/** Writers with their root type resolved, keyed by value class. */
+	private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<Class<?>, ObjectWriter>();
+
+	public JacksonCodec(ObjectMapper mapper) {
+		this(mapper, JSON);
+	}
+
+	public JacksonCodec(ObjectMapper mapper, String mimeType) {
+		if (mapper == null) {
+			throw new IllegalArgumentException("mapper must not be null");
+		}
+
+		if (StringUtils.isBlank(mimeType)) {
+			throw new IllegalArgumentException("mimeType must not be blank or null");
+		}
+
+		this.mapper = mapper;
+		this.mimeType = mimeType;
+	}
+
+	/**
+	 * Gets the shared codec using the default mapper configuration.
+	 * 
+	 * @return the default codec
+	 * @see #createDefaultObjectMapper()
+	 */
+	public static JacksonCodec getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Creates a mapper with the default configuration: Joda and Guava type
+	 * support, ISO-8601 dates, unknown properties ignored and Afterburner
+	 * bytecode generation for bean property access.
+	 * 
+	 * @return a new object mapper
+	 */
+	public static ObjectMapper createDefaultObjectMapper() {
+		return createDefaultObjectMapper(new JsonFactory());
+	}
+
+	/**
+	 * Creates a Smile codec with the default mapper configuration.
+	 * 
+	 * @return a new Smile codec
+	 */
+	public static JacksonCodec createSmileCodec() {
+		return new JacksonCodec(createDefaultObjectMapper(new SmileFactory()), SMILE);
+	}
+
+	/**
+	 * Creates a CBOR codec with the default mapper configuration.
+	 * 
+	 * @return a new CBOR codec
+	 */
+	public static JacksonCodec createCborCodec() {
+		return new JacksonCodec(createDefaultObjectMapper(new CBORFactory()), CBOR);
+	}
+
+	private static ObjectMapper createDefaultObjectMapper(JsonFactory factory) {
+		ObjectMapper mapper = new ObjectMapper(factory);
+
+		mapper.registerModule(new JodaModule());
+		mapper.registerModule(new GuavaModule());
+		mapper.registerModule(new AfterburnerModule());
+
+		mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+		mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+		return mapper;
+	}
+
+	public ObjectMapper getObjectMapper() {
+		return mapper;
+	}
+
+	public String getMimeType() {
+		return mimeType;
+	}
+
+	/**
+	 * Gets whether the codec produces a binary format, whose content cannot be
+	 * carried in a string.
+	 * 
+	 * @return <tt>true</tt> if the format is binary
+	 */
+	public boolean isBinary() {
+		return mapper.getFactory().canHandleBinaryNatively();
+	}
+
+	public <T> T readValue(String content, Type type) throws IOException {
+		return getReader(type).readValue(content);
+	}
+
+	public <T> T readValue(byte[] content, Type type) throws IOException {
+		return getReader(type).readValue(content);
+	}
+
+	/**
+	 * Creates a streaming parser over the content. Text content in a charset
+	 * other than a Unicode one is decoded with that charset, while Unicode
+	 * content is left to the parser's own encoding detection.
+	 * 
+	 * @param content
+	 *            the content to parse
+	 * @param charset
+	 *            the declared charset of text content
+	 * @return the parser
+	 */
+	public JsonParser createParser(InputStream content, Charset charset) throws IOException {
+		JsonFactory factory = mapper.getFactory();
+
+		if (isBinary() || charset == null || charset.name().startsWith("UTF-")) {
+			return factory.createParser(content);
+		}
+
+		return factory.createParser(new InputStreamReader(content, charset));
+	}
+
+	public byte[] writeValueAsBytes(Object value) throws IOException {
+		if (value == null) {
+			return mapper.writeValueAsBytes(null);
+		}
+
+		return getWriter(value.getClass()).writeValueAsBytes(value);
+	}
+
+	public String writeValueAsString(Object value) throws IOException {
+		if (value == null) {
+			return mapper.writeValueAsString(null);
+		}
+
+		return getWriter(value.getClass()).writeValueAsString(value);
+	}
+
+	/**
+	 * Resolves and caches the readers and writers for the specified types so
+	 * that the first request using them does not pay for Jackson's
+	 * introspection.
+	 * 
+	 * @param types
+	 *            the request and response types
+	 */
+	public void warmUp(Type... types) {
+		for (Type type : types) {
+			getReader(type);
+
+			if (type instanceof Class<?>) {
+				getWriter((Class<?>) type);
+			}
+		}
+	}
+
+	public ObjectReader getReader(Type type) {
+		ObjectReader reader = readers.get(type);
+
+		if (reader == null) {
+			reader = mapper.reader(mapper.getTypeFactory().constructType(type));
+			ObjectReader existing = readers.putIfAbsent(type, reader);
+
+			if (existing != null) {
+				reader = existing;
+			}
+		}
+
+		return reader;
+	}
+
+	public ObjectWriter getWriter(Class<?> clazz) {
+		ObjectWriter writer = writers.get(clazz);
+
+		if (writer == null) {
+			writer = mapper.writerWithType(clazz);
+			ObjectWriter existing = writers.putIfAbsent(clazz, writer);
+
+			if (existing != null) {
+				writer = existing;
+			}
+		}
+
+		return writer;
+	}
+}
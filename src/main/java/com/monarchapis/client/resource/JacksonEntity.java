@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.apache.commons.io.output.CloseShieldOutputStream;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+/**
+ * A repeatable request entity that serializes a value with a
+ * {@link JacksonCodec} directly into the connection's output stream.
+ * 
+ * <p>
+ * By default the value is streamed with chunked transfer encoding, without
+ * building an intermediate string or byte array, each time it is written. A
+ * buffered entity serializes the value once into an exact-sized array so the
+ * content length is known up front.
+ * </p>
+ * 
+ * <p>
+ * The asynchronous client serializes the value straight into the content
+ * encoder. Only the part the channel cannot take yet is held back, and it is
+ * released as it is written.
+ * </p>
+ */
+public class JacksonEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final JacksonCodec codec;
+
+	private final Object value;
+
+	private final boolean buffered;
+
+	/** The serialized value of a buffered entity. */
+	private volatile byte[] content;
+
+	/** The output of the asynchronous exchange in progress, if any. */
+	private EncoderOutputStream asyncOutput;
+
+	public JacksonEntity(JacksonCodec codec, Object value) {
+		this(codec, value, false);
+	}
+
+	/**
+	 * Creates a Jackson entity.
+	 * 
+	 * @param codec
+	 *            the codec used to serialize the value
+	 * @param value
+	 *            the value to serialize
+	 * @param buffered
+	 *            whether to serialize up front so the content length is known
+	 */
+	public JacksonEntity(JacksonCodec codec, Object value, boolean buffered) {
+		if (codec == null) {
+			throw new IllegalArgumentException("codec must not be null");
+		}
+
+		this.codec = codec;
+		this.value = value;
+		this.buffered = buffered;
+
+		setContentType(ContentType.create(codec.getMimeType(), codec.isBinary() ? null : UTF_8).toString());
+		setChunked(!buffered);
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		return true;
+	}
+
+	@Override
+	public long getContentLength() {
+		if (buffered) {
+			try {
+				return getBytes().length;
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not serialize entity", e);
+			}
+		}
+
+		return -1;
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+		return new ByteArrayInputStream(buffered ? getBytes() : codec.writeValueAsBytes(value));
+	}
+
+	@Override
+	public void writeTo(OutputStream outstream) throws IOException {
+		if (outstream == null) {
+			throw new IllegalArgumentException("Output stream may not be null");
+		}
+
+		if (buffered) {
+			outstream.write(getBytes());
+		} else if (value == null) {
+			outstream.write(codec.writeValueAsBytes(null));
+		} else {
+			// The writer closes its target when done, which must not close
+			// the connection's stream.
+			codec.getWriter(value.getClass()).writeValue(new CloseShieldOutputStream(outstream), value);
+		}
+
+		outstream.flush();
+	}
+
+	@Override
+	public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException {
+		EncoderOutputStream output = asyncOutput;
+
+		if (output == null) {
+			output = new EncoderOutputStream(encoder);
+			asyncOutput = output;
+			writeTo(output);
+		} else {
+			output.drain(encoder);
+		}
+
+		if (output.isDrained()) {
+			encoder.complete();
+			close();
+		}
+	}
+
+	@Override
+	public void close() {
+		asyncOutput = null;
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return false;
+	}
+
+	public Object getValue() {
+		return value;
+	}
+
+	private byte[] getBytes() throws IOException {
+		byte[] content = this.content;
+
+		if (content == null) {
+			content = codec.writeValueAsBytes(value);
+			this.content = content;
+		}
+
+		return content;
+	}
+
+	/**
+	 * Writes through to the content encoder as far as the channel accepts and
+	 * keeps the rest until the channel is writable again.
+	 */
+	private static class EncoderOutputStream extends OutputStream {
+		private final Deque<ByteBuffer> pending = new ArrayDeque<ByteBuffer>();
+
+		private ContentEncoder encoder;
+
+		EncoderOutputStream(ContentEncoder encoder) {
+			this.encoder = encoder;
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			ByteBuffer src = ByteBuffer.wrap(b, off, len);
+
+			if (pending.isEmpty()) {
+				writeFully(src);
+			}
+
+			if (src.hasRemaining()) {
+				// The generator reuses its buffer, so the rest is copied
+				ByteBuffer rest = ByteBuffer.allocate(src.remaining());
+				rest.put(src);
+				rest.flip();
+				pending.add(rest);
+			}
+		}
+
+		void drain(ContentEncoder encoder) throws IOException {
+			this.encoder = encoder;
+
+			while (!pending.isEmpty()) {
+				ByteBuffer buffer = pending.peek();
+				writeFully(buffer);
+
+				if (buffer.hasRemaining()) {
+					return;
+				}
+
+				pending.poll();
+			}
+		}
+
+		boolean isDrained() {
+			return pending.isEmpty();
+		}
+
+		private void writeFully(ByteBuffer src) throws IOException {
+			while (src.hasRemaining() && encoder.write(src) > 0) {
+			}
+		}
+	}
+}
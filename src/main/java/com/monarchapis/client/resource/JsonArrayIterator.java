@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.monarchapis.client.rest.RestException;
+
+/**
+ * Lazily deserializes the elements of a JSON array one at a time as they are
+ * read from the underlying stream, so memory use does not grow with the
+ * length of the array. Once the array has been read to the end, the rest of
+ * the input is read and the stream closed, so a pooled connection can be
+ * reused. Closing the iterator before then aborts the stream instead.
+ * 
+ * @param <T>
+ *            the element type
+ */
+public class JsonArrayIterator<T> implements Iterator<T>, Iterable<T>, Closeable {
+	private final JsonParser parser;
+
+	private final ObjectReader reader;
+
+	private final Closeable resource;
+
+	private T next;
+
+	private boolean hasNext;
+
+	private boolean closed;
+
+	/**
+	 * Creates an iterator over the array at the parser's current token.
+	 * 
+	 * @param parser
+	 *            a parser positioned on <code>START_ARRAY</code>
+	 * @param reader
+	 *            reads each element
+	 * @param resource
+	 *            closed with the iterator, e.g. the response, or <tt>null</tt>
+	 */
+	public JsonArrayIterator(JsonParser parser, ObjectReader reader, Closeable resource) {
+		if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+			throw new IllegalArgumentException("The parser is not positioned on an array");
+		}
+
+		this.parser = parser;
+		this.reader = reader;
+		this.resource = resource;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (hasNext) {
+			return true;
+		}
+
+		if (closed) {
+			return false;
+		}
+
+		try {
+			JsonToken token = parser.nextToken();
+
+			if (token == null || token == JsonToken.END_ARRAY) {
+				finish();
+				return false;
+			}
+
+			next = reader.readValue(parser);
+			hasNext = true;
+
+			return true;
+		} catch (IOException ioe) {
+			close();
+			throw new RestException(ioe);
+		}
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+
+		T value = next;
+		next = null;
+		hasNext = false;
+
+		return value;
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Returns this iterator so it can be used in a for-each loop, which can
+	 * only be done once.
+	 */
+	@Override
+	public Iterator<T> iterator() {
+		return this;
+	}
+
+	/**
+	 * Reads the rest of the input, e.g. what follows an array nested in an
+	 * object, then closes the stream so that the connection is released rather
+	 * than aborted.
+	 */
+	private void finish() {
+		try {
+			while (parser.nextToken() != null) {
+				parser.skipChildren();
+			}
+		} catch (IOException ioe) {
+			// The array was read whole, so only the connection is lost
+			close();
+			return;
+		}
+
+		closed = true;
+
+		try {
+			parser.close();
+		} catch (IOException ignore) {
+		}
+
+		if (resource != null) {
+			try {
+				resource.close();
+			} catch (IOException ignore) {
+			}
+		}
+	}
+
+	/**
+	 * Closes the iterator, aborting the stream if the array has not been read
+	 * to the end.
+	 */
+	@Override
+	public void close() {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+		next = null;
+		hasNext = false;
+
+		// The resource is closed first so that a response read only part way
+		// is aborted; closing the parser first would close its source, which
+		// drains the rest of the body to reuse the connection.
+		if (resource != null) {
+			try {
+				resource.close();
+			} catch (IOException ignore) {
+			}
+		}
+
+		try {
+			parser.close();
+		} catch (IOException ignore) {
+		}
+	}
+}
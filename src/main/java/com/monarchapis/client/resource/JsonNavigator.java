@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonPointer;
+import com.fasterxml.jackson.core.JsonToken;
+
+/**
+ * Positions a streaming parser on the value addressed by a JSON Pointer,
+ * skipping everything before it without building a tree.
+ */
+final class JsonNavigator {
+	private JsonNavigator() {
+	}
+
+	/**
+	 * Advances the parser to the first token of the value at the pointer.
+	 * 
+	 * @param parser
+	 *            a parser not yet advanced or positioned on a value
+	 * @param pointer
+	 *            the JSON Pointer, empty for the root value
+	 * @return <tt>true</tt> if the value exists, in which case the parser is
+	 *         on its first token
+	 * @throws IOException
+	 *             if the content could not be read
+	 */
+	static boolean seek(JsonParser parser, String pointer) throws IOException {
+		JsonPointer ptr = JsonPointer.compile(pointer == null ? "" : pointer);
+		JsonToken token = parser.getCurrentToken();
+
+		if (token == null) {
+			token = parser.nextToken();
+		}
+
+		while (token != null && !ptr.matches()) {
+			if (token == JsonToken.START_OBJECT) {
+				if (!seekField(parser, ptr.getMatchingProperty())) {
+					return false;
+				}
+			} else if (token == JsonToken.START_ARRAY) {
+				if (!seekElement(parser, ptr.getMatchingIndex())) {
+					return false;
+				}
+			} else {
+				return false;
+			}
+
+			ptr = ptr.tail();
+			token = parser.getCurrentToken();
+		}
+
+		return token != null;
+	}
+
+	private static boolean seekField(JsonParser parser, String name) throws IOException {
+		while (parser.nextToken() == JsonToken.FIELD_NAME) {
+			boolean matches = name.equals(parser.getCurrentName());
+			parser.nextToken();
+
+			if (matches) {
+				return true;
+			}
+
+			parser.skipChildren();
+		}
+
+		return false;
+	}
+
+	private static boolean seekElement(JsonParser parser, int index) throws IOException {
+		if (index < 0) {
+			return false;
+		}
+
+		for (int i = 0; i <= index; i++) {
+			if (parser.nextToken() == JsonToken.END_ARRAY) {
+				return false;
+			}
+
+			if (i < index) {
+				parser.skipChildren();
+			}
+		}
+
+		return true;
+	}
+}
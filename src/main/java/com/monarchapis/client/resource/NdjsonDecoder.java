@@ -0,0 +1,681 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.monarchapis.client.rest.Callback;
+import com.monarchapis.client.rest.RestException;
+
+/**
+ * Decodes newline-delimited JSON (NDJSON / JSON Lines) in parallel.
+ *
+ * <p>
+ * Bytes are fed in as they arrive and split into lines, which are grouped
+ * into batches and deserialized on an executor, by default a shared
+ * <code>ForkJoinPool</code>. Records are handed to the {@link RecordHandler}
+ * one at a time, in arrival order unless ordering is turned off, in which
+ * case each batch is delivered as soon as it is decoded.
+ * </p>
+ *
+ * <p>
+ * At most <code>maxInFlight</code> batches are decoded or awaiting delivery
+ * at any time. A batch stays in flight until the handler has received all of
+ * its records, so a slow handler holds back further reads and the backlog
+ * stays on the network rather than in the heap. Batches completed by a chunk
+ * of content beyond that limit are held back and submitted as earlier ones
+ * are delivered, and there is no capacity for more content until they are.
+ * A line longer than <code>maxLineLength</code> fails the decoding.
+ * </p>
+ *
+ * <p>
+ * A decoder reads a single response and is fed from a single thread. The
+ * handler is called by one decoding thread at a time, outside of the
+ * decoder's lock, so a slow handler does not block the feeding thread from
+ * checking for capacity.
+ * </p>
+ *
+ * @param <T>
+ *            the record type
+ */
+public class NdjsonDecoder<T> {
+	private static final ForkJoinPool DEFAULT_POOL = new ForkJoinPool();
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private final ObjectReader reader;
+
+	private final RecordHandler<? super T> handler;
+
+	private Executor executor = DEFAULT_POOL;
+
+	private boolean ordered = true;
+
+	private int maxInFlight = Runtime.getRuntime().availableProcessors() * 2;
+
+	private int batchSize = 256;
+
+	private int maxLineLength = 8 * 1024 * 1024;
+
+	// State owned by the feeding thread
+
+	private byte[] partialLine = new byte[BUFFER_SIZE];
+
+	private int partialLength;
+
+	private List<byte[]> batch = new ArrayList<byte[]>();
+
+	// State shared with the decoding threads, guarded by lock
+
+	private final Object lock = new Object();
+
+	/** Complete batches waiting for capacity, in arrival order. */
+	private final Queue<List<byte[]>> held = new ArrayDeque<List<byte[]>>();
+
+	private long submitted;
+
+	/** Batches decoded ahead of their turn, keyed by sequence. */
+	private final Map<Long, List<T>> decoded = new HashMap<Long, List<T>>();
+
+	/** Batches ready to be handed to the handler, in delivery order. */
+	private final Queue<List<T>> ready = new ArrayDeque<List<T>>();
+
+	/** The sequence of the next batch to become ready when ordered. */
+	private long nextSequence;
+
+	/** Whether a thread is handing ready batches to the handler. */
+	private boolean draining;
+
+	private int inFlight;
+
+	private long records;
+
+	private boolean finished;
+
+	private boolean done;
+
+	private Throwable failure;
+
+	private Runnable capacityListener;
+
+	private Callback<Long> completionCallback;
+
+	public NdjsonDecoder(ObjectReader reader, RecordHandler<? super T> handler) {
+		if (reader == null) {
+			throw new IllegalArgumentException("reader must not be null");
+		}
+
+		if (handler == null) {
+			throw new IllegalArgumentException("handler must not be null");
+		}
+
+		this.reader = reader;
+		this.handler = handler;
+	}
+
+	/**
+	 * Decodes the whole stream on the calling thread's behalf, blocking while
+	 * the maximum number of batches is in flight.
+	 *
+	 * @param content
+	 *            the NDJSON content
+	 * @return the number of records delivered
+	 * @throws RestException
+	 *             if the content could not be read or decoded, or the handler
+	 *             failed
+	 */
+	public long decode(InputStream content) throws RestException {
+		byte[] buffer = new byte[BUFFER_SIZE];
+
+		try {
+			int read;
+
+			while (true) {
+				awaitCapacity();
+
+				if ((read = content.read(buffer)) == -1) {
+					break;
+				}
+
+				feed(buffer, 0, read);
+			}
+		} catch (IOException ioe) {
+			fail(ioe);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			fail(e);
+		}
+
+		finish();
+
+		return await();
+	}
+
+	/**
+	 * Feeds the next bytes of the content. Complete lines are submitted for
+	 * decoding straight away.
+	 *
+	 * @throws RestException
+	 *             if decoding has already failed
+	 */
+	public void feed(byte[] bytes, int offset, int length) throws RestException {
+		checkFailure();
+
+		int start = offset;
+		int end = offset + length;
+
+		for (int i = offset; i < end; i++) {
+			if (bytes[i] == '\n') {
+				addLine(bytes, start, i);
+				start = i + 1;
+
+				if (batch.size() >= batchSize) {
+					submitBatch();
+				}
+			}
+		}
+
+		appendPartial(bytes, start, end);
+
+		// Submit what is complete rather than waiting for a full batch, so a
+		// slow stream still makes progress
+		submitBatch();
+	}
+
+	/**
+	 * Marks the end of the content, submitting a last line that lacks a
+	 * trailing newline.
+	 */
+	public void finish() {
+		if (partialLength > 0) {
+			byte[] line = Arrays.copyOf(partialLine, partialLength);
+			partialLength = 0;
+
+			if (!isBlank(line)) {
+				batch.add(line);
+			}
+		}
+
+		submitBatch();
+
+		Callback<Long> callback = null;
+
+		synchronized (lock) {
+			finished = true;
+			callback = checkDone();
+		}
+
+		notifyCompletion(callback);
+	}
+
+	/**
+	 * Waits until every record has been delivered.
+	 *
+	 * @return the number of records delivered
+	 * @throws RestException
+	 *             if decoding failed
+	 */
+	public long await() throws RestException {
+		synchronized (lock) {
+			try {
+				while (!done && failure == null) {
+					lock.wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new RestException(e);
+			}
+
+			checkFailure();
+
+			return records;
+		}
+	}
+
+	/**
+	 * Waits until fewer than the maximum number of batches are in flight.
+	 */
+	public void awaitCapacity() throws InterruptedException {
+		synchronized (lock) {
+			while (isFull() && failure == null) {
+				lock.wait();
+			}
+		}
+	}
+
+	public boolean hasCapacity() {
+		synchronized (lock) {
+			return !isFull() || failure != null;
+		}
+	}
+
+	/**
+	 * Runs the listener once there is capacity for more content, immediately
+	 * if there already is. Also runs on failure so that a suspended reader
+	 * can notice it.
+	 */
+	public void onCapacity(Runnable listener) {
+		synchronized (lock) {
+			if (isFull() && failure == null) {
+				capacityListener = listener;
+				return;
+			}
+		}
+
+		listener.run();
+	}
+
+	/**
+	 * Sets the callback notified once every record has been delivered or
+	 * decoding has failed.
+	 */
+	public void onComplete(Callback<Long> callback) {
+		synchronized (lock) {
+			completionCallback = callback;
+		}
+	}
+
+	/**
+	 * Fails decoding, e.g. because the exchange failed. Records not yet
+	 * delivered are dropped.
+	 */
+	public void fail(Throwable t) {
+		Runnable listener;
+		Callback<Long> callback;
+
+		synchronized (lock) {
+			if (failure != null || done) {
+				return;
+			}
+
+			failure = t;
+			held.clear();
+			decoded.clear();
+			ready.clear();
+			lock.notifyAll();
+			listener = capacityListener;
+			capacityListener = null;
+			callback = completionCallback;
+			completionCallback = null;
+		}
+
+		if (listener != null) {
+			listener.run();
+		}
+
+		if (callback != null) {
+			if (t instanceof CancellationException) {
+				callback.cancelled();
+			} else {
+				callback.failed(t instanceof Exception ? (Exception) t : new RestException(t));
+			}
+		}
+	}
+
+	public Throwable getFailure() {
+		synchronized (lock) {
+			return failure;
+		}
+	}
+
+	private void checkFailure() {
+		Throwable failure = getFailure();
+
+		if (failure instanceof RestException) {
+			throw (RestException) failure;
+		}
+
+		if (failure != null) {
+			throw new RestException(failure);
+		}
+	}
+
+	private void addLine(byte[] bytes, int start, int end) {
+		checkLineLength(partialLength + end - start);
+
+		byte[] line;
+
+		if (partialLength > 0) {
+			appendPartial(bytes, start, end);
+			line = Arrays.copyOf(partialLine, partialLength);
+			partialLength = 0;
+		} else {
+			line = Arrays.copyOfRange(bytes, start, end);
+		}
+
+		if (!isBlank(line)) {
+			batch.add(line);
+		}
+	}
+
+	private void appendPartial(byte[] bytes, int start, int end) {
+		int length = end - start;
+
+		if (length == 0) {
+			return;
+		}
+
+		checkLineLength(partialLength + length);
+
+		if (partialLength + length > partialLine.length) {
+			partialLine = Arrays.copyOf(partialLine, Math.max(partialLine.length * 2, partialLength + length));
+		}
+
+		System.arraycopy(bytes, start, partialLine, partialLength, length);
+		partialLength += length;
+	}
+
+	private void checkLineLength(int length) {
+		if (length > maxLineLength) {
+			RestException e = new RestException("NDJSON line exceeds the maximum length of " + maxLineLength
+					+ " bytes");
+			fail(e);
+			throw e;
+		}
+	}
+
+	private static boolean isBlank(byte[] line) {
+		for (byte b : line) {
+			if (b != ' ' && b != '\t' && b != '\r') {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private void submitBatch() {
+		if (batch.isEmpty()) {
+			return;
+		}
+
+		List<Runnable> tasks;
+
+		synchronized (lock) {
+			if (failure != null) {
+				return;
+			}
+
+			held.add(batch);
+			tasks = takeSubmittable();
+		}
+
+		batch = new ArrayList<byte[]>();
+		execute(tasks);
+	}
+
+	/**
+	 * Whether no more batches may be submitted, because the maximum is in
+	 * flight or batches are already waiting for capacity.
+	 */
+	private boolean isFull() {
+		return inFlight >= maxInFlight || !held.isEmpty();
+	}
+
+	/**
+	 * Takes held batches off the queue while there is capacity for them. Must
+	 * be called holding the lock, and the tasks executed after releasing it.
+	 */
+	private List<Runnable> takeSubmittable() {
+		List<Runnable> tasks = null;
+
+		while (inFlight < maxInFlight && !held.isEmpty()) {
+			if (tasks == null) {
+				tasks = new ArrayList<Runnable>();
+			}
+
+			tasks.add(newTask(submitted++, held.poll()));
+			inFlight++;
+		}
+
+		return tasks;
+	}
+
+	private void execute(List<Runnable> tasks) {
+		if (tasks != null) {
+			for (Runnable task : tasks) {
+				executor.execute(task);
+			}
+		}
+	}
+
+	private Runnable newTask(final long sequence, final List<byte[]> lines) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				List<T> values = new ArrayList<T>(lines.size());
+
+				try {
+					for (byte[] line : lines) {
+						values.add(reader.<T> readValue(line));
+					}
+				} catch (Exception e) {
+					fail(e);
+					return;
+				}
+
+				deliver(sequence, values);
+			}
+		};
+	}
+
+	/**
+	 * Queues a decoded batch for delivery and, unless another thread is
+	 * already doing so, delivers the ready batches.
+	 */
+	private void deliver(long sequence, List<T> values) {
+		synchronized (lock) {
+			if (failure != null) {
+				return;
+			}
+
+			if (ordered) {
+				decoded.put(sequence, values);
+
+				while ((values = decoded.remove(nextSequence)) != null) {
+					ready.add(values);
+					nextSequence++;
+				}
+			} else {
+				ready.add(values);
+			}
+
+			if (draining) {
+				return;
+			}
+
+			draining = true;
+		}
+
+		drain();
+	}
+
+	/**
+	 * Hands ready batches to the handler until none are left. Only one thread
+	 * drains at a time, and the lock is not held while the handler runs.
+	 */
+	private void drain() {
+		while (true) {
+			List<T> values;
+
+			synchronized (lock) {
+				values = failure == null ? ready.poll() : null;
+
+				if (values == null) {
+					draining = false;
+					return;
+				}
+			}
+
+			try {
+				for (T value : values) {
+					handler.onRecord(value);
+				}
+			} catch (Exception e) {
+				synchronized (lock) {
+					draining = false;
+				}
+
+				fail(e);
+				return;
+			}
+
+			Runnable listener = null;
+			List<Runnable> tasks;
+			Callback<Long> callback;
+
+			synchronized (lock) {
+				records += values.size();
+				inFlight--;
+				tasks = failure == null ? takeSubmittable() : null;
+				lock.notifyAll();
+
+				if (capacityListener != null && !isFull()) {
+					listener = capacityListener;
+					capacityListener = null;
+				}
+
+				callback = checkDone();
+			}
+
+			execute(tasks);
+
+			if (listener != null) {
+				listener.run();
+			}
+
+			notifyCompletion(callback);
+		}
+	}
+
+	/**
+	 * Marks the decoder done once the content has ended and everything has
+	 * been delivered, returning the callback to notify if so.
+	 */
+	private Callback<Long> checkDone() {
+		if (!finished || inFlight > 0 || !held.isEmpty() || done || failure != null) {
+			return null;
+		}
+
+		done = true;
+		lock.notifyAll();
+
+		Callback<Long> callback = completionCallback;
+		completionCallback = null;
+
+		return callback;
+	}
+
+	private void notifyCompletion(Callback<Long> callback) {
+		if (callback != null) {
+			long count;
+
+			synchronized (lock) {
+				count = records;
+			}
+
+			callback.completed(count);
+		}
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the executor lines are decoded on. Defaults to a shared
+	 * <code>ForkJoinPool</code> sized to the number of processors.
+	 *
+	 * @param executor
+	 *            the executor
+	 */
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	public boolean isOrdered() {
+		return ordered;
+	}
+
+	/**
+	 * Sets whether records are delivered in the order they were received.
+	 * Defaults to <tt>true</tt>.
+	 *
+	 * @param ordered
+	 *            whether to preserve order
+	 */
+	public void setOrdered(boolean ordered) {
+		this.ordered = ordered;
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * Sets how many batches may be decoding or awaiting delivery before
+	 * reading pauses. Defaults to twice the number of processors.
+	 *
+	 * @param maxInFlight
+	 *            the maximum number of batches in flight
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = Math.max(1, maxInFlight);
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Sets the maximum number of lines decoded per task. Defaults to 256.
+	 *
+	 * @param batchSize
+	 *            the maximum lines per batch
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = Math.max(1, batchSize);
+	}
+
+	public int getMaxLineLength() {
+		return maxLineLength;
+	}
+
+	/**
+	 * Sets the maximum length of a line in bytes, beyond which decoding fails
+	 * rather than buffering the line. Defaults to 8 MiB.
+	 *
+	 * @param maxLineLength
+	 *            the maximum line length
+	 */
+	public void setMaxLineLength(int maxLineLength) {
+		this.maxLineLength = Math.max(1, maxLineLength);
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+import com.monarchapis.client.rest.RestException;
+import com.monarchapis.client.rest.RestResponse;
+
+/**
+ * Feeds NDJSON content to a {@link NdjsonDecoder} as it arrives on the
+ * asynchronous client. Input is suspended while the decoder has no capacity,
+ * so a slow record handler pushes back on the connection instead of letting
+ * content pile up in memory. The result is <tt>null</tt> unless the status
+ * indicates an error, in which case the buffered error response is returned
+ * and nothing is fed to the decoder.
+ */
+class NdjsonResponseConsumer extends AbstractAsyncResponseConsumer<RestResponse> {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final NdjsonDecoder<?> decoder;
+
+	private final ByteBuffer chunk = ByteBuffer.allocate(8192);
+
+	private HttpResponse response;
+
+	private ByteArrayOutputStream error;
+
+	NdjsonResponseConsumer(NdjsonDecoder<?> decoder) {
+		this.decoder = decoder;
+	}
+
+	@Override
+	protected void onResponseReceived(HttpResponse response) {
+		if (response.getStatusLine().getStatusCode() >= 400) {
+			this.response = response;
+			error = new ByteArrayOutputStream();
+		}
+	}
+
+	@Override
+	protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) {
+	}
+
+	@Override
+	protected void onContentReceived(ContentDecoder contentDecoder, final IOControl ioctrl) throws IOException {
+		Throwable failure = decoder.getFailure();
+
+		if (failure != null) {
+			throw new IOException(failure);
+		}
+
+		int read;
+
+		while (decoder.hasCapacity() && (read = contentDecoder.read(chunk)) > 0) {
+			if (error != null) {
+				error.write(chunk.array(), 0, read);
+			} else {
+				feed(read);
+			}
+
+			chunk.clear();
+		}
+
+		if (!decoder.hasCapacity()) {
+			ioctrl.suspendInput();
+			decoder.onCapacity(new Runnable() {
+				@Override
+				public void run() {
+					ioctrl.requestInput();
+				}
+			});
+		}
+	}
+
+	/**
+	 * Feeds the decoder, reporting a failure as an I/O error so that it fails
+	 * the exchange rather than escaping into the I/O reactor.
+	 */
+	private void feed(int length) throws IOException {
+		try {
+			decoder.feed(chunk.array(), 0, length);
+		} catch (RestException e) {
+			throw new IOException(e.getCause() != null ? e.getCause() : e);
+		}
+	}
+
+	@Override
+	protected RestResponse buildResult(HttpContext context) {
+		if (error != null) {
+			HttpEntity entity = response.getEntity();
+			ContentType contentType = entity != null ? ContentType.get(entity) : null;
+			Charset charset = contentType != null && contentType.getCharset() != null ? contentType.getCharset()
+					: UTF_8;
+
+			return new RestResponse(response.getStatusLine().getStatusCode(), error.toByteArray(), charset,
+					response.getAllHeaders());
+		}
+
+		decoder.finish();
+
+		return null;
+	}
+
+	@Override
+	protected void releaseResources() {
+		response = null;
+		error = null;
+	}
+}
@@ -0,0 +1,440 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.monarchapis.client.rest.Callback;
+import com.monarchapis.client.rest.RestAsyncClient;
+import com.monarchapis.client.rest.RestResponse;
+
+/**
+ * Publishes the items of a paginated collection, fetching pages with the
+ * asynchronous client as the subscriber asks for items. While the current page
+ * is consumed, up to <code>prefetch</code> further pages are fetched ahead, so
+ * consumption overlaps with the network without unbounded buffering.
+ * 
+ * <p>
+ * Pages are read and items handed to the subscriber on an executor, by
+ * default a shared pool of daemon threads, one per processor, so a slow
+ * subscriber never holds up the asynchronous client's I/O reactor.
+ * </p>
+ * 
+ * <p>
+ * Each subscription pages through the collection from the start. Reactive
+ * Streams does not allow <tt>null</tt> elements, so <tt>null</tt> entries in a
+ * page, such as JSON <code>null</code>s in the item array, are skipped rather
+ * than delivered.
+ * </p>
+ * 
+ * @param <T>
+ *            the item type
+ */
+public class PagePublisher<T> implements Publisher<T> {
+	private static final Executor DEFAULT_EXECUTOR = newExecutor(Runtime.getRuntime().availableProcessors());
+
+	/**
+	 * Creates the prepared, and signed, client for a page URL.
+	 */
+	public interface ClientFactory {
+		RestAsyncClient newClient(String url);
+	}
+
+	/**
+	 * Reads the items of a page, throwing if the response is an error. The
+	 * publisher closes the response once the next page URL has been found.
+	 */
+	public interface PageReader<T> {
+		List<T> read(RestResponse response) throws Exception;
+	}
+
+	private final String url;
+
+	private final Pagination pagination;
+
+	private final ContentNegotiator contentNegotiator;
+
+	private final ClientFactory clientFactory;
+
+	private final PageReader<T> pageReader;
+
+	private int prefetch = 1;
+
+	private Executor executor = DEFAULT_EXECUTOR;
+
+	public PagePublisher(String url, Pagination pagination, ContentNegotiator contentNegotiator,
+			ClientFactory clientFactory, PageReader<T> pageReader) {
+		this.url = url;
+		this.pagination = pagination;
+		this.contentNegotiator = contentNegotiator;
+		this.clientFactory = clientFactory;
+		this.pageReader = pageReader;
+	}
+
+	private static Executor newExecutor(int threads) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "page-publisher");
+						thread.setDaemon(true);
+
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+
+		return executor;
+	}
+
+	@Override
+	public void subscribe(Subscriber<? super T> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("subscriber must not be null");
+		}
+
+		PageSubscription subscription = new PageSubscription(subscriber, pagination.first(url), prefetch, executor);
+		subscriber.onSubscribe(subscription);
+		subscription.drain();
+	}
+
+	public int getPrefetch() {
+		return prefetch;
+	}
+
+	/**
+	 * Sets how many pages may be fetched ahead of the page being consumed.
+	 * Defaults to 1.
+	 * 
+	 * @param prefetch
+	 *            the prefetch depth in pages
+	 */
+	public void setPrefetch(int prefetch) {
+		this.prefetch = Math.max(0, prefetch);
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the executor pages are read and items delivered on. Each
+	 * subscription still signals its subscriber one call at a time. Defaults to
+	 * a shared pool of daemon threads, one per processor.
+	 * 
+	 * @param executor
+	 *            the executor
+	 */
+	public void setExecutor(Executor executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("executor must not be null");
+		}
+
+		this.executor = executor;
+	}
+
+	private final class PageSubscription implements Subscription {
+		private final Subscriber<? super T> subscriber;
+
+		private final int prefetch;
+
+		private final Executor executor;
+
+		private final AtomicInteger wip = new AtomicInteger();
+
+		// Guarded by this
+
+		private final ArrayDeque<List<T>> pages = new ArrayDeque<List<T>>();
+
+		private int index;
+
+		private long requested;
+
+		private String nextUrl;
+
+		private boolean fetching;
+
+		private Throwable error;
+
+		/** A failure signalled at once, without waiting for a fetch. */
+		private Throwable violation;
+
+		private volatile boolean cancelled;
+
+		PageSubscription(Subscriber<? super T> subscriber, String firstUrl, int prefetch, Executor executor) {
+			this.subscriber = subscriber;
+			this.nextUrl = firstUrl;
+			this.prefetch = prefetch;
+			this.executor = executor;
+		}
+
+		@Override
+		public void request(long n) {
+			synchronized (this) {
+				if (n <= 0) {
+					violation = new IllegalArgumentException("Requested " + n + " items, which is not positive");
+					pages.clear();
+				} else {
+					requested = requested + n < 0 ? Long.MAX_VALUE : requested + n;
+				}
+			}
+
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+
+			synchronized (this) {
+				pages.clear();
+			}
+		}
+
+		/**
+		 * Delivers what is buffered and demanded on the executor, then starts
+		 * the next fetch if one is due. Runs on one thread at a time; calls made
+		 * while it runs make it loop again.
+		 */
+		void drain() {
+			if (wip.getAndIncrement() != 0) {
+				return;
+			}
+
+			try {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						drainLoop();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				synchronized (this) {
+					violation = e;
+				}
+
+				// Only the failure is signalled, so it can be on this thread
+				drainLoop();
+			}
+		}
+
+		private void drainLoop() {
+			int missed = 1;
+
+			do {
+				if (!emit()) {
+					return;
+				}
+
+				fetch();
+				missed = wip.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		/**
+		 * Emits items while there is demand, returning <tt>false</tt> once the
+		 * subscription has ended.
+		 */
+		private boolean emit() {
+			while (true) {
+				T item = null;
+				boolean end = false;
+				Throwable failure = null;
+
+				synchronized (this) {
+					if (cancelled) {
+						return false;
+					}
+
+					if (violation != null) {
+						end = true;
+						failure = violation;
+					} else if (requested > 0 && !pages.isEmpty()) {
+						List<T> page = pages.peek();
+						item = page.get(index++);
+
+						if (index == page.size()) {
+							pages.poll();
+							index = 0;
+						}
+
+						if (requested != Long.MAX_VALUE) {
+							requested--;
+						}
+					} else if (pages.isEmpty() && !fetching && (nextUrl == null || error != null)) {
+						end = true;
+						failure = error;
+					}
+				}
+
+				if (item != null) {
+					try {
+						subscriber.onNext(item);
+					} catch (RuntimeException e) {
+						// A subscriber that throws is treated as having cancelled
+						cancelled = true;
+						subscriber.onError(e);
+
+						return false;
+					}
+				} else if (end) {
+					// Cancelled first, so that a fetch still in flight delivers
+					// nothing after the terminal signal
+					cancelled = true;
+
+					if (failure != null) {
+						subscriber.onError(failure);
+					} else {
+						subscriber.onComplete();
+					}
+
+					return false;
+				} else {
+					return true;
+				}
+			}
+		}
+
+		private void fetch() {
+			final String pageUrl;
+
+			synchronized (this) {
+				// Only fetch while the subscriber is consuming, and no more than
+				// the prefetch depth ahead of the current page
+				if (cancelled || fetching || error != null || nextUrl == null || pages.size() > prefetch
+						|| (requested == 0 && pages.isEmpty())) {
+					return;
+				}
+
+				fetching = true;
+				pageUrl = nextUrl;
+			}
+
+			try {
+				clientFactory.newClient(pageUrl).send(new Callback<RestResponse>() {
+					@Override
+					public void completed(final RestResponse response) {
+						// Read the page off the I/O reactor thread
+						try {
+							executor.execute(new Runnable() {
+								@Override
+								public void run() {
+									read(pageUrl, response);
+								}
+							});
+						} catch (RejectedExecutionException e) {
+							response.close();
+							fetched(e);
+						}
+					}
+
+					@Override
+					public void failed(Exception ex) {
+						fetched(ex);
+					}
+
+					@Override
+					public void cancelled() {
+						fetched(new CancellationException());
+					}
+				});
+			} catch (RuntimeException e) {
+				fetched(e);
+			}
+		}
+
+		/**
+		 * Reads a fetched page and finds the next page URL, then closes the
+		 * response.
+		 */
+		private void read(String pageUrl, RestResponse response) {
+			List<T> items = null;
+			String next = null;
+			Throwable failure = null;
+
+			try {
+				items = pageReader.read(response);
+				next = pagination.next(pageUrl, response, items != null ? items.size() : 0, contentNegotiator);
+			} catch (Throwable t) {
+				failure = t;
+			} finally {
+				response.close();
+			}
+
+			synchronized (this) {
+				fetching = false;
+
+				if (failure != null) {
+					error = failure;
+				} else {
+					if (items != null && !cancelled) {
+						items = withoutNulls(items);
+
+						if (!items.isEmpty()) {
+							pages.add(items);
+						}
+					}
+
+					// Guard against a server handing back the same page
+					nextUrl = pageUrl.equals(next) ? null : next;
+				}
+			}
+
+			drain();
+		}
+
+		/**
+		 * Drops <tt>null</tt> entries, which may not be passed to
+		 * <code>onNext</code>.
+		 */
+		private List<T> withoutNulls(List<T> items) {
+			if (!items.contains(null)) {
+				return items;
+			}
+
+			List<T> copy = new ArrayList<T>(items);
+			copy.removeAll(Collections.singleton(null));
+
+			return copy;
+		}
+
+		private void fetched(Throwable failure) {
+			synchronized (this) {
+				fetching = false;
+				error = failure;
+			}
+
+			drain();
+		}
+	}
+}
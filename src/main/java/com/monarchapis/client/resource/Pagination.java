@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URIBuilder;
+
+import com.monarchapis.client.rest.HttpHeader;
+import com.monarchapis.client.rest.RestException;
+import com.monarchapis.client.rest.RestResponse;
+
+/**
+ * Works out the URL of each page of a collection from the response to the
+ * previous page. Instances hold no per-traversal state and can be shared.
+ */
+public abstract class Pagination {
+	private static final Pattern LINK = Pattern.compile("<([^>]*)>([^,<]*)");
+
+	private static final Pattern REL = Pattern.compile("(?i);\\s*rel\\s*=\\s*(?:\"([^\"]*)\"|([^;\\s]*))");
+
+	/**
+	 * Gets the URL of the first page.
+	 * 
+	 * @param url
+	 *            the collection URL
+	 * @return the first page URL
+	 */
+	public String first(String url) {
+		return url;
+	}
+
+	/**
+	 * Gets the URL of the page after the one just received.
+	 * 
+	 * @param url
+	 *            the URL of the page received
+	 * @param response
+	 *            the response to it
+	 * @param itemCount
+	 *            the number of items it contained
+	 * @param contentNegotiator
+	 *            reads values from the response
+	 * @return the next page URL or <tt>null</tt> if it was the last page
+	 */
+	public abstract String next(String url, RestResponse response, int itemCount, ContentNegotiator contentNegotiator);
+
+	/**
+	 * Follows an opaque cursor found in the response, such as
+	 * <code>/meta/next_cursor</code>, passing it back as a query parameter.
+	 * Pagination ends when the cursor is missing or empty.
+	 * 
+	 * @param parameter
+	 *            the query parameter carrying the cursor
+	 * @param pointer
+	 *            JSON Pointer to the cursor in the response
+	 * @return the pagination
+	 */
+	public static Pagination cursor(final String parameter, final String pointer) {
+		return new Pagination() {
+			@Override
+			public String next(String url, RestResponse response, int itemCount, ContentNegotiator contentNegotiator) {
+				String cursor;
+
+				try {
+					cursor = contentNegotiator.readValueAt(response, pointer, String.class);
+				} catch (Exception e) {
+					throw new RestException(e);
+				}
+
+				return StringUtils.isEmpty(cursor) ? null : setQuery(url, parameter, cursor);
+			}
+		};
+	}
+
+	/**
+	 * Follows the <code>rel="next"</code> URL of the <code>Link</code>
+	 * header, as described by RFC 5988. Pagination ends when there is none.
+	 * 
+	 * @return the pagination
+	 */
+	public static Pagination link() {
+		return new Pagination() {
+			@Override
+			public String next(String url, RestResponse response, int itemCount, ContentNegotiator contentNegotiator) {
+				for (HttpHeader header : response.getAllHeaders()) {
+					if ("Link".equalsIgnoreCase(header.getName())) {
+						String next = findNext(header.getValue());
+
+						if (next != null) {
+							return URI.create(url).resolve(next).toString();
+						}
+					}
+				}
+
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * Pages by item offset, e.g. <code>offset=200&amp;limit=100</code>.
+	 * Pagination ends with the first page holding fewer items than the limit.
+	 * 
+	 * @param offsetParameter
+	 *            the query parameter carrying the offset
+	 * @param limitParameter
+	 *            the query parameter carrying the page size
+	 * @param limit
+	 *            the page size
+	 * @return the pagination
+	 */
+	public static Pagination offset(final String offsetParameter, final String limitParameter, final int limit) {
+		return new Pagination() {
+			@Override
+			public String first(String url) {
+				return setQuery(url, limitParameter, String.valueOf(limit));
+			}
+
+			@Override
+			public String next(String url, RestResponse response, int itemCount, ContentNegotiator contentNegotiator) {
+				if (itemCount < limit) {
+					return null;
+				}
+
+				String offset = getQuery(url, offsetParameter);
+				long next = (offset != null ? Long.parseLong(offset) : 0) + itemCount;
+
+				return setQuery(url, offsetParameter, String.valueOf(next));
+			}
+		};
+	}
+
+	private static String findNext(String linkHeader) {
+		Matcher link = LINK.matcher(linkHeader);
+
+		while (link.find()) {
+			Matcher rel = REL.matcher(link.group(2));
+
+			while (rel.find()) {
+				String relations = rel.group(1) != null ? rel.group(1) : rel.group(2);
+
+				for (String relation : StringUtils.split(relations)) {
+					if ("next".equalsIgnoreCase(relation)) {
+						return link.group(1).trim();
+					}
+				}
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Replaces the value of a query parameter in the URL.
+	 */
+	protected static String setQuery(String url, String name, String value) {
+		try {
+			return new URIBuilder(url).setParameter(name, value).build().toString();
+		} catch (URISyntaxException e) {
+			throw new RestException(e);
+		}
+	}
+
+	/**
+	 * Gets the value of a query parameter in the URL, or <tt>null</tt> if it
+	 * is absent.
+	 */
+	protected static String getQuery(String url, String name) {
+		try {
+			for (NameValuePair parameter : new URIBuilder(url).getQueryParams()) {
+				if (name.equals(parameter.getName())) {
+					return parameter.getValue();
+				}
+			}
+		} catch (URISyntaxException e) {
+			throw new RestException(e);
+		}
+
+		return null;
+	}
+}
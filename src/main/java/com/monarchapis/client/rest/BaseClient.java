@@ -21,29 +21,37 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
+import java.net.URI;
 import java.net.URLEncoder;
+import java.nio.charset.Charset;
+import java.nio.charset.UnsupportedCharsetException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.UUID;
 
 import org.apache.commons.lang3.StringUtils;
-import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.entity.ContentType;
 import org.apache.http.entity.FileEntity;
 import org.apache.http.entity.StringEntity;
-import org.apache.http.util.EntityUtils;
+import org.apache.http.protocol.HTTP;
 import org.joda.time.DateTime;
 
 import com.google.common.base.Function;
@@ -59,6 +67,12 @@ public abstract class BaseClient<T extends BaseClient<T>> {
 
 	protected static final String CHARSET = "UTF-8";
 
+	private static final Charset UTF_8 = Charset.forName(CHARSET);
+
+	private static final byte[] EMPTY_BYTES = new byte[0];
+
+	private static final String JSON_MIME_TYPE = "application/json";
+
 	/** The HTTP method. */
 	private final String method;
 
@@ -80,8 +94,39 @@ public abstract class BaseClient<T extends BaseClient<T>> {
 	/** Http form parameters to send. */
 	private final Map<String, List<String>> form;
 
+	/** File parts of a multipart form. */
+	private final List<MultipartEntity.Part> parts;
+
+	/** Boundary of the multipart form, fixed so the body is reproducible. */
+	private String multipartBoundary;
+
+	/** Processors notified of each response received. */
+	private final List<ResponseProcessor> responseProcessors;
+
+	/** The principal the request is made on behalf of, if any. */
+	private String principal;
+
+	/** Preferred alternative to JSON, if any. */
+	private String preferredMimeType;
+
+	/** Negotiates and decodes compressed responses, if set. */
+	private ContentDecoding contentDecoding;
+
+	/** Limits how response bodies are buffered, if set. */
+	private ResponseBuffering responseBuffering;
+
+	/** Compresses request bodies, if set. */
+	private RequestCompression requestCompression;
+
+	/** Whether the body of the last prepared request was compressed. */
+	private boolean requestCompressed;
+
+	/** Whether the request whose response is being processed may be resent. */
+	private boolean resendAllowed = true;
+
 	protected HttpEntity body;
 	private String bodyString;
+	private File bodyFile;
 
 	/**
 	 * Internal method used to build an APIResponse using the specified
@@ -94,41 +139,138 @@ public abstract class BaseClient<T extends BaseClient<T>> {
 	RestResponse buildResponse(HttpResponse response) throws RestException {
 		try {
 			int statusCode = response.getStatusLine().getStatusCode();
-			String rb = "";
+			decodeResponse(response);
+
+			HttpEntity entity = response.getEntity();
 
-			if (response.getEntity() != null) {
-				rb = EntityUtils.toString(response.getEntity());
+			if (entity == null) {
+				return new RestResponse(statusCode, EMPTY_BYTES, UTF_8, response.getAllHeaders());
 			}
 
-			HttpHeader[] headers = buildHeaders(response);
+			Charset charset = getCharset(entity);
+			ResponseBuffering.Buffer buffer;
 
-			return new RestResponse(statusCode, rb, headers);
+			if (entity instanceof BufferingResponseConsumer.BufferedEntity) {
+				// Buffered by the asynchronous client as it arrived and not
+				// replaced by a decoding entity since
+				buffer = ((BufferingResponseConsumer.BufferedEntity) entity).getBuffer();
+			} else if (responseBuffering != null) {
+				buffer = responseBuffering.read(entity);
+			} else {
+				return new RestResponse(statusCode, toByteArray(entity), charset, response.getAllHeaders());
+			}
+
+			if (buffer.isInMemory()) {
+				return new RestResponse(statusCode, buffer.toByteArray(), charset, response.getAllHeaders());
+			}
+
+			return new RestResponse(statusCode, buffer.getFile(), charset, response.getAllHeaders());
 		} catch (IOException ioe) {
 			throw new RestException(ioe);
 		}
 	}
 
 	/**
-	 * Given an HttpResponse object, this method generates an array of HTTP
-	 * headers.
+	 * Notifies the response processors of a response.
 	 * 
-	 * @param httpResponse
-	 *            used for building HTTP headers
-	 * @return array of http headers
+	 * @param response
+	 *            the response received
+	 * @param resendAllowed
+	 *            whether the request is resent if a processor asks for it
+	 * @return <tt>true</tt> if any processor requested the request be sent
+	 *         again
+	 */
+	boolean processResponse(RestResponse response, boolean resendAllowed) {
+		this.resendAllowed = resendAllowed;
+		boolean resend = false;
+
+		if (response.getStatusCode() == 415 && requestCompressed) {
+			requestCompression.disable(URI.create(getUrl()));
+			resend = true;
+		}
+
+		for (ResponseProcessor responseProcessor : responseProcessors) {
+			resend |= responseProcessor.processResponse(this, response);
+		}
+
+		return resend;
+	}
+
+	/**
+	 * Reads the entity content into an array of exactly its size. When the
+	 * length is declared the content is read straight into the result,
+	 * otherwise it is collected in a growing buffer and trimmed once.
 	 */
-	private static HttpHeader[] buildHeaders(final HttpResponse httpResponse) {
-		final Header[] headers = httpResponse.getAllHeaders();
+	private static byte[] toByteArray(HttpEntity entity) throws IOException {
+		InputStream content = entity.getContent();
 
-		HttpHeader[] httpHeaders = new HttpHeader[headers.length];
-		for (int i = 0; i < headers.length; ++i) {
-			final Header header = headers[i];
-			final String name = header.getName();
-			final String value = header.getValue();
-			final HttpHeader httpHeader = new HttpHeader(name, value);
-			httpHeaders[i] = httpHeader;
+		if (content == null) {
+			return EMPTY_BYTES;
 		}
 
-		return httpHeaders;
+		try {
+			long length = entity.getContentLength();
+
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("Response content too large to buffer: " + length);
+			}
+
+			if (length >= 0) {
+				byte[] bytes = new byte[(int) length];
+				int offset = 0;
+
+				while (offset < bytes.length) {
+					int read = content.read(bytes, offset, bytes.length - offset);
+
+					if (read == -1) {
+						return Arrays.copyOf(bytes, offset);
+					}
+
+					offset += read;
+				}
+
+				return bytes;
+			}
+
+			byte[] buffer = new byte[4096];
+			int size = 0;
+			int read;
+
+			while ((read = content.read(buffer, size, buffer.length - size)) != -1) {
+				size += read;
+
+				if (size == buffer.length) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+			}
+
+			return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+		} finally {
+			content.close();
+		}
+	}
+
+	/**
+	 * Gets the charset declared by the entity. Undeclared text types default
+	 * to ISO-8859-1 as in HTTP/1.1 and everything else, JSON included, to
+	 * UTF-8.
+	 */
+	private static Charset getCharset(HttpEntity entity) throws UnsupportedEncodingException {
+		try {
+			ContentType contentType = ContentType.get(entity);
+
+			if (contentType != null && contentType.getCharset() != null) {
+				return contentType.getCharset();
+			}
+
+			if (contentType != null && contentType.getMimeType().startsWith("text/")) {
+				return HTTP.DEF_CONTENT_CHARSET;
+			}
+		} catch (UnsupportedCharsetException e) {
+			throw new UnsupportedEncodingException(e.getMessage());
+		}
+
+		return UTF_8;
 	}
 
 	/**
@@ -253,6 +395,8 @@ public abstract class BaseClient<T extends BaseClient<T>> {
 		this.parameters = new HashMap<String, List<String>>();
 		this.query = new HashMap<String, List<String>>();
 		this.form = new HashMap<String, List<String>>();
+		this.responseProcessors = new ArrayList<ResponseProcessor>(1);
+		this.parts = new ArrayList<MultipartEntity.Part>(0);
 
 		this.method = method;
 		this.url = url;
@@ -458,8 +602,69 @@ public abstract class BaseClient<T extends BaseClient<T>> {
 		return addForm(name, (String) (value != null ? String.valueOf(value) : null));
 	}
 
+	/**
+	 * Adds a streamed file part, which makes the request body
+	 * <code>multipart/form-data</code>. The stream is read once, so a request
+	 * containing one cannot be resent or have its payload hashed. The
+	 * asynchronous client reads the stream on its I/O thread, so it must not
+	 * block.
+	 * 
+	 * @param name
+	 *            name of parameter
+	 * @param value
+	 *            content of the part
+	 * @return a reference to 'this', which can be used for method chaining
+	 */
 	public T addForm(String name, InputStream value) {
-		throw new UnsupportedOperationException("adding files is not supported");
+		return addForm(name, value, null, null);
+	}
+
+	public T addForm(String name, InputStream value, String fileName, String contentType) {
+		if (value == null) {
+			return me();
+		}
+
+		parts.add(MultipartEntity.stream(name, value, fileName, contentType));
+
+		return me();
+	}
+
+	/**
+	 * Adds a file part, which makes the request body
+	 * <code>multipart/form-data</code>.
+	 * 
+	 * @param name
+	 *            name of parameter
+	 * @param file
+	 *            file to send
+	 * @return a reference to 'this', which can be used for method chaining
+	 */
+	public T addForm(String name, File file) {
+		return addForm(name, file, null);
+	}
+
+	public T addForm(String name, File file, String contentType) {
+		if (file == null) {
+			return me();
+		}
+
+		parts.add(MultipartEntity.file(name, file, contentType));
+
+		return me();
+	}
+
+	public T addForm(String name, Path path) {
+		return addForm(name, path, null);
+	}
+
+	public T addForm(String name, Path path, String contentType) {
+		if (path == null) {
+			return me();
+		}
+
+		parts.add(MultipartEntity.path(name, path, contentType));
+
+		return me();
 	}
 
 	/**
@@ -492,7 +697,31 @@ public abstract class BaseClient<T extends BaseClient<T>> {
 	}
 
 	public T setForm(String name, InputStream value) {
-		throw new UnsupportedOperationException("setting files is not supported");
+		removeParts(name);
+
+		return addForm(name, value);
+	}
+
+	public T setForm(String name, File file) {
+		removeParts(name);
+
+		return addForm(name, file);
+	}
+
+	public T setForm(String name, Path path) {
+		removeParts(name);
+
+		return addForm(name, path);
+	}
+
+	private void removeParts(String name) {
+		Iterator<MultipartEntity.Part> iterator = parts.iterator();
+
+		while (iterator.hasNext()) {
+			if (iterator.next().getName().equals(name)) {
+				iterator.remove();
+			}
+		}
 	}
 
 	/**
@@ -582,6 +811,25 @@ public abstract class BaseClient<T extends BaseClient<T>> {
 		return me();
 	}
 
+	public T setBody(HttpEntity body) {
+		this.body = body;
+		bodyString = null;
+
+		return me();
+	}
+
+	public T setBody(byte[] body, String contentType) {
+		if (body != null && body.length > 0) {
+			this.body = new ByteArrayEntity(body, ContentType.parse(contentType));
+		} else {
+			this.body = null;
+		}
+
+		bodyString = null;
+
+		return me();
+	}
+
 	public String getBody() throws IOException {
 		if (bodyString != null) {
 			return bodyString;
@@ -590,15 +838,125 @@ public abstract class BaseClient<T extends BaseClient<T>> {
 		}
 	}
 
-	@SuppressWarnings("deprecation")
 	public T setBody(File file, String contentType) throws RestException {
-		this.body = new FileEntity(file, contentType);
+		this.body = new FileEntity(file, contentType != null ? ContentType.parse(contentType)
+				: ContentType.DEFAULT_BINARY);
+		bodyString = null;
+		bodyFile = file;
+
+		return me();
+	}
+
+	/**
+	 * Gets the file set as the request body, which the asynchronous client
+	 * sends with zero-copy transfers.
+	 * 
+	 * @return the body file or <tt>null</tt> if the body is not a file
+	 */
+	File getBodyFile() {
+		return body instanceof FileEntity ? bodyFile : null;
+	}
+
+	/**
+	 * Gets the entity explicitly set as the request body or, if the form has
+	 * file parts, the multipart form entity.
+	 * 
+	 * @return the body entity or <tt>null</tt> if the request body is built
+	 *         from the form parameters
+	 */
+	public HttpEntity getEntity() {
+		if (body == null && !parts.isEmpty()) {
+			return buildMultipartEntity();
+		}
+
+		return body;
+	}
+
+	/**
+	 * Builds the multipart form entity from the general and form parameters,
+	 * followed by the file parts.
+	 * 
+	 * @return the multipart entity
+	 */
+	protected MultipartEntity buildMultipartEntity() {
+		List<MultipartEntity.Part> entityParts = new ArrayList<MultipartEntity.Part>();
+
+		for (Map<String, List<String>> fields : Arrays.asList(parameters, form)) {
+			for (Entry<String, List<String>> entry : fields.entrySet()) {
+				for (String value : entry.getValue()) {
+					entityParts.add(MultipartEntity.text(entry.getKey(), value));
+				}
+			}
+		}
+
+		entityParts.addAll(parts);
+
+		if (multipartBoundary == null) {
+			multipartBoundary = "----" + UUID.randomUUID().toString().replace("-", "");
+		}
+
+		return new MultipartEntity(multipartBoundary, entityParts);
+	}
+
+	/**
+	 * Registers a processor to be notified of the responses to this request.
+	 * Registering the same processor more than once has no effect.
+	 * 
+	 * @param responseProcessor
+	 *            the response processor
+	 * @return a reference to 'this', which can be used for method chaining
+	 */
+	public T addResponseProcessor(ResponseProcessor responseProcessor) {
+		if (!responseProcessors.contains(responseProcessor)) {
+			responseProcessors.add(responseProcessor);
+		}
+
+		return me();
+	}
+
+	/**
+	 * Sets the principal the request is made on behalf of. Request processors
+	 * use it to look up per-principal credentials.
+	 * 
+	 * @param principal
+	 *            the principal key
+	 * @return a reference to 'this', which can be used for method chaining
+	 */
+	public T principal(String principal) {
+		this.principal = principal;
+
+		return me();
+	}
+
+	public String getPrincipal() {
+		return principal;
+	}
+
+	/**
+	 * Sets a preferred alternative representation of JSON, such as a binary
+	 * Jackson format. When JSON is accepted, the preferred type is offered
+	 * first, with JSON as the fallback.
+	 * 
+	 * @param mimeType
+	 *            the preferred mime type
+	 * @return a reference to 'this', which can be used for method chaining
+	 */
+	public T prefer(String mimeType) {
+		this.preferredMimeType = mimeType;
 
 		return me();
 	}
 
+	public String getPreferredMimeType() {
+		return preferredMimeType;
+	}
+
 	public T accepts(String mimeType) {
-		setHeader("Accept", mimeType);
+		if (preferredMimeType != null && JSON_MIME_TYPE.equals(mimeType)) {
+			setHeader("Accept", preferredMimeType + ", " + mimeType + ";q=0.9");
+		} else {
+			setHeader("Accept", mimeType);
+		}
 
 		return me();
 	}
@@ -644,16 +1002,93 @@ public abstract class BaseClient<T extends BaseClient<T>> {
 			request = put;
 		} else if ("DELETE".equals(method)) {
 			request = new HttpDelete(url);
+		} else if ("HEAD".equals(method)) {
+			request = new HttpHead(url);
 		}
 
 		addInternalHeaders(request);
 
+		if (contentDecoding != null && !request.containsHeader(ContentDecoding.ACCEPT_ENCODING)) {
+			request.addHeader(ContentDecoding.ACCEPT_ENCODING, contentDecoding.getAcceptEncoding());
+		}
+
 		return request;
 	}
 
+	/**
+	 * Decodes the response content if it was compressed in response to the
+	 * negotiated <code>Accept-Encoding</code>.
+	 * 
+	 * @param response
+	 *            the response received
+	 */
+	void decodeResponse(HttpResponse response) {
+		if (contentDecoding != null) {
+			contentDecoding.decode(response);
+		}
+	}
+
+	public ContentDecoding getContentDecoding() {
+		return contentDecoding;
+	}
+
+	void setContentDecoding(ContentDecoding contentDecoding) {
+		this.contentDecoding = contentDecoding;
+	}
+
+	public ResponseBuffering getResponseBuffering() {
+		return responseBuffering;
+	}
+
+	void setResponseBuffering(ResponseBuffering responseBuffering) {
+		this.responseBuffering = responseBuffering;
+	}
+
+	public RequestCompression getRequestCompression() {
+		return requestCompression;
+	}
+
+	void setRequestCompression(RequestCompression requestCompression) {
+		this.requestCompression = requestCompression;
+	}
+
+	/**
+	 * Gets whether the body of the last request sent was compressed.
+	 * 
+	 * @return <tt>true</tt> if the body was compressed
+	 */
+	public boolean isRequestCompressed() {
+		return requestCompressed;
+	}
+
+	/**
+	 * Gets whether the request whose response is being processed is sent again
+	 * if a response processor asks for it. Only one resend is made, so this is
+	 * <tt>false</tt> for the response to a resend.
+	 * 
+	 * @return <tt>true</tt> if a resend may still be made
+	 */
+	public boolean isResendAllowed() {
+		return resendAllowed;
+	}
+
 	protected void setEntity(HttpEntityEnclosingRequestBase request) {
+		setUncompressedEntity(request);
+
+		HttpEntity entity = request.getEntity();
+
+		if (requestCompression != null) {
+			request.setEntity(requestCompression.compress(request, entity));
+		}
+
+		requestCompressed = request.getEntity() instanceof CompressingEntity;
+	}
+
+	private void setUncompressedEntity(HttpEntityEnclosingRequestBase request) {
 		if (body != null) {
 			request.setEntity(body);
+		} else if (!parts.isEmpty()) {
+			request.setEntity(buildMultipartEntity());
 		} else {
 			String form = buildForm();
 			bodyString = form;
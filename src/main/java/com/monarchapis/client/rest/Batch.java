@@ -0,0 +1,438 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Sends a collection of requests through the asynchronous client with a bounded
+ * number in flight and an overall deadline. Each request ends up with its own
+ * {@link BatchResult}, reported as it completes, so one failure does not fail
+ * the batch. Requests still unfinished at the deadline are aborted and reported
+ * as timed out.
+ * 
+ * <pre>
+ * Batch&lt;RestResponse&gt; batch = factory.newBatch(2, TimeUnit.SECONDS);
+ * 
+ * for (String id : ids) {
+ * 	batch.add(factory.createAsync(&quot;GET&quot;, url + id), Batch.rawResponse());
+ * }
+ * 
+ * BatchResults&lt;RestResponse&gt; results = batch.execute().get();
+ * </pre>
+ * 
+ * @param <T>
+ *            the value type
+ */
+public class Batch<T> {
+	/**
+	 * Turns a response into the result value, throwing if it is an error.
+	 * The response is closed afterwards unless it is itself the value.
+	 */
+	public interface ResponseParser<T> {
+		T parse(RestResponse response) throws Exception;
+	}
+
+	/**
+	 * Notified of each result as it is known. Calls are never concurrent.
+	 */
+	public interface Listener<T> {
+		void onResult(BatchResult<T> result);
+	}
+
+	private static final ResponseParser<RestResponse> RAW_RESPONSE = new ResponseParser<RestResponse>() {
+		@Override
+		public RestResponse parse(RestResponse response) {
+			return response;
+		}
+	};
+
+	private static final ScheduledExecutorService DEADLINES = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "batch-deadline");
+					thread.setDaemon(true);
+
+					return thread;
+				}
+			});
+
+	private final List<Item> items = new ArrayList<Item>();
+
+	private final long timeout;
+
+	private final TimeUnit unit;
+
+	private int maxInFlight = 16;
+
+	private Listener<T> listener;
+
+	private final Object listenerLock = new Object();
+
+	// Execution state, guarded by this
+
+	private AsyncFuture<BatchResults<T>> future;
+
+	private ScheduledFuture<?> deadline;
+
+	private int next;
+
+	private int inFlight;
+
+	private int remaining;
+
+	private boolean aborted;
+
+	/**
+	 * Creates a batch that must finish within the timeout, counted from
+	 * {@link #execute()}.
+	 * 
+	 * @param timeout
+	 *            the overall deadline
+	 * @param unit
+	 *            the deadline unit
+	 */
+	public Batch(long timeout, TimeUnit unit) {
+		if (unit == null) {
+			throw new IllegalArgumentException("unit must not be null");
+		}
+
+		this.timeout = timeout;
+		this.unit = unit;
+	}
+
+	/**
+	 * Returns a parser that yields the response itself.
+	 */
+	public static ResponseParser<RestResponse> rawResponse() {
+		return RAW_RESPONSE;
+	}
+
+	/**
+	 * Adds a prepared, and signed, request.
+	 * 
+	 * @param client
+	 *            the prepared client
+	 * @param parser
+	 *            turns its response into the result value
+	 * @return the request's index in the results
+	 */
+	public synchronized int add(RestAsyncClient client, ResponseParser<? extends T> parser) {
+		if (future != null) {
+			throw new IllegalStateException("The batch has already been executed");
+		}
+
+		if (client == null || parser == null) {
+			throw new IllegalArgumentException("client and parser must not be null");
+		}
+
+		items.add(new Item(items.size(), client, parser));
+
+		return items.size() - 1;
+	}
+
+	public synchronized int size() {
+		return items.size();
+	}
+
+	/**
+	 * Sends the requests.
+	 * 
+	 * @return a future completing with every result once all requests have
+	 *         finished or the deadline has passed, never with an exception.
+	 *         Cancelling it aborts the requests still unfinished.
+	 */
+	public AsyncFuture<BatchResults<T>> execute() {
+		return execute(null);
+	}
+
+	/**
+	 * Sends the requests, notifying the callback with every result once all
+	 * requests have finished or the deadline has passed.
+	 * 
+	 * @param callback
+	 *            notified once the batch ends, or <tt>null</tt>
+	 * @return the future results
+	 */
+	public AsyncFuture<BatchResults<T>> execute(final Callback<BatchResults<T>> callback) {
+		synchronized (this) {
+			if (future != null) {
+				throw new IllegalStateException("The batch has already been executed");
+			}
+
+			future = new AsyncFuture<BatchResults<T>>(new Callback<BatchResults<T>>() {
+				@Override
+				public void completed(BatchResults<T> result) {
+					if (callback != null) {
+						callback.completed(result);
+					}
+				}
+
+				@Override
+				public void failed(Exception ex) {
+					if (callback != null) {
+						callback.failed(ex);
+					}
+				}
+
+				@Override
+				public void cancelled() {
+					abortAll(BatchResult.Status.CANCELLED, null);
+
+					if (callback != null) {
+						callback.cancelled();
+					}
+				}
+			});
+
+			remaining = items.size();
+
+			if (remaining > 0) {
+				deadline = DEADLINES.schedule(new Runnable() {
+					@Override
+					public void run() {
+						abortAll(BatchResult.Status.TIMED_OUT, new TimeoutException("Batch deadline of " + timeout
+								+ " " + unit.toString().toLowerCase() + " passed"));
+					}
+				}, timeout, unit);
+			}
+		}
+
+		if (items.isEmpty()) {
+			future.completed(results());
+		} else {
+			sendNext();
+		}
+
+		return future;
+	}
+
+	/**
+	 * Sends requests until the in-flight limit is reached.
+	 */
+	private void sendNext() {
+		while (true) {
+			Item item;
+
+			synchronized (this) {
+				if (next >= items.size() || inFlight >= maxInFlight || future.isDone()) {
+					return;
+				}
+
+				item = items.get(next++);
+				item.started = true;
+				inFlight++;
+			}
+
+			item.send();
+
+			// The batch may have been aborted before the exchange existed to
+			// be cancelled
+			synchronized (this) {
+				if (!aborted) {
+					continue;
+				}
+			}
+
+			item.client.abort();
+		}
+	}
+
+	/**
+	 * Records the result of a request unless it already has one, then starts
+	 * the next request or completes the batch.
+	 */
+	private void finish(Item item, BatchResult.Status status, T value, Exception exception) {
+		boolean last;
+
+		synchronized (this) {
+			if (item.result != null) {
+				return;
+			}
+
+			item.result = new BatchResult<T>(item.index, status, value, exception);
+
+			if (item.started) {
+				inFlight--;
+			}
+
+			last = --remaining == 0;
+
+			if (last && deadline != null) {
+				deadline.cancel(false);
+			}
+		}
+
+		notifyListener(item.result);
+
+		if (last) {
+			future.completed(results());
+		} else {
+			sendNext();
+		}
+	}
+
+	/**
+	 * Ends every unfinished request with the status, aborting those in flight.
+	 */
+	private void abortAll(BatchResult.Status status, Exception exception) {
+		List<Item> unfinished = new ArrayList<Item>();
+
+		synchronized (this) {
+			for (Item item : items) {
+				if (item.result == null) {
+					item.result = new BatchResult<T>(item.index, status, null, exception);
+					unfinished.add(item);
+				}
+			}
+
+			aborted = true;
+			remaining = 0;
+			inFlight = 0;
+			next = items.size();
+		}
+
+		for (Item item : unfinished) {
+			if (item.started) {
+				item.client.abort();
+			}
+
+			notifyListener(item.result);
+		}
+
+		if (!unfinished.isEmpty()) {
+			future.completed(results());
+		}
+	}
+
+	private void notifyListener(BatchResult<T> result) {
+		Listener<T> listener = this.listener;
+
+		if (listener != null) {
+			synchronized (listenerLock) {
+				listener.onResult(result);
+			}
+		}
+	}
+
+	private synchronized BatchResults<T> results() {
+		List<BatchResult<T>> results = new ArrayList<BatchResult<T>>(items.size());
+
+		// Items are kept in index order
+		for (Item item : items) {
+			results.add(item.result);
+		}
+
+		return new BatchResults<T>(results);
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/**
+	 * Sets how many requests may be in flight at once. Defaults to 16.
+	 * 
+	 * @param maxInFlight
+	 *            the in-flight limit
+	 */
+	public void setMaxInFlight(int maxInFlight) {
+		this.maxInFlight = Math.max(1, maxInFlight);
+	}
+
+	public Listener<T> getListener() {
+		return listener;
+	}
+
+	/**
+	 * Sets the listener notified of each result as it is known, in completion
+	 * order.
+	 * 
+	 * @param listener
+	 *            the result listener
+	 */
+	public void setListener(Listener<T> listener) {
+		this.listener = listener;
+	}
+
+	private final class Item implements Callback<RestResponse> {
+		private final int index;
+
+		private final RestAsyncClient client;
+
+		private final ResponseParser<? extends T> parser;
+
+		// Guarded by the batch
+
+		private boolean started;
+
+		private BatchResult<T> result;
+
+		Item(int index, RestAsyncClient client, ResponseParser<? extends T> parser) {
+			this.index = index;
+			this.client = client;
+			this.parser = parser;
+		}
+
+		void send() {
+			try {
+				client.send(this);
+			} catch (RuntimeException e) {
+				finish(this, BatchResult.Status.FAILED, null, e);
+			}
+		}
+
+		@Override
+		public void completed(RestResponse response) {
+			T value = null;
+
+			try {
+				value = parser.parse(response);
+			} catch (Exception e) {
+				finish(this, BatchResult.Status.FAILED, null, e);
+				return;
+			} finally {
+				// Parsed values no longer need the body, which may be on disk
+				if (value != response) {
+					response.close();
+				}
+			}
+
+			finish(this, BatchResult.Status.SUCCEEDED, value, null);
+		}
+
+		@Override
+		public void failed(Exception ex) {
+			finish(this, BatchResult.Status.FAILED, null, ex);
+		}
+
+		@Override
+		public void cancelled() {
+			// Aborted by the batch, which has already recorded the result
+			finish(this, BatchResult.Status.CANCELLED, null, null);
+		}
+	}
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+/**
+ * The outcome of one request in a {@link Batch}.
+ * 
+ * @param <T>
+ *            the value type
+ */
+public final class BatchResult<T> {
+	public enum Status {
+		/** The response was received and parsed. */
+		SUCCEEDED,
+
+		/** The request failed or its response could not be parsed. */
+		FAILED,
+
+		/** The batch deadline passed before the request finished. */
+		TIMED_OUT,
+
+		/** The batch was cancelled before the request finished. */
+		CANCELLED
+	}
+
+	private final int index;
+
+	private final Status status;
+
+	private final T value;
+
+	private final Exception exception;
+
+	BatchResult(int index, Status status, T value, Exception exception) {
+		this.index = index;
+		this.status = status;
+		this.value = value;
+		this.exception = exception;
+	}
+
+	/**
+	 * Gets the position at which the request was added to the batch.
+	 * 
+	 * @return the request index
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public boolean isSucceeded() {
+		return status == Status.SUCCEEDED;
+	}
+
+	/**
+	 * Gets the parsed value, or <tt>null</tt> unless the request succeeded.
+	 * 
+	 * @return the value
+	 */
+	public T getValue() {
+		return value;
+	}
+
+	/**
+	 * Gets the failure, or <tt>null</tt> unless the request failed.
+	 * 
+	 * @return the exception
+	 */
+	public Exception getException() {
+		return exception;
+	}
+
+	@Override
+	public String toString() {
+		return "BatchResult [index=" + index + ", status=" + status + ", value=" + value + ", exception="
+				+ exception + "]";
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcomes of every request in a {@link Batch}, in the order the requests
+ * were added.
+ * 
+ * @param <T>
+ *            the value type
+ */
+public final class BatchResults<T> {
+	private final List<BatchResult<T>> results;
+
+	BatchResults(List<BatchResult<T>> results) {
+		this.results = Collections.unmodifiableList(results);
+	}
+
+	public List<BatchResult<T>> getResults() {
+		return results;
+	}
+
+	public int size() {
+		return results.size();
+	}
+
+	public BatchResult<T> get(int index) {
+		return results.get(index);
+	}
+
+	public List<BatchResult<T>> getSucceeded() {
+		return filter(BatchResult.Status.SUCCEEDED);
+	}
+
+	public List<BatchResult<T>> getFailed() {
+		return filter(BatchResult.Status.FAILED);
+	}
+
+	public List<BatchResult<T>> getTimedOut() {
+		return filter(BatchResult.Status.TIMED_OUT);
+	}
+
+	public List<BatchResult<T>> getCancelled() {
+		return filter(BatchResult.Status.CANCELLED);
+	}
+
+	/**
+	 * Gets the values of the requests that succeeded, in request order.
+	 * 
+	 * @return the values
+	 */
+	public List<T> getValues() {
+		List<T> values = new ArrayList<T>(results.size());
+
+		for (BatchResult<T> result : results) {
+			if (result.isSucceeded()) {
+				values.add(result.getValue());
+			}
+		}
+
+		return values;
+	}
+
+	public boolean isAllSucceeded() {
+		for (BatchResult<T> result : results) {
+			if (!result.isSucceeded()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private List<BatchResult<T>> filter(BatchResult.Status status) {
+		List<BatchResult<T>> filtered = new ArrayList<BatchResult<T>>();
+
+		for (BatchResult<T> result : results) {
+			if (result.getStatus() == status) {
+				filtered.add(result);
+			}
+		}
+
+		return filtered;
+	}
+}
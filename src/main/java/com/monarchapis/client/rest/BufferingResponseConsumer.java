@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Buffers the response content of the asynchronous client according to a
+ * {@link ResponseBuffering} policy, so large bodies spill to disk instead of
+ * accumulating in memory and oversized bodies fail the exchange early.
+ */
+class BufferingResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+	private final ResponseBuffering responseBuffering;
+
+	private final ByteBuffer chunk = ByteBuffer.allocate(8192);
+
+	private HttpResponse response;
+
+	private HttpEntity entity;
+
+	private ResponseBuffering.Buffer buffer;
+
+	BufferingResponseConsumer(ResponseBuffering responseBuffering) {
+		this.responseBuffering = responseBuffering;
+	}
+
+	@Override
+	protected void onResponseReceived(HttpResponse response) {
+		this.response = response;
+	}
+
+	@Override
+	protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+		this.entity = entity;
+		this.buffer = responseBuffering.newBuffer(entity.getContentLength());
+	}
+
+	@Override
+	protected void onContentReceived(ContentDecoder decoder, IOControl ioctrl) throws IOException {
+		int read;
+
+		while ((read = decoder.read(chunk)) > 0) {
+			buffer.write(chunk.array(), 0, read);
+			chunk.clear();
+		}
+	}
+
+	@Override
+	protected HttpResponse buildResult(HttpContext context) throws IOException {
+		if (buffer != null) {
+			buffer.finish();
+
+			// Keep the entity headers so the content can still be decoded
+			BufferedEntity content = new BufferedEntity(buffer);
+			content.setContentType(entity.getContentType());
+			content.setContentEncoding(entity.getContentEncoding());
+			response.setEntity(content);
+			buffer = null;
+		}
+
+		return response;
+	}
+
+	@Override
+	protected void releaseResources() {
+		if (buffer != null) {
+			buffer.discard();
+			buffer = null;
+		}
+
+		response = null;
+		entity = null;
+	}
+
+	/**
+	 * An entity over buffered content, which the client takes over as the
+	 * response body without reading it again unless it has to be decoded. The
+	 * content is only opened when read, and closing it discards the buffer.
+	 */
+	static class BufferedEntity extends AbstractHttpEntity {
+		private final ResponseBuffering.Buffer buffer;
+
+		BufferedEntity(ResponseBuffering.Buffer buffer) {
+			this.buffer = buffer;
+		}
+
+		ResponseBuffering.Buffer getBuffer() {
+			return buffer;
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return false;
+		}
+
+		@Override
+		public long getContentLength() {
+			return buffer.size();
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			return buffer.getInputStream();
+		}
+
+		@Override
+		public void writeTo(OutputStream outstream) throws IOException {
+			InputStream content = getContent();
+
+			try {
+				IOUtils.copy(content, outstream);
+			} finally {
+				content.close();
+			}
+		}
+
+		@Override
+		public boolean isStreaming() {
+			return true;
+		}
+	}
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import java.util.List;
+
+/**
+ * Applies a fixed chain of request processors in order.
+ */
+public class CompositeRequestProcessor implements RequestProcessor {
+	private final RequestProcessor[] requestProcessors;
+
+	public CompositeRequestProcessor(RequestProcessor... requestProcessors) {
+		if (requestProcessors == null) {
+			throw new IllegalArgumentException("requestProcessors must not be null");
+		}
+
+		this.requestProcessors = requestProcessors.clone();
+	}
+
+	public CompositeRequestProcessor(List<RequestProcessor> requestProcessors) {
+		if (requestProcessors == null) {
+			throw new IllegalArgumentException("requestProcessors must not be null");
+		}
+
+		this.requestProcessors = requestProcessors.toArray(new RequestProcessor[requestProcessors.size()]);
+	}
+
+	@Override
+	public void processRequest(BaseClient<?> client) {
+		// Indexed iteration over the array avoids allocating an iterator on
+		// every request.
+		for (int i = 0; i < requestProcessors.length; i++) {
+			requestProcessors[i].processRequest(client);
+		}
+	}
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.Enumeration;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.message.BasicHeader;
+import org.apache.http.protocol.HTTP;
+
+/**
+ * Compresses the wrapped entity as it is written. Nothing is buffered beyond
+ * the compressor's own window: the blocking client pushes the content through
+ * a compressing output stream and the asynchronous client pulls it through a
+ * compressing input stream.
+ */
+class CompressingEntity extends HttpEntityWrapper {
+	static final String GZIP = "gzip";
+
+	static final String DEFLATE = "deflate";
+
+	private static final int BUFFER_SIZE = 8192;
+
+	/** Member header with no modification time, flags or name. */
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+
+	private final String coding;
+
+	CompressingEntity(HttpEntity entity, String coding) {
+		super(entity);
+		this.coding = coding;
+	}
+
+	@Override
+	public Header getContentEncoding() {
+		return new BasicHeader(HTTP.CONTENT_ENCODING, coding);
+	}
+
+	@Override
+	public long getContentLength() {
+		return -1;
+	}
+
+	@Override
+	public boolean isChunked() {
+		return true;
+	}
+
+	@Override
+	public InputStream getContent() throws IOException {
+		InputStream content = super.getContent();
+
+		return GZIP.equals(coding) ? new GzipInputStream(content) : new DeflaterInputStream(content);
+	}
+
+	@Override
+	public void writeTo(OutputStream outstream) throws IOException {
+		OutputStream compressed = GZIP.equals(coding) ? new GZIPOutputStream(outstream, BUFFER_SIZE)
+				: new DeflaterOutputStream(outstream);
+
+		try {
+			super.writeTo(compressed);
+		} finally {
+			compressed.close();
+		}
+	}
+
+	/**
+	 * Produces the gzip format by reading, emitting the header, the raw deflate
+	 * stream and finally the trailer once the source is exhausted.
+	 */
+	private static class GzipInputStream extends SequenceInputStream {
+		private final Deflater deflater;
+
+		GzipInputStream(InputStream in) {
+			this(new CheckedInputStream(in, new CRC32()), new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+		}
+
+		private GzipInputStream(final CheckedInputStream source, final Deflater deflater) {
+			super(new Enumeration<InputStream>() {
+				private int index;
+
+				@Override
+				public boolean hasMoreElements() {
+					return index < 3;
+				}
+
+				@Override
+				public InputStream nextElement() {
+					switch (index++) {
+					case 0:
+						return new ByteArrayInputStream(GZIP_HEADER);
+					case 1:
+						return new DeflaterInputStream(source, deflater, BUFFER_SIZE);
+					case 2:
+						return new ByteArrayInputStream(trailer(source.getChecksum().getValue(),
+								deflater.getBytesRead()));
+					default:
+						throw new NoSuchElementException();
+					}
+				}
+			});
+
+			this.deflater = deflater;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				super.close();
+			} finally {
+				deflater.end();
+			}
+		}
+
+		private static byte[] trailer(long crc, long size) {
+			return new byte[] { (byte) crc, (byte) (crc >> 8), (byte) (crc >> 16), (byte) (crc >> 24), (byte) size,
+					(byte) (size >> 8), (byte) (size >> 16), (byte) (size >> 24) };
+		}
+	}
+}
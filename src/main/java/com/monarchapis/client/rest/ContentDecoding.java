@@ -0,0 +1,310 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.entity.DecompressingEntity;
+import org.apache.http.client.entity.InputStreamFactory;
+import org.apache.http.entity.HttpEntityWrapper;
+
+/**
+ * Negotiates and decodes compressed response content for both the blocking
+ * and the asynchronous clients. Content is decoded as a stream while it is
+ * read, and the bytes received on the wire and the bytes produced after
+ * decoding are counted so the savings can be observed.
+ * <p>
+ * <code>gzip</code> and <code>deflate</code> are always supported. Brotli
+ * (<code>br</code>) and Zstandard (<code>zstd</code>) are offered when
+ * <code>org.brotli:dec</code> or <code>com.github.luben:zstd-jni</code> are
+ * on the class path.
+ * </p>
+ */
+public class ContentDecoding {
+	public static final String ACCEPT_ENCODING = "Accept-Encoding";
+
+	public static final String IDENTITY = "identity";
+
+	private static final InputStreamFactory GZIP = new InputStreamFactory() {
+		@Override
+		public InputStream create(InputStream in) throws IOException {
+			return new GZIPInputStream(in);
+		}
+	};
+
+	/**
+	 * Decodes <code>deflate</code> content, which should be zlib wrapped but is
+	 * sent as a raw deflate stream by some servers. The header decides which.
+	 */
+	private static final InputStreamFactory DEFLATE = new InputStreamFactory() {
+		@Override
+		public InputStream create(InputStream in) throws IOException {
+			PushbackInputStream pushback = new PushbackInputStream(in, 2);
+			byte[] header = new byte[2];
+			int read = IOUtils.read(pushback, header);
+			pushback.unread(header, 0, read);
+
+			boolean zlib = read == 2 && (header[0] & 0x0f) == 8
+					&& (((header[0] & 0xff) << 8) | (header[1] & 0xff)) % 31 == 0;
+
+			return new InflaterInputStream(pushback, new Inflater(!zlib)) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						inf.end();
+					}
+				}
+			};
+		}
+	};
+
+	private volatile Map<String, InputStreamFactory> decoders = new LinkedHashMap<String, InputStreamFactory>();
+
+	private volatile String acceptEncoding;
+
+	private final AtomicLong wireBytes = new AtomicLong();
+
+	private final AtomicLong decodedBytes = new AtomicLong();
+
+	public ContentDecoding() {
+		register("gzip", GZIP);
+		register("x-gzip", GZIP);
+		register("deflate", DEFLATE);
+
+		InputStreamFactory brotli = optionalDecoder("org.brotli.dec.BrotliInputStream");
+
+		if (brotli != null) {
+			register("br", brotli);
+		}
+
+		InputStreamFactory zstd = optionalDecoder("com.github.luben.zstd.ZstdInputStream");
+
+		if (zstd != null) {
+			register("zstd", zstd);
+		}
+	}
+
+	/**
+	 * Registers a decoder for a content coding, which is then advertised in
+	 * <code>Accept-Encoding</code>.
+	 *
+	 * @param coding
+	 *            the content coding token
+	 * @param decoder
+	 *            creates the decoding stream
+	 */
+	public synchronized void register(String coding, InputStreamFactory decoder) {
+		Map<String, InputStreamFactory> decoders = new LinkedHashMap<String, InputStreamFactory>(this.decoders);
+		decoders.put(coding.toLowerCase(Locale.ROOT), decoder);
+
+		StringBuilder sb = new StringBuilder();
+
+		for (String token : decoders.keySet()) {
+			if (!token.startsWith("x-")) {
+				if (sb.length() > 0) {
+					sb.append(", ");
+				}
+
+				sb.append(token);
+			}
+		}
+
+		this.decoders = decoders;
+		acceptEncoding = sb.toString();
+	}
+
+	/**
+	 * Gets the <code>Accept-Encoding</code> value listing the supported
+	 * codings.
+	 *
+	 * @return the header value
+	 */
+	public String getAcceptEncoding() {
+		return acceptEncoding;
+	}
+
+	/**
+	 * Replaces the response entity with one that decodes and counts the
+	 * content as it is read. The <code>Content-Encoding</code>,
+	 * <code>Content-Length</code> and <code>Content-MD5</code> headers are
+	 * removed when the content is decoded since they describe the encoded
+	 * representation.
+	 *
+	 * @param response
+	 *            the response to decode
+	 * @throws RestException
+	 *             if the content coding is not supported
+	 */
+	public void decode(HttpResponse response) throws RestException {
+		HttpEntity entity = response.getEntity();
+
+		if (entity == null) {
+			return;
+		}
+
+		entity = new CountingEntity(entity, wireBytes);
+		Header contentEncoding = entity.getContentEncoding();
+
+		if (contentEncoding != null) {
+			HeaderElement[] elements = contentEncoding.getElements();
+
+			// Codings are listed in the order they were applied
+			for (int i = elements.length - 1; i >= 0; i--) {
+				String coding = elements[i].getName().toLowerCase(Locale.ROOT);
+
+				if (IDENTITY.equals(coding) || StringUtils.isBlank(coding)) {
+					continue;
+				}
+
+				InputStreamFactory decoder = decoders.get(coding);
+
+				if (decoder == null) {
+					throw new RestException("Unsupported Content-Encoding: " + coding);
+				}
+
+				entity = new DecompressingEntity(entity, decoder);
+			}
+
+			response.removeHeaders("Content-Encoding");
+			response.removeHeaders("Content-Length");
+			response.removeHeaders("Content-MD5");
+		}
+
+		response.setEntity(new CountingEntity(entity, decodedBytes));
+	}
+
+	/**
+	 * Gets the number of response content bytes received on the wire.
+	 *
+	 * @return the byte count
+	 */
+	public long getWireBytes() {
+		return wireBytes.get();
+	}
+
+	/**
+	 * Gets the number of response content bytes after decoding.
+	 *
+	 * @return the byte count
+	 */
+	public long getDecodedBytes() {
+		return decodedBytes.get();
+	}
+
+	private static InputStreamFactory optionalDecoder(String className) {
+		try {
+			final Constructor<?> constructor = Class.forName(className).getConstructor(InputStream.class);
+
+			return new InputStreamFactory() {
+				@Override
+				public InputStream create(InputStream in) throws IOException {
+					try {
+						return (InputStream) constructor.newInstance(in);
+					} catch (InvocationTargetException e) {
+						if (e.getCause() instanceof IOException) {
+							throw (IOException) e.getCause();
+						}
+
+						throw new IOException(e.getCause());
+					} catch (ReflectiveOperationException e) {
+						throw new IOException(e);
+					}
+				}
+			};
+		} catch (ClassNotFoundException e) {
+			return null;
+		} catch (NoSuchMethodException e) {
+			return null;
+		} catch (LinkageError e) {
+			return null;
+		}
+	}
+
+	private static class CountingEntity extends HttpEntityWrapper {
+		private final AtomicLong counter;
+
+		CountingEntity(HttpEntity entity, AtomicLong counter) {
+			super(entity);
+			this.counter = counter;
+		}
+
+		@Override
+		public InputStream getContent() throws IOException {
+			return new FilterInputStream(super.getContent()) {
+				@Override
+				public int read() throws IOException {
+					int b = super.read();
+
+					if (b != -1) {
+						counter.incrementAndGet();
+					}
+
+					return b;
+				}
+
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					int read = super.read(b, off, len);
+
+					if (read > 0) {
+						counter.addAndGet(read);
+					}
+
+					return read;
+				}
+			};
+		}
+
+		@Override
+		public void writeTo(OutputStream outstream) throws IOException {
+			InputStream in = getContent();
+
+			try {
+				byte[] buffer = new byte[8192];
+				int read;
+
+				while ((read = in.read(buffer)) != -1) {
+					outstream.write(buffer, 0, read);
+				}
+			} finally {
+				in.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+/**
+ * Receives the events of an {@link EventStream}. Events are delivered on the
+ * stream's executor, one at a time and in order. A handler that falls behind
+ * suspends reading from the connection until it catches up.
+ */
+public interface EventHandler {
+	/**
+	 * Called for each event. An exception thrown here ends the stream.
+	 */
+	void onEvent(ServerSentEvent event);
+
+	/**
+	 * Called once if the stream ends for good, such as on an error status, a
+	 * handler exception or an oversized event. Connection failures are
+	 * retried instead.
+	 */
+	void failed(Exception ex);
+
+	/**
+	 * Called once when the stream is closed, by the client or by the server
+	 * responding with <code>204 No Content</code>.
+	 */
+	void closed();
+}
@@ -0,0 +1,581 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.concurrent.FutureCallback;
+
+/**
+ * A long-lived stream of events, such as server-sent events or chunked JSON,
+ * consumed through the asynchronous client. Events are parsed as content
+ * arrives and handed to an {@link EventHandler}. When the connection drops or
+ * the server ends the stream, the request is sent again after the reconnect
+ * delay with the <code>Last-Event-ID</code> of the last event seen, backing
+ * off while attempts keep failing.
+ * 
+ * <p>
+ * Events are queued and handed to the handler on an executor, one at a time
+ * and in order. By default that is a shared pool of daemon threads, one per
+ * processor, so streams whose handlers block should be given an executor of
+ * their own. Once
+ * <code>maxQueuedEvents</code> are waiting, reading from the connection is
+ * suspended until the handler catches up, so a slow handler pushes back on
+ * the server instead of blocking the I/O reactor. The handler is notified
+ * that the stream failed or closed after the last event it is given.
+ * </p>
+ * 
+ * <p>
+ * Each stream holds a fixed read buffer and parses without blocking, so many
+ * streams can share one I/O reactor. Each open stream holds a pooled
+ * connection, though, so the factory's per-route connection limit must allow
+ * for them. A stream idle for longer than the factory's socket timeout is
+ * reconnected; servers usually send comments as keep-alives to avoid that.
+ * </p>
+ */
+public class EventStream implements Closeable {
+	private static final String LAST_EVENT_ID = "Last-Event-ID";
+
+	private static final ScheduledExecutorService RECONNECTS = Executors
+			.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "event-stream-reconnect");
+					thread.setDaemon(true);
+
+					return thread;
+				}
+			});
+
+	private static final Executor DISPATCHERS = newDispatchers(Runtime.getRuntime().availableProcessors());
+
+	private final RestAsyncClient client;
+
+	private final EventHandler handler;
+
+	private final RequestProcessor requestProcessor;
+
+	private long reconnectDelay = 3000;
+
+	private long maxReconnectDelay = 60000;
+
+	private int bufferSize = 4096;
+
+	private int maxEventSize = 1024 * 1024;
+
+	private Executor executor = DISPATCHERS;
+
+	private int maxQueuedEvents = 256;
+
+	private volatile String lastEventId;
+
+	private volatile boolean closed;
+
+	private int failedAttempts;
+
+	private Future<?> exchange;
+
+	private Future<?> pendingReconnect;
+
+	// Dispatch state, guarded by queue
+
+	private final Queue<ServerSentEvent> queue = new ArrayDeque<ServerSentEvent>();
+
+	/** Whether a task is handing queued events to the handler. */
+	private boolean draining;
+
+	/** The failure or closed notification, run once the queue is drained. */
+	private Runnable terminal;
+
+	private Runnable capacityListener;
+
+	/**
+	 * Creates a stream for the prepared client. Nothing is sent until the
+	 * stream is opened.
+	 * 
+	 * @param client
+	 *            the prepared client
+	 * @param handler
+	 *            receives the events
+	 * @param requestProcessor
+	 *            run on the client before each reconnect, e.g. to sign it
+	 *            again, or <tt>null</tt>
+	 */
+	public EventStream(RestAsyncClient client, EventHandler handler, RequestProcessor requestProcessor) {
+		if (client == null) {
+			throw new IllegalArgumentException("client must not be null");
+		}
+
+		if (handler == null) {
+			throw new IllegalArgumentException("handler must not be null");
+		}
+
+		this.client = client;
+		this.handler = handler;
+		this.requestProcessor = requestProcessor;
+	}
+
+	private static Executor newDispatchers(int threads) {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, "event-stream-dispatch");
+						thread.setDaemon(true);
+
+						return thread;
+					}
+				});
+		executor.allowCoreThreadTimeOut(true);
+
+		return executor;
+	}
+
+	/**
+	 * Sends the request, resuming from the last event ID if one is set.
+	 * 
+	 * @return a reference to 'this', which can be used for method chaining
+	 */
+	public synchronized EventStream open() {
+		if (closed || exchange != null) {
+			return this;
+		}
+
+		connect(false);
+
+		return this;
+	}
+
+	private synchronized void connect(final boolean resent) {
+		if (closed) {
+			return;
+		}
+
+		if (lastEventId != null) {
+			client.setHeader(LAST_EVENT_ID, lastEventId);
+		}
+
+		final EventStreamConsumer consumer = new EventStreamConsumer(this);
+
+		try {
+			exchange = client.execute(consumer, new FutureCallback<RestResponse>() {
+				@Override
+				public void completed(RestResponse error) {
+					if (error == null) {
+						// The server ended the stream
+						reconnect();
+					} else if (error.getStatusCode() == 204) {
+						close();
+					} else if (client.processResponse(error, !resent) && !resent) {
+						connect(true);
+					} else {
+						fail(new RestException(error.getStatusCode(), error.getResponseBody()));
+					}
+				}
+
+				@Override
+				public void failed(Exception ex) {
+					Exception fatal = consumer.getFatal();
+
+					if (fatal != null) {
+						fail(fatal);
+					} else {
+						reconnect();
+					}
+				}
+
+				@Override
+				public void cancelled() {
+				}
+			});
+		} catch (RestException e) {
+			fail(e);
+		}
+	}
+
+	private synchronized void reconnect() {
+		if (closed) {
+			return;
+		}
+
+		long delay = Math.min(maxReconnectDelay, reconnectDelay << Math.min(failedAttempts, 16));
+		failedAttempts++;
+
+		pendingReconnect = RECONNECTS.schedule(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (requestProcessor != null && !closed) {
+						requestProcessor.processRequest(client);
+					}
+
+					connect(false);
+				} catch (RuntimeException e) {
+					fail(e);
+				}
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+	private void fail(final Exception ex) {
+		Future<?> exchange;
+		Future<?> pendingReconnect;
+
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+
+			closed = true;
+			exchange = this.exchange;
+			pendingReconnect = this.pendingReconnect;
+			this.exchange = null;
+			this.pendingReconnect = null;
+		}
+
+		cancel(exchange, pendingReconnect);
+		finish(new Runnable() {
+			@Override
+			public void run() {
+				handler.failed(ex);
+			}
+		});
+	}
+
+	/**
+	 * Closes the stream, aborting the current connection and any pending
+	 * reconnect. Events not yet handed to the handler are dropped. The handler
+	 * is notified once, after any event it is being given.
+	 */
+	@Override
+	public void close() {
+		Future<?> exchange;
+		Future<?> pendingReconnect;
+
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+
+			closed = true;
+			exchange = this.exchange;
+			pendingReconnect = this.pendingReconnect;
+			this.exchange = null;
+			this.pendingReconnect = null;
+		}
+
+		cancel(exchange, pendingReconnect);
+		finish(new Runnable() {
+			@Override
+			public void run() {
+				handler.closed();
+			}
+		});
+	}
+
+	private static void cancel(Future<?> exchange, Future<?> pendingReconnect) {
+		if (pendingReconnect != null) {
+			pendingReconnect.cancel(false);
+		}
+
+		if (exchange != null) {
+			exchange.cancel(true);
+		}
+	}
+
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * Called by the consumer once a connection has been accepted.
+	 */
+	synchronized void opened() {
+		failedAttempts = 0;
+	}
+
+	/**
+	 * Called by the parser for each complete event. The event is queued and
+	 * handed to the handler on the executor.
+	 */
+	void dispatch(ServerSentEvent event) {
+		synchronized (queue) {
+			if (closed) {
+				return;
+			}
+
+			queue.add(event);
+
+			if (draining) {
+				return;
+			}
+
+			draining = true;
+		}
+
+		startDraining();
+	}
+
+	/**
+	 * Queues the failure or closed notification behind the event being
+	 * delivered, if any, dropping the events still waiting.
+	 */
+	private void finish(Runnable notification) {
+		Runnable listener;
+
+		synchronized (queue) {
+			queue.clear();
+			terminal = notification;
+			listener = capacityListener;
+			capacityListener = null;
+
+			if (draining) {
+				notification = null;
+			} else {
+				draining = true;
+			}
+		}
+
+		if (listener != null) {
+			listener.run();
+		}
+
+		if (notification != null) {
+			startDraining();
+		}
+	}
+
+	private void startDraining() {
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					drain();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			fail(e);
+
+			// The executor is gone, so notify the handler on this thread
+			drain();
+		}
+	}
+
+	private void drain() {
+		while (true) {
+			ServerSentEvent event;
+			Runnable notification = null;
+			Runnable listener = null;
+
+			synchronized (queue) {
+				event = queue.poll();
+
+				if (event == null) {
+					notification = terminal;
+					terminal = null;
+
+					if (notification == null) {
+						draining = false;
+						return;
+					}
+				} else if (queue.size() < maxQueuedEvents && capacityListener != null) {
+					listener = capacityListener;
+					capacityListener = null;
+				}
+			}
+
+			if (listener != null) {
+				listener.run();
+			}
+
+			if (notification != null) {
+				notification.run();
+				continue;
+			}
+
+			try {
+				handler.onEvent(event);
+			} catch (RuntimeException e) {
+				fail(e);
+			}
+		}
+	}
+
+	/**
+	 * Whether fewer than the maximum number of events are waiting for the
+	 * handler. Also true once the stream is closed, so that a suspended
+	 * connection can notice it.
+	 */
+	boolean hasCapacity() {
+		synchronized (queue) {
+			return queue.size() < maxQueuedEvents || closed;
+		}
+	}
+
+	/**
+	 * Runs the listener once there is room for more events, immediately if
+	 * there already is.
+	 */
+	void onCapacity(Runnable listener) {
+		synchronized (queue) {
+			if (queue.size() >= maxQueuedEvents && !closed) {
+				capacityListener = listener;
+				return;
+			}
+		}
+
+		listener.run();
+	}
+
+	/**
+	 * Called by the parser when the server sets the reconnect delay.
+	 */
+	synchronized void setServerRetry(long retry) {
+		reconnectDelay = retry;
+	}
+
+	/**
+	 * Gets the ID of the last event received, which is sent as
+	 * <code>Last-Event-ID</code> when reconnecting.
+	 * 
+	 * @return the last event ID or <tt>null</tt>
+	 */
+	public String getLastEventId() {
+		return lastEventId;
+	}
+
+	/**
+	 * Sets the event ID to resume from, e.g. one saved by a previous stream.
+	 * 
+	 * @param lastEventId
+	 *            the last event ID
+	 */
+	public void setLastEventId(String lastEventId) {
+		this.lastEventId = lastEventId;
+	}
+
+	public synchronized long getReconnectDelay() {
+		return reconnectDelay;
+	}
+
+	/**
+	 * Sets the delay, in milliseconds, before reconnecting. It doubles with
+	 * each attempt that fails to connect, up to the maximum. A
+	 * <code>retry</code> field sent by the server replaces it. Defaults to 3
+	 * seconds.
+	 * 
+	 * @param reconnectDelay
+	 *            the reconnect delay
+	 */
+	public synchronized void setReconnectDelay(long reconnectDelay) {
+		this.reconnectDelay = reconnectDelay;
+	}
+
+	public synchronized long getMaxReconnectDelay() {
+		return maxReconnectDelay;
+	}
+
+	/**
+	 * Sets the longest delay, in milliseconds, that backing off reaches.
+	 * Defaults to 60 seconds.
+	 * 
+	 * @param maxReconnectDelay
+	 *            the maximum reconnect delay
+	 */
+	public synchronized void setMaxReconnectDelay(long maxReconnectDelay) {
+		this.maxReconnectDelay = maxReconnectDelay;
+	}
+
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	/**
+	 * Sets the size, in bytes, of the buffer content is read into. Defaults to
+	 * 4 KiB.
+	 * 
+	 * @param bufferSize
+	 *            the read buffer size
+	 */
+	public void setBufferSize(int bufferSize) {
+		this.bufferSize = Math.max(256, bufferSize);
+	}
+
+	public int getMaxEventSize() {
+		return maxEventSize;
+	}
+
+	/**
+	 * Sets the largest event, in bytes, accepted. A larger event ends the
+	 * stream, since resuming would only receive it again. Defaults to 1 MiB.
+	 * 
+	 * @param maxEventSize
+	 *            the maximum event size
+	 */
+	public void setMaxEventSize(int maxEventSize) {
+		this.maxEventSize = maxEventSize;
+	}
+
+	public Executor getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Sets the executor events are handed to the handler on. Events of one
+	 * stream are still delivered one at a time, in order, and hold a thread
+	 * only while events are waiting. Defaults to a shared pool of daemon
+	 * threads, one per processor.
+	 * 
+	 * @param executor
+	 *            the executor
+	 */
+	public void setExecutor(Executor executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("executor must not be null");
+		}
+
+		this.executor = executor;
+	}
+
+	public int getMaxQueuedEvents() {
+		return maxQueuedEvents;
+	}
+
+	/**
+	 * Sets how many events may wait for the handler before reading from the
+	 * connection is suspended. Events already read from a chunk are still
+	 * queued, so the queue can briefly exceed it. Defaults to 256.
+	 * 
+	 * @param maxQueuedEvents
+	 *            the maximum number of queued events
+	 */
+	public void setMaxQueuedEvents(int maxQueuedEvents) {
+		this.maxQueuedEvents = Math.max(1, maxQueuedEvents);
+	}
+}
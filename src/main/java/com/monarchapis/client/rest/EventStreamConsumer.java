@@ -0,0 +1,163 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.entity.ContentType;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HTTP;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * Parses the content of one {@link EventStream} connection as it arrives. The
+ * result is <tt>null</tt> once a successful stream ends, or the buffered
+ * response if the status was not <code>200 OK</code>. Input is suspended
+ * while the stream's event queue is full. A failure that must not be retried,
+ * such as an oversized event, is kept so the stream can tell it apart from a
+ * connection failure.
+ */
+class EventStreamConsumer extends AbstractAsyncResponseConsumer<RestResponse> {
+	private static final String EVENT_STREAM = "text/event-stream";
+
+	private final EventStream stream;
+
+	private final ByteBuffer chunk;
+
+	private HttpResponse response;
+
+	private EventStreamParser parser;
+
+	private ByteArrayOutputStream error;
+
+	private volatile Exception fatal;
+
+	EventStreamConsumer(EventStream stream) {
+		this.stream = stream;
+		this.chunk = ByteBuffer.allocate(stream.getBufferSize());
+	}
+
+	@Override
+	protected void onResponseReceived(HttpResponse response) {
+		this.response = response;
+
+		if (response.getStatusLine().getStatusCode() != 200) {
+			error = new ByteArrayOutputStream();
+		} else {
+			stream.opened();
+		}
+	}
+
+	@Override
+	protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) {
+		if (error == null) {
+			boolean eventStream = contentType == null || EVENT_STREAM.equalsIgnoreCase(contentType.getMimeType());
+			parser = new EventStreamParser(stream, eventStream, stream.getLastEventId());
+		}
+	}
+
+	@Override
+	protected void onContentReceived(ContentDecoder decoder, final IOControl ioctrl) throws IOException {
+		int read;
+
+		while (stream.hasCapacity() && (read = decoder.read(chunk)) > 0) {
+			if (error != null) {
+				if (error.size() + read > stream.getMaxEventSize()) {
+					throw fatal(new IOException("Error response exceeds " + stream.getMaxEventSize() + " bytes"));
+				}
+
+				error.write(chunk.array(), 0, read);
+			} else {
+				parse(read);
+			}
+
+			chunk.clear();
+		}
+
+		if (!stream.hasCapacity()) {
+			ioctrl.suspendInput();
+			stream.onCapacity(new Runnable() {
+				@Override
+				public void run() {
+					ioctrl.requestInput();
+				}
+			});
+		}
+	}
+
+	private void parse(int length) throws IOException {
+		try {
+			parser.feed(chunk.array(), 0, length);
+		} catch (IOException ioe) {
+			throw fatal(ioe);
+		} catch (RuntimeException e) {
+			// Never let a parser exception escape into the I/O reactor
+			throw fatal(new IOException(e));
+		}
+	}
+
+	private IOException fatal(IOException ioe) {
+		fatal = ioe.getCause() instanceof Exception ? (Exception) ioe.getCause() : ioe;
+
+		return ioe;
+	}
+
+	/**
+	 * Gets the failure that ended the stream for good, if any.
+	 */
+	Exception getFatal() {
+		return fatal;
+	}
+
+	@Override
+	protected RestResponse buildResult(HttpContext context) throws IOException {
+		if (error != null) {
+			HttpEntity entity = response.getEntity();
+			ContentType contentType = entity != null ? ContentType.get(entity) : null;
+
+			return new RestResponse(response.getStatusLine().getStatusCode(), error.toByteArray(),
+					contentType != null && contentType.getCharset() != null ? contentType.getCharset()
+							: HTTP.DEF_CONTENT_CHARSET, response.getAllHeaders());
+		}
+
+		if (parser != null) {
+			try {
+				parser.finish();
+			} catch (IOException ioe) {
+				throw fatal(ioe);
+			} catch (RuntimeException e) {
+				throw fatal(new IOException(e));
+			}
+		}
+
+		return null;
+	}
+
+	@Override
+	protected void releaseResources() {
+		response = null;
+		parser = null;
+		error = null;
+	}
+}
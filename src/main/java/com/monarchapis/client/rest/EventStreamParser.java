@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Incremental parser for <code>text/event-stream</code> content, or for
+ * line-delimited content where each line is an event. Bytes are parsed as they
+ * arrive, and the line and event buffers never grow beyond the maximum event
+ * size.
+ */
+final class EventStreamParser {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int INITIAL_LINE_SIZE = 128;
+
+	private final EventStream stream;
+
+	private final boolean eventStream;
+
+	private final int maxEventSize;
+
+	private byte[] line = new byte[INITIAL_LINE_SIZE];
+
+	private int lineLength;
+
+	private boolean skipLineFeed;
+
+	private boolean started;
+
+	/** The ID set by the event being parsed, or carried over from the last. */
+	private String lastEventId;
+
+	private String type;
+
+	private StringBuilder data;
+
+	private int eventSize;
+
+	/**
+	 * @param stream
+	 *            the stream to dispatch events to
+	 * @param eventStream
+	 *            whether the content is <code>text/event-stream</code> rather
+	 *            than line-delimited
+	 * @param lastEventId
+	 *            the last event ID carried over from the previous connection
+	 */
+	EventStreamParser(EventStream stream, boolean eventStream, String lastEventId) {
+		this.stream = stream;
+		this.eventStream = eventStream;
+		this.maxEventSize = stream.getMaxEventSize();
+		this.lastEventId = lastEventId;
+	}
+
+	/**
+	 * Parses the next bytes, dispatching every event they complete.
+	 * 
+	 * @throws IOException
+	 *             if an event exceeds the maximum size
+	 */
+	void feed(byte[] bytes, int offset, int length) throws IOException {
+		int end = offset + length;
+		int start = offset;
+
+		if (!started && length > 0) {
+			started = true;
+			start = skipByteOrderMark(bytes, offset, end);
+		}
+
+		for (int i = start; i < end; i++) {
+			byte b = bytes[i];
+
+			if (b == '\n' || b == '\r') {
+				// A line feed right after a carriage return ends the same line
+				if (b == '\n' && skipLineFeed) {
+					skipLineFeed = false;
+					start = i + 1;
+					continue;
+				}
+
+				append(bytes, start, i);
+				processLine();
+				skipLineFeed = b == '\r';
+				start = i + 1;
+			} else {
+				skipLineFeed = false;
+			}
+		}
+
+		append(bytes, start, end);
+	}
+
+	/**
+	 * Ends the content. A trailing line of line-delimited content is
+	 * dispatched, whereas an unterminated server-sent event is discarded.
+	 */
+	void finish() throws IOException {
+		if (!eventStream && lineLength > 0) {
+			processLine();
+		}
+	}
+
+	private static int skipByteOrderMark(byte[] bytes, int offset, int end) {
+		if (end - offset >= 3 && bytes[offset] == (byte) 0xEF && bytes[offset + 1] == (byte) 0xBB
+				&& bytes[offset + 2] == (byte) 0xBF) {
+			return offset + 3;
+		}
+
+		return offset;
+	}
+
+	private void append(byte[] bytes, int start, int end) throws IOException {
+		int length = end - start;
+
+		if (length == 0) {
+			return;
+		}
+
+		if (lineLength + length > maxEventSize) {
+			throw new IOException("Event exceeds the maximum size of " + maxEventSize + " bytes");
+		}
+
+		if (lineLength + length > line.length) {
+			line = Arrays.copyOf(line, Math.min(maxEventSize, Math.max(line.length * 2, lineLength + length)));
+		}
+
+		System.arraycopy(bytes, start, line, lineLength, length);
+		lineLength += length;
+	}
+
+	private void processLine() throws IOException {
+		String text = new String(line, 0, lineLength, UTF_8);
+		int size = lineLength;
+		lineLength = 0;
+
+		if (line.length > INITIAL_LINE_SIZE * 8) {
+			// Let go of a buffer grown for an unusually long line
+			line = new byte[INITIAL_LINE_SIZE];
+		}
+
+		if (!eventStream) {
+			if (!text.trim().isEmpty()) {
+				stream.dispatch(new ServerSentEvent(lastEventId, null, text));
+			}
+
+			return;
+		}
+
+		if (text.isEmpty()) {
+			dispatchEvent();
+			return;
+		}
+
+		if (text.charAt(0) == ':') {
+			// Comment, typically a keep-alive
+			return;
+		}
+
+		int colon = text.indexOf(':');
+		String field = colon >= 0 ? text.substring(0, colon) : text;
+		String value = "";
+
+		if (colon >= 0) {
+			int valueStart = colon + 1;
+
+			if (valueStart < text.length() && text.charAt(valueStart) == ' ') {
+				valueStart++;
+			}
+
+			value = text.substring(valueStart);
+		}
+
+		if ("data".equals(field)) {
+			eventSize += size;
+
+			if (eventSize > maxEventSize) {
+				throw new IOException("Event exceeds the maximum size of " + maxEventSize + " bytes");
+			}
+
+			if (data == null) {
+				data = new StringBuilder(value.length());
+			} else {
+				data.append('\n');
+			}
+
+			data.append(value);
+		} else if ("event".equals(field)) {
+			type = value;
+		} else if ("id".equals(field)) {
+			if (value.indexOf('\u0000') < 0) {
+				lastEventId = value;
+			}
+		} else if ("retry".equals(field)) {
+			if (!value.isEmpty() && isDigits(value)) {
+				stream.setServerRetry(Long.parseLong(value));
+			}
+		}
+	}
+
+	private void dispatchEvent() {
+		// As with EventSource, the ID becomes the one to resume from only once
+		// its event is dispatched, so a dropped connection cannot skip it
+		stream.setLastEventId(lastEventId);
+
+		if (data != null) {
+			stream.dispatch(new ServerSentEvent(lastEventId, type != null && !type.isEmpty() ? type : null,
+					data.toString()));
+		}
+
+		data = null;
+		type = null;
+		eventSize = 0;
+	}
+
+	private static boolean isDigits(String value) {
+		if (value.length() > 18) {
+			return false;
+		}
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+
+		return true;
+	}
+}
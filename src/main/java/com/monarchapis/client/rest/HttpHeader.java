@@ -18,6 +18,7 @@
 package com.monarchapis.client.rest;
 
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.Header;
 
 public final class HttpHeader {
 	/** Http header name. */
@@ -43,6 +44,19 @@ public final class HttpHeader {
 		this.value = value;
 	}
 
+	/**
+	 * Creates a header from a transport header, whose name the transport has
+	 * already validated.
+	 */
+	private HttpHeader(final Header header) {
+		this.name = header.getName();
+		this.value = header.getValue();
+	}
+
+	static HttpHeader trusted(final Header header) {
+		return new HttpHeader(header);
+	}
+
 	/**
 	 * Gets http header name.
 	 * 
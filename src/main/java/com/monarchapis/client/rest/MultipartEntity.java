@@ -0,0 +1,565 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.FileContentEncoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.entity.HttpAsyncContentProducer;
+
+/**
+ * A <code>multipart/form-data</code> entity that streams its parts.
+ * 
+ * <p>
+ * Part content is never buffered as a whole: it is copied through a single
+ * fixed-size buffer, both when written to a blocking connection and when
+ * produced for the non-blocking I/O reactor. The entity is repeatable unless
+ * it contains an <code>InputStream</code> part.
+ * </p>
+ * 
+ * <p>
+ * When produced for the I/O reactor, file parts are read through a
+ * <code>FileChannel</code> and transferred straight to the connection when the
+ * transfer encoding allows it. <code>InputStream</code> parts, however, are read
+ * on the I/O reactor thread, so they must not block; streams over the network
+ * or other slow sources should be sent with the blocking client.
+ * </p>
+ */
+public class MultipartEntity extends AbstractHttpEntity implements HttpAsyncContentProducer {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private static final String CRLF = "\r\n";
+
+	private final String boundary;
+
+	private final List<Part> parts;
+
+	/** Parts not yet started by the asynchronous client. */
+	private Iterator<Part> asyncParts;
+
+	/** The part whose header was produced last and whose content is next. */
+	private Part asyncPart;
+
+	/** Content produced but not yet written to the encoder. */
+	private ByteBuffer asyncBuffer;
+
+	private ByteBuffer asyncChunk;
+
+	private FileChannel asyncChannel;
+
+	private long asyncPosition;
+
+	private long asyncLength;
+
+	private InputStream asyncStream;
+
+	private boolean asyncClosingBoundary;
+
+	public MultipartEntity(String boundary, List<Part> parts) {
+		if (StringUtils.isBlank(boundary)) {
+			throw new IllegalArgumentException("boundary must not be blank or null");
+		}
+
+		this.boundary = boundary;
+		this.parts = new ArrayList<Part>(parts);
+
+		setContentType("multipart/form-data; boundary=" + boundary);
+		setChunked(getContentLength() < 0);
+	}
+
+	@Override
+	public boolean isRepeatable() {
+		for (Part part : parts) {
+			if (!part.isRepeatable()) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public long getContentLength() {
+		long length = 0;
+
+		for (Part part : parts) {
+			long partLength = part.getLength();
+
+			if (partLength < 0) {
+				return -1;
+			}
+
+			length += getPartHeader(part).length + partLength + 2;
+		}
+
+		return length + getClosingBoundary().length;
+	}
+
+	/**
+	 * Returns the whole multipart body as a stream that opens each part's
+	 * content only when it is reached.
+	 */
+	@Override
+	public InputStream getContent() throws IOException {
+		final Iterator<Part> iterator = parts.iterator();
+
+		return new SequenceInputStream(new Enumeration<InputStream>() {
+			private Part part;
+			private int section;
+
+			@Override
+			public boolean hasMoreElements() {
+				return part != null || iterator.hasNext() || section == 0;
+			}
+
+			@Override
+			public InputStream nextElement() {
+				if (part == null) {
+					if (!iterator.hasNext()) {
+						if (section != 0) {
+							throw new NoSuchElementException();
+						}
+
+						section = 1;
+						return new ByteArrayInputStream(getClosingBoundary());
+					}
+
+					part = iterator.next();
+					return new ByteArrayInputStream(getPartHeader(part));
+				}
+
+				Part current = part;
+				part = null;
+
+				try {
+					return new SequenceInputStream(current.open(), new ByteArrayInputStream(CRLF.getBytes(UTF_8)));
+				} catch (IOException e) {
+					throw new RestException(e);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void writeTo(OutputStream outstream) throws IOException {
+		if (outstream == null) {
+			throw new IllegalArgumentException("Output stream may not be null");
+		}
+
+		InputStream content = getContent();
+
+		try {
+			IOUtils.copyLarge(content, outstream, new byte[BUFFER_SIZE]);
+		} finally {
+			IOUtils.closeQuietly(content);
+		}
+
+		outstream.flush();
+	}
+
+	@Override
+	public boolean isStreaming() {
+		return !isRepeatable();
+	}
+
+	@Override
+	public void produceContent(ContentEncoder encoder, IOControl ioctrl) throws IOException {
+		if (asyncParts == null) {
+			asyncParts = parts.iterator();
+			asyncChunk = ByteBuffer.allocate(BUFFER_SIZE);
+			asyncBuffer = ByteBuffer.allocate(0);
+		}
+
+		if (!asyncBuffer.hasRemaining()) {
+			boolean transfer = encoder instanceof FileContentEncoder;
+
+			if (!fill(transfer)) {
+				encoder.complete();
+				close();
+				return;
+			}
+
+			if (transfer && asyncChannel != null && !asyncBuffer.hasRemaining()) {
+				asyncPosition += ((FileContentEncoder) encoder).transfer(asyncChannel, asyncPosition, asyncLength
+						- asyncPosition);
+				return;
+			}
+		}
+
+		encoder.write(asyncBuffer);
+	}
+
+	/**
+	 * Moves on to the next content to produce for the asynchronous client.
+	 * 
+	 * @param transfer
+	 *            whether file content is left in its channel to be transferred
+	 *            by the encoder rather than read into the buffer
+	 * @return <tt>false</tt> if all content has been produced
+	 */
+	private boolean fill(boolean transfer) throws IOException {
+		while (true) {
+			if (asyncChannel != null) {
+				if (asyncPosition < asyncLength) {
+					if (transfer) {
+						return true;
+					}
+
+					asyncChunk.clear();
+					asyncChunk.limit((int) Math.min(asyncChunk.capacity(), asyncLength - asyncPosition));
+					int read = asyncChannel.read(asyncChunk, asyncPosition);
+
+					if (read == -1) {
+						throw new IOException("File part ended before its length of " + asyncLength + " bytes");
+					}
+
+					asyncPosition += read;
+					asyncChunk.flip();
+					asyncBuffer = asyncChunk;
+
+					return true;
+				}
+
+				asyncChannel.close();
+				asyncChannel = null;
+				asyncBuffer = ByteBuffer.wrap(CRLF.getBytes(UTF_8));
+
+				return true;
+			}
+
+			if (asyncStream != null) {
+				int read = asyncStream.read(asyncChunk.array());
+
+				if (read != -1) {
+					asyncChunk.clear();
+					asyncChunk.limit(read);
+					asyncBuffer = asyncChunk;
+
+					return true;
+				}
+
+				asyncStream.close();
+				asyncStream = null;
+				asyncBuffer = ByteBuffer.wrap(CRLF.getBytes(UTF_8));
+
+				return true;
+			}
+
+			if (asyncPart != null) {
+				Part part = asyncPart;
+				asyncPart = null;
+				asyncChannel = part.openChannel();
+
+				if (asyncChannel != null) {
+					asyncPosition = 0;
+					asyncLength = part.getLength() >= 0 ? part.getLength() : asyncChannel.size();
+				} else {
+					asyncStream = part.open();
+				}
+
+				continue;
+			}
+
+			if (asyncParts.hasNext()) {
+				asyncPart = asyncParts.next();
+				asyncBuffer = ByteBuffer.wrap(getPartHeader(asyncPart));
+
+				return true;
+			}
+
+			if (!asyncClosingBoundary) {
+				asyncClosingBoundary = true;
+				asyncBuffer = ByteBuffer.wrap(getClosingBoundary());
+
+				return true;
+			}
+
+			return false;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		FileChannel channel = asyncChannel;
+		InputStream stream = asyncStream;
+		asyncParts = null;
+		asyncPart = null;
+		asyncBuffer = null;
+		asyncChunk = null;
+		asyncChannel = null;
+		asyncStream = null;
+		asyncClosingBoundary = false;
+
+		try {
+			if (channel != null) {
+				channel.close();
+			}
+		} finally {
+			if (stream != null) {
+				stream.close();
+			}
+		}
+	}
+
+	public String getBoundary() {
+		return boundary;
+	}
+
+	public List<Part> getParts() {
+		return Collections.unmodifiableList(parts);
+	}
+
+	private byte[] getPartHeader(Part part) {
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("--").append(boundary).append(CRLF);
+		sb.append("Content-Disposition: form-data; name=\"").append(escape(part.getName())).append("\"");
+
+		if (part.getFileName() != null) {
+			sb.append("; filename=\"").append(escape(part.getFileName())).append("\"");
+		}
+
+		sb.append(CRLF);
+
+		if (part.getContentType() != null) {
+			sb.append("Content-Type: ").append(part.getContentType()).append(CRLF);
+		}
+
+		sb.append(CRLF);
+
+		return sb.toString().getBytes(UTF_8);
+	}
+
+	private byte[] getClosingBoundary() {
+		return ("--" + boundary + "--" + CRLF).getBytes(UTF_8);
+	}
+
+	private static String escape(String value) {
+		return StringUtils.replaceEach(value, new String[] { "\"", "\r", "\n" }, new String[] { "%22", "%0D", "%0A" });
+	}
+
+	public static Part text(String name, String value) {
+		return new TextPart(name, value);
+	}
+
+	public static Part stream(String name, InputStream content, String fileName, String contentType) {
+		return new StreamPart(name, content, fileName, contentType);
+	}
+
+	public static Part file(String name, File file, String contentType) {
+		return new FilePart(name, file, contentType);
+	}
+
+	public static Part path(String name, Path path, String contentType) {
+		return new PathPart(name, path, contentType);
+	}
+
+	/**
+	 * A part of a multipart body.
+	 */
+	public abstract static class Part {
+		private final String name;
+		private final String fileName;
+		private final String contentType;
+
+		protected Part(String name, String fileName, String contentType) {
+			if (StringUtils.isBlank(name)) {
+				throw new IllegalArgumentException("name must not be blank or null");
+			}
+
+			this.name = name;
+			this.fileName = fileName;
+			this.contentType = contentType;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public String getFileName() {
+			return fileName;
+		}
+
+		public String getContentType() {
+			return contentType;
+		}
+
+		/**
+		 * Gets the length of the part's content.
+		 * 
+		 * @return the length in bytes or -1 if unknown
+		 */
+		public abstract long getLength();
+
+		public abstract boolean isRepeatable();
+
+		public abstract InputStream open() throws IOException;
+
+		/**
+		 * Opens a channel over the part's content, if it is a file, for the
+		 * asynchronous client to transfer from.
+		 * 
+		 * @return the channel or <tt>null</tt> to read from {@link #open()}
+		 */
+		FileChannel openChannel() throws IOException {
+			return null;
+		}
+	}
+
+	private static class TextPart extends Part {
+		private final byte[] value;
+
+		TextPart(String name, String value) {
+			super(name, null, null);
+			this.value = value.getBytes(UTF_8);
+		}
+
+		@Override
+		public long getLength() {
+			return value.length;
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return true;
+		}
+
+		@Override
+		public InputStream open() {
+			return new ByteArrayInputStream(value);
+		}
+	}
+
+	private static class StreamPart extends Part {
+		private final InputStream content;
+
+		StreamPart(String name, InputStream content, String fileName, String contentType) {
+			super(name, fileName != null ? fileName : name, contentType != null ? contentType
+					: "application/octet-stream");
+
+			if (content == null) {
+				throw new IllegalArgumentException("content must not be null");
+			}
+
+			this.content = content;
+		}
+
+		@Override
+		public long getLength() {
+			return -1;
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return false;
+		}
+
+		@Override
+		public InputStream open() {
+			return content;
+		}
+	}
+
+	private static class FilePart extends Part {
+		private final File file;
+
+		FilePart(String name, File file, String contentType) {
+			super(name, file.getName(), contentType != null ? contentType : "application/octet-stream");
+			this.file = file;
+		}
+
+		@Override
+		public long getLength() {
+			return file.length();
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return true;
+		}
+
+		@Override
+		public InputStream open() throws IOException {
+			return new FileInputStream(file);
+		}
+
+		@Override
+		FileChannel openChannel() throws IOException {
+			return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+		}
+	}
+
+	private static class PathPart extends Part {
+		private final Path path;
+
+		PathPart(String name, Path path, String contentType) {
+			super(name, String.valueOf(path.getFileName()), contentType != null ? contentType
+					: "application/octet-stream");
+			this.path = path;
+		}
+
+		@Override
+		public long getLength() {
+			try {
+				return Files.size(path);
+			} catch (IOException e) {
+				return -1;
+			}
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return true;
+		}
+
+		@Override
+		public InputStream open() throws IOException {
+			return Files.newInputStream(path);
+		}
+
+		@Override
+		FileChannel openChannel() throws IOException {
+			return FileChannel.open(path, StandardOpenOption.READ);
+		}
+	}
+}
@@ -102,7 +102,30 @@ public class OAuthToken {
 	 *         otherwise
 	 */
 	public boolean isAccessTokenExpired() {
-		return accessTokenExpiry != NO_EXPIRATION && xtimestamp() >= accessTokenExpiry;
+		return isAccessTokenExpired(0);
+	}
+
+	/**
+	 * Gets whether the access token is expired or will expire within the
+	 * specified number of seconds.
+	 * 
+	 * @param skew
+	 *            number of seconds before the actual expiry to treat the token
+	 *            as expired
+	 * @return <tt>true</tt> if access token is expired, <tt>false</tt>
+	 *         otherwise
+	 */
+	public boolean isAccessTokenExpired(long skew) {
+		return accessTokenExpiry != NO_EXPIRATION && xtimestamp() + skew >= accessTokenExpiry;
+	}
+
+	/**
+	 * Gets the access token expiry as a Unix timestamp.
+	 * 
+	 * @return seconds since Unix epoch or <code>NO_EXPIRATION</code>
+	 */
+	public long getAccessTokenExpiry() {
+		return accessTokenExpiry;
 	}
 
 	/**
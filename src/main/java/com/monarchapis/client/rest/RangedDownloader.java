@@ -0,0 +1,433 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
+
+/**
+ * Downloads large resources by fetching byte ranges concurrently into a
+ * preallocated file.
+ * 
+ * <p>
+ * The resource is first probed with a <code>HEAD</code> request. If the server
+ * advertises <code>Accept-Ranges: bytes</code> and a
+ * <code>Content-Length</code>, the content is split into ranges that are
+ * fetched in parallel over the factory's pooled connections. The number of
+ * ranges fetched at once is limited to the factory's connections per route
+ * (see {@link RestClientFactory#setConnectionMaxPerRoute(int)}), so that they
+ * are not queued behind each other in the pool. An interrupted range is
+ * resumed from the last byte written. <code>If-Range</code> with the probed
+ * strong <code>ETag</code>, or otherwise the <code>Last-Modified</code> date,
+ * guards against the resource changing between requests, and the result is
+ * verified against the expected length and any <code>Digest</code> or
+ * <code>Content-MD5</code> header.
+ * </p>
+ */
+public class RangedDownloader {
+	private static final int BUFFER_SIZE = 65536;
+
+	private final RestClientFactory clientFactory;
+
+	private RequestProcessor requestProcessor;
+
+	private int parallelism = 4;
+
+	private long minRangeSize = 1024 * 1024;
+
+	private int maxRetries = 3;
+
+	private ExecutorService executor;
+
+	public RangedDownloader(RestClientFactory clientFactory) {
+		if (clientFactory == null) {
+			throw new IllegalArgumentException("clientFactory must not be null");
+		}
+
+		this.clientFactory = clientFactory;
+	}
+
+	/**
+	 * Downloads the resource at the URL into the target file.
+	 * 
+	 * @param url
+	 *            the resource URL
+	 * @param target
+	 *            the file to write, which is replaced
+	 * @return the probe response, carrying the resource's headers
+	 * @throws RestException
+	 *             if the download failed or did not verify
+	 */
+	public RestResponse download(String url, Path target) throws RestException {
+		RestResponse probe = newClient("HEAD", url).send();
+
+		if (probe.getStatusCode() >= 400) {
+			throw new RestException(probe.getStatusCode(), "Could not probe " + url);
+		}
+
+		long length = parseLength(probe.getHeader("Content-Length"));
+		boolean ranges = "bytes".equalsIgnoreCase(StringUtils.trim(probe.getHeader("Accept-Ranges")));
+		String validator = getRangeValidator(probe);
+
+		RandomAccessFile file = null;
+
+		try {
+			file = new RandomAccessFile(target.toFile(), "rw");
+			file.setLength(Math.max(length, 0));
+			FileChannel channel = file.getChannel();
+
+			if (!ranges || length <= 0) {
+				fetchWhole(url, channel);
+			} else {
+				fetchRanges(url, channel, length, validator);
+			}
+
+			if (length >= 0 && channel.size() != length) {
+				throw new RestException("Downloaded " + channel.size() + " bytes, expected " + length);
+			}
+
+			verifyDigest(probe, channel);
+		} catch (IOException ioe) {
+			throw new RestException(ioe);
+		} finally {
+			IOUtils.closeQuietly(file);
+		}
+
+		return probe;
+	}
+
+	/**
+	 * Gets the validator sent with <code>If-Range</code>. Weak entity tags
+	 * cannot be used with <code>If-Range</code>, so the
+	 * <code>Last-Modified</code> date is used in their place.
+	 * 
+	 * @return the validator or <tt>null</tt> if the resource has none
+	 */
+	private static String getRangeValidator(RestResponse probe) {
+		String etag = StringUtils.trimToNull(probe.getHeader("ETag"));
+
+		if (etag != null && !etag.startsWith("W/")) {
+			return etag;
+		}
+
+		return StringUtils.trimToNull(probe.getHeader("Last-Modified"));
+	}
+
+	private void fetchRanges(final String url, final FileChannel channel, long length, final String validator)
+			throws IOException {
+		int concurrency = Math.min(parallelism, clientFactory.getConnectionMaxPerRoute());
+		int count = (int) Math.max(1, Math.min(concurrency, length / minRangeSize));
+		long rangeSize = length / count;
+
+		ExecutorService executor = this.executor != null ? this.executor : Executors.newFixedThreadPool(count);
+		List<Future<Void>> futures = new ArrayList<Future<Void>>(count);
+
+		try {
+			for (int i = 0; i < count; i++) {
+				final long start = i * rangeSize;
+				final long end = i == count - 1 ? length - 1 : start + rangeSize - 1;
+
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						fetchRange(url, channel, start, end, validator);
+						return null;
+					}
+				}));
+			}
+
+			for (Future<Void> future : futures) {
+				future.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RestException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+
+			throw new RestException(e.getCause());
+		} finally {
+			for (Future<Void> future : futures) {
+				future.cancel(true);
+			}
+
+			if (executor != this.executor) {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	/**
+	 * Fetches an inclusive byte range, resuming from the last byte written if
+	 * the transfer is interrupted.
+	 */
+	private void fetchRange(String url, FileChannel channel, long start, long end, String validator) {
+		RangeHandler handler = new RangeHandler(channel, start, end);
+		int attempts = 0;
+
+		while (handler.position <= end) {
+			RestClient client = newClient("GET", url);
+			client.setHeader("Range", "bytes=" + handler.position + "-" + end);
+
+			if (validator != null) {
+				client.setHeader("If-Range", validator);
+			}
+
+			try {
+				client.send(handler);
+			} catch (RangeException e) {
+				throw e;
+			} catch (RestException e) {
+				if (++attempts > maxRetries) {
+					throw e;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fetches the whole resource, restarting from the beginning if the
+	 * transfer is interrupted.
+	 */
+	private void fetchWhole(String url, FileChannel channel) throws IOException {
+		RangeHandler handler = new RangeHandler(channel, 0, -1);
+		int attempts = 0;
+
+		while (true) {
+			try {
+				newClient("GET", url).send(handler);
+				channel.truncate(handler.position);
+				return;
+			} catch (RangeException e) {
+				throw e;
+			} catch (RestException e) {
+				if (++attempts > maxRetries) {
+					throw e;
+				}
+
+				handler.position = 0;
+			}
+		}
+	}
+
+	private void verifyDigest(RestResponse probe, FileChannel channel) throws IOException {
+		String expected = null;
+		String algorithm = null;
+		String digestHeader = probe.getHeader("Digest");
+
+		if (digestHeader != null) {
+			for (String instance : StringUtils.split(digestHeader, ',')) {
+				String name = StringUtils.trim(StringUtils.substringBefore(instance, "="));
+
+				if ("SHA-256".equalsIgnoreCase(name) || "MD5".equalsIgnoreCase(name)) {
+					algorithm = name.toUpperCase();
+					expected = StringUtils.trim(StringUtils.substringAfter(instance, "="));
+					break;
+				}
+			}
+		} else if (probe.getHeader("Content-MD5") != null) {
+			algorithm = "MD5";
+			expected = StringUtils.trim(probe.getHeader("Content-MD5"));
+		}
+
+		if (expected == null) {
+			return;
+		}
+
+		try {
+			MessageDigest digest = MessageDigest.getInstance(algorithm);
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+			long position = 0;
+			int read;
+
+			while ((read = channel.read(buffer, position)) > 0) {
+				buffer.flip();
+				digest.update(buffer);
+				buffer.clear();
+				position += read;
+			}
+
+			if (!expected.equals(Base64.encodeBase64String(digest.digest()))) {
+				throw new RestException("Downloaded content does not match its " + algorithm + " digest");
+			}
+		} catch (NoSuchAlgorithmException e) {
+			throw new RestException(e);
+		}
+	}
+
+	private RestClient newClient(String method, String url) {
+		RestClient client = clientFactory.create(method, url);
+		// Ranges and digests refer to the unencoded representation
+		client.setHeader(ContentDecoding.ACCEPT_ENCODING, ContentDecoding.IDENTITY);
+
+		if (requestProcessor != null) {
+			requestProcessor.processRequest(client);
+		}
+
+		return client;
+	}
+
+	private static long parseLength(String value) {
+		try {
+			return value != null ? Long.parseLong(value.trim()) : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * Writes response content into the file, tracking the position so that an
+	 * interrupted transfer can be resumed.
+	 */
+	private static class RangeHandler implements ResponseHandler<Void> {
+		private final FileChannel channel;
+		private final long end;
+		private volatile long position;
+
+		RangeHandler(FileChannel channel, long start, long end) {
+			this.channel = channel;
+			this.position = start;
+			this.end = end;
+		}
+
+		@Override
+		public Void handleResponse(HttpResponse response) throws IOException {
+			int statusCode = response.getStatusLine().getStatusCode();
+			boolean ranged = end >= 0;
+
+			if (ranged && statusCode != 206) {
+				// A 200 means the range was ignored, e.g. because the
+				// resource changed and If-Range failed.
+				throw new RangeException(statusCode, "Expected a partial response but received " + statusCode);
+			}
+
+			if (!ranged && statusCode != 200) {
+				throw new RangeException(statusCode, "Unexpected status " + statusCode);
+			}
+
+			HttpEntity entity = response.getEntity();
+
+			if (entity == null) {
+				throw new RangeException(statusCode, "Response has no content");
+			}
+
+			InputStream content = entity.getContent();
+
+			try {
+				byte[] buffer = new byte[BUFFER_SIZE];
+				int read;
+
+				while ((read = content.read(buffer)) != -1) {
+					ByteBuffer source = ByteBuffer.wrap(buffer, 0, read);
+
+					while (source.hasRemaining()) {
+						position += channel.write(source, position);
+					}
+				}
+			} finally {
+				content.close();
+			}
+
+			if (ranged && position <= end) {
+				throw new IOException("Range ended early at " + position);
+			}
+
+			return null;
+		}
+	}
+
+	/**
+	 * A failure that resuming the range cannot fix.
+	 */
+	private static class RangeException extends RestException {
+		private static final long serialVersionUID = 1L;
+
+		RangeException(int statusCode, String errorMessage) {
+			super(statusCode, errorMessage);
+		}
+	}
+
+	public RequestProcessor getRequestProcessor() {
+		return requestProcessor;
+	}
+
+	public void setRequestProcessor(RequestProcessor requestProcessor) {
+		this.requestProcessor = requestProcessor;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	/**
+	 * Sets the maximum number of ranges fetched at once. It is further limited
+	 * to the client factory's connections per route.
+	 * 
+	 * @param parallelism
+	 *            the maximum number of concurrent ranges
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
+	public long getMinRangeSize() {
+		return minRangeSize;
+	}
+
+	public void setMinRangeSize(long minRangeSize) {
+		this.minRangeSize = minRangeSize;
+	}
+
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	public void setMaxRetries(int maxRetries) {
+		this.maxRetries = maxRetries;
+	}
+
+	public ExecutorService getExecutor() {
+		return executor;
+	}
+
+	public void setExecutor(ExecutorService executor) {
+		this.executor = executor;
+	}
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.protocol.HTTP;
+
+/**
+ * Opt-in compression of request bodies. Bodies of at least the threshold
+ * length are sent with a <code>gzip</code> or <code>deflate</code>
+ * <code>Content-Encoding</code>. For bodies of unknown length, up to the
+ * threshold is read ahead to decide; a body that ends before it is sent
+ * uncompressed with its length. A host that answers a
+ * compressed request with <code>415 Unsupported Media Type</code> is sent
+ * uncompressed bodies from then on, and the rejected request is resent.
+ * <p>
+ * Request processors such as Hawk see the body before it is compressed, since
+ * servers verify the payload after decoding it.
+ * </p>
+ */
+public class RequestCompression {
+	private String coding = CompressingEntity.GZIP;
+
+	private long threshold = 1024;
+
+	private final Set<String> disabledHosts = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	/**
+	 * Wraps the entity in a compressing entity if it qualifies.
+	 *
+	 * @param request
+	 *            the request being prepared
+	 * @param entity
+	 *            the request body
+	 * @return the entity to send
+	 * @throws RestException
+	 *             if the body could not be read ahead
+	 */
+	HttpEntity compress(HttpRequestBase request, HttpEntity entity) throws RestException {
+		if (entity == null || entity.getContentEncoding() != null || request.containsHeader(HTTP.CONTENT_ENCODING)) {
+			return entity;
+		}
+
+		long length = entity.getContentLength();
+
+		if (length >= 0 && length < threshold) {
+			return entity;
+		}
+
+		if (isDisabled(request.getURI())) {
+			return entity;
+		}
+
+		if (length < 0) {
+			try {
+				return compressUnknownLength(entity);
+			} catch (IOException ioe) {
+				throw new RestException(ioe);
+			}
+		}
+
+		return new CompressingEntity(entity, coding);
+	}
+
+	/**
+	 * Reads up to the threshold of a body of unknown length to decide whether
+	 * to compress it. A non-repeatable body is replaced by one that replays
+	 * what was read ahead before the rest of its content.
+	 */
+	private HttpEntity compressUnknownLength(HttpEntity entity) throws IOException {
+		InputStream content;
+
+		try {
+			content = entity.getContent();
+		} catch (UnsupportedOperationException e) {
+			// The entity can only be written, so it cannot be read ahead
+			return new CompressingEntity(entity, coding);
+		}
+
+		boolean consumed = true;
+
+		try {
+			byte[] prefix = new byte[(int) Math.min(threshold, Integer.MAX_VALUE - 8)];
+			int read = IOUtils.read(content, prefix);
+
+			if (read < prefix.length) {
+				ByteArrayEntity small = new ByteArrayEntity(prefix, 0, read);
+				small.setContentType(entity.getContentType());
+
+				return small;
+			}
+
+			if (entity.isRepeatable()) {
+				return new CompressingEntity(entity, coding);
+			}
+
+			consumed = false;
+			InputStreamEntity remainder = new InputStreamEntity(new SequenceInputStream(new ByteArrayInputStream(
+					prefix), content), -1);
+			remainder.setContentType(entity.getContentType());
+
+			return new CompressingEntity(remainder, coding);
+		} finally {
+			if (consumed) {
+				content.close();
+			}
+		}
+	}
+
+	/**
+	 * Stops compressing bodies sent to the host of the URI.
+	 *
+	 * @param uri
+	 *            the request URI
+	 */
+	public void disable(URI uri) {
+		disabledHosts.add(getHostKey(uri));
+	}
+
+	public boolean isDisabled(URI uri) {
+		return disabledHosts.contains(getHostKey(uri));
+	}
+
+	private static String getHostKey(URI uri) {
+		return uri.getHost() + ":" + uri.getPort();
+	}
+
+	public String getCoding() {
+		return coding;
+	}
+
+	/**
+	 * Sets the content coding applied, either <code>gzip</code> (the default)
+	 * or <code>deflate</code>.
+	 *
+	 * @param coding
+	 *            the content coding
+	 */
+	public void setCoding(String coding) {
+		if (!CompressingEntity.GZIP.equals(coding) && !CompressingEntity.DEFLATE.equals(coding)) {
+			throw new IllegalArgumentException("Unsupported coding: " + coding);
+		}
+
+		this.coding = coding;
+	}
+
+	public long getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * Sets the body length, in bytes, from which bodies are compressed. Up to
+	 * this many bytes of a body of unknown length are held in memory to decide
+	 * whether it qualifies.
+	 *
+	 * @param threshold
+	 *            the minimum body length
+	 */
+	public void setThreshold(long threshold) {
+		this.threshold = threshold;
+	}
+}
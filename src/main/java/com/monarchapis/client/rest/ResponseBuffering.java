@@ -0,0 +1,249 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+
+/**
+ * Policy for buffering response bodies. Bodies are kept in memory up to the
+ * memory threshold and spill to a temporary file beyond it. A body larger than
+ * the maximum size fails the exchange as soon as that is known, either from
+ * the declared <code>Content-Length</code> or while reading, and the
+ * connection is aborted rather than drained.
+ * 
+ * <p>
+ * A spilled body is deleted when the {@link RestResponse} holding it is
+ * closed, so responses must be closed once read while buffering is in use.
+ * </p>
+ */
+public class ResponseBuffering {
+	private static final int BUFFER_SIZE = 8192;
+
+	private long memoryThreshold = 8 * 1024 * 1024;
+
+	private long maxSize = -1;
+
+	private File tempDirectory;
+
+	/**
+	 * Reads the entity content into a buffer. The content stream is only
+	 * closed when it was read completely, so a failed exchange should be
+	 * aborted by the caller.
+	 */
+	Buffer read(HttpEntity entity) throws IOException {
+		Buffer buffer = newBuffer(entity.getContentLength());
+		InputStream content = entity.getContent();
+
+		if (content == null) {
+			return buffer;
+		}
+
+		try {
+			byte[] bytes = new byte[BUFFER_SIZE];
+			int read;
+
+			while ((read = content.read(bytes)) != -1) {
+				buffer.write(bytes, 0, read);
+			}
+
+			buffer.finish();
+		} catch (IOException ioe) {
+			buffer.discard();
+			throw ioe;
+		}
+
+		content.close();
+
+		return buffer;
+	}
+
+	/**
+	 * Creates a buffer for content of the expected length, or -1 if unknown.
+	 *
+	 * @throws IOException
+	 *             if the expected length exceeds the maximum size
+	 */
+	Buffer newBuffer(long expectedLength) throws IOException {
+		if (maxSize >= 0 && expectedLength > maxSize) {
+			throw new IOException("Response body of " + expectedLength + " bytes exceeds the maximum of " + maxSize);
+		}
+
+		return new Buffer(expectedLength);
+	}
+
+	public long getMemoryThreshold() {
+		return memoryThreshold;
+	}
+
+	/**
+	 * Sets the body size, in bytes, above which bodies spill to disk.
+	 *
+	 * @param memoryThreshold
+	 *            the memory threshold
+	 */
+	public void setMemoryThreshold(long memoryThreshold) {
+		this.memoryThreshold = Math.min(memoryThreshold, Integer.MAX_VALUE - 8);
+	}
+
+	public long getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * Sets the largest body size, in bytes, accepted. Negative values, the
+	 * default, mean no limit.
+	 *
+	 * @param maxSize
+	 *            the maximum size
+	 */
+	public void setMaxSize(long maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	public File getTempDirectory() {
+		return tempDirectory;
+	}
+
+	/**
+	 * Sets the directory spilled bodies are written to, or <tt>null</tt> for
+	 * the system default.
+	 *
+	 * @param tempDirectory
+	 *            the temporary file directory
+	 */
+	public void setTempDirectory(File tempDirectory) {
+		this.tempDirectory = tempDirectory;
+	}
+
+	/**
+	 * Content held in memory or, once past the memory threshold, in a
+	 * temporary file.
+	 */
+	class Buffer extends OutputStream {
+		private byte[] bytes;
+
+		private int count;
+
+		private File file;
+
+		private OutputStream fileOut;
+
+		private long size;
+
+		Buffer(long expectedLength) {
+			int capacity = expectedLength >= 0 && expectedLength <= memoryThreshold ? (int) expectedLength
+					: (int) Math.min(BUFFER_SIZE, memoryThreshold);
+			bytes = new byte[capacity];
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			size += len;
+
+			if (maxSize >= 0 && size > maxSize) {
+				throw new IOException("Response body exceeds the maximum of " + maxSize + " bytes");
+			}
+
+			if (fileOut == null && size > memoryThreshold) {
+				file = File.createTempFile("rest-response-", ".tmp", tempDirectory);
+				fileOut = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+				fileOut.write(bytes, 0, count);
+				bytes = null;
+			}
+
+			if (fileOut != null) {
+				fileOut.write(b, off, len);
+			} else {
+				if (count + len > bytes.length) {
+					bytes = Arrays.copyOf(bytes, (int) Math.min(memoryThreshold, Math.max(bytes.length * 2L, count + len)));
+				}
+
+				System.arraycopy(b, off, bytes, count, len);
+				count += len;
+			}
+		}
+
+		void finish() throws IOException {
+			if (fileOut != null) {
+				fileOut.close();
+			}
+		}
+
+		void discard() {
+			IOUtils.closeQuietly(fileOut);
+
+			if (file != null) {
+				file.delete();
+			}
+		}
+
+		boolean isInMemory() {
+			return file == null;
+		}
+
+		long size() {
+			return size;
+		}
+
+		byte[] toByteArray() {
+			return count == bytes.length ? bytes : Arrays.copyOf(bytes, count);
+		}
+
+		File getFile() {
+			return file;
+		}
+
+		/**
+		 * Opens the content for reading once. A spilled file is deleted when the
+		 * stream is closed.
+		 */
+		InputStream getInputStream() throws IOException {
+			if (file == null) {
+				return new ByteArrayInputStream(bytes, 0, count);
+			}
+
+			return new FilterInputStream(new FileInputStream(file)) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						file.delete();
+					}
+				}
+			};
+		}
+	}
+}
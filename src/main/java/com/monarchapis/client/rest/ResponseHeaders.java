@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.apache.http.Header;
+
+/**
+ * Read-only view of response headers that wraps the transport's header array
+ * without copying it. {@link HttpHeader} instances are only created for the
+ * entries actually visited, and lookups by name are case-insensitive.
+ */
+final class ResponseHeaders extends AbstractList<HttpHeader> implements RandomAccess {
+	/**
+	 * Header count from which lookups use an index rather than a linear scan.
+	 */
+	static final int INDEX_THRESHOLD = 12;
+
+	/** Lower-cased forms of common header names, keyed by their usual spellings. */
+	private static final Map<String, String> COMMON_NAMES = new HashMap<String, String>();
+
+	static {
+		String[] names = { "Accept-Ranges", "Age", "Allow", "Cache-Control", "Connection", "Content-Disposition",
+				"Content-Encoding", "Content-Language", "Content-Length", "Content-Location", "Content-MD5",
+				"Content-Range", "Content-Type", "Date", "Digest", "ETag", "Expires", "Keep-Alive", "Last-Modified",
+				"Link", "Location", "Pragma", "Retry-After", "Server", "Set-Cookie", "Server-Authorization",
+				"Transfer-Encoding", "Vary", "Via", "WWW-Authenticate" };
+
+		for (String name : names) {
+			String lowerCase = name.toLowerCase(Locale.ROOT).intern();
+			COMMON_NAMES.put(name, lowerCase);
+			COMMON_NAMES.put(lowerCase, lowerCase);
+		}
+	}
+
+	private final Header[] transportHeaders;
+
+	private final HttpHeader[] headers;
+
+	/** Index of first values by lower-cased name, built on first use. */
+	private volatile Map<String, String> index;
+
+	ResponseHeaders(Header[] transportHeaders) {
+		this.transportHeaders = transportHeaders;
+		this.headers = new HttpHeader[transportHeaders.length];
+	}
+
+	ResponseHeaders(HttpHeader[] headers) {
+		this.transportHeaders = null;
+		this.headers = headers;
+	}
+
+	@Override
+	public HttpHeader get(int i) {
+		HttpHeader header = headers[i];
+
+		if (header == null) {
+			// Names parsed by the transport are never blank
+			header = HttpHeader.trusted(transportHeaders[i]);
+			headers[i] = header;
+		}
+
+		return header;
+	}
+
+	@Override
+	public int size() {
+		return headers.length;
+	}
+
+	/**
+	 * Gets the value of the first header with the name, ignoring case.
+	 *
+	 * @param name
+	 *            header name
+	 * @return header value or <tt>null</tt>
+	 */
+	String getValue(String name) {
+		if (name == null) {
+			return null;
+		}
+
+		int size = headers.length;
+
+		if (size < INDEX_THRESHOLD) {
+			for (int i = 0; i < size; i++) {
+				if (nameAt(i).equalsIgnoreCase(name)) {
+					return valueAt(i);
+				}
+			}
+
+			return null;
+		}
+
+		Map<String, String> index = this.index;
+
+		if (index == null) {
+			index = new HashMap<String, String>(size * 2);
+
+			for (int i = size - 1; i >= 0; i--) {
+				index.put(toKey(nameAt(i)), valueAt(i));
+			}
+
+			this.index = index;
+		}
+
+		return index.get(toKey(name));
+	}
+
+	private String nameAt(int i) {
+		return transportHeaders != null ? transportHeaders[i].getName() : headers[i].getName();
+	}
+
+	private String valueAt(int i) {
+		return transportHeaders != null ? transportHeaders[i].getValue() : headers[i].getValue();
+	}
+
+	private static String toKey(String name) {
+		String key = COMMON_NAMES.get(name);
+
+		return key != null ? key : name.toLowerCase(Locale.ROOT);
+	}
+}
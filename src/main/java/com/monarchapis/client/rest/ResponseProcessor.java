@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+/**
+ * Inspects responses received for a request, for instance to learn state from
+ * authentication challenges.
+ */
+public interface ResponseProcessor {
+	/**
+	 * Processes a response received for the client's request.
+	 * 
+	 * @param client
+	 *            the client that sent the request
+	 * @param response
+	 *            the response received
+	 * @return <tt>true</tt> if the request was updated and should be sent once
+	 *         more, <tt>false</tt> otherwise
+	 */
+	public boolean processResponse(BaseClient<?> client, RestResponse response);
+}
@@ -17,14 +17,34 @@
 
 package com.monarchapis.client.rest;
 
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Future;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.entity.ContentType;
 import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.nio.client.methods.HttpAsyncMethods;
+import org.apache.http.nio.client.methods.ZeroCopyConsumer;
+import org.apache.http.nio.client.methods.ZeroCopyPost;
+import org.apache.http.nio.protocol.HttpAsyncRequestProducer;
+import org.apache.http.nio.protocol.HttpAsyncResponseConsumer;
+import org.apache.http.protocol.HTTP;
 
 public class RestAsyncClient extends BaseClient<RestAsyncClient> {
 	private CloseableHttpAsyncClient client;
 
+	private volatile Future<?> exchange;
+
 	/**
 	 * Creates a RESTClient with the RESTConfig object.
 	 * 
@@ -46,9 +66,13 @@ public class RestAsyncClient extends BaseClient<RestAsyncClient> {
 	 *             if request was unsuccessful
 	 */
 	public void send(final Callback<RestResponse> callback) throws RestException {
+		send(callback, true);
+	}
+
+	private void send(final Callback<RestResponse> callback, final boolean resendAllowed) throws RestException {
 		HttpRequestBase request = prepareRequest();
 
-		client.execute(request, new FutureCallback<HttpResponse>() {
+		exchange = client.execute(createProducer(request), createConsumer(), new FutureCallback<HttpResponse>() {
 			@Override
 			public void failed(Exception ex) {
 				callback.failed(ex);
@@ -56,8 +80,60 @@ public class RestAsyncClient extends BaseClient<RestAsyncClient> {
 
 			@Override
 			public void completed(HttpResponse response) {
-				RestResponse apiResponse = buildResponse(response);
-				callback.completed(apiResponse);
+				HttpEntity content = response.getEntity();
+				RestResponse apiResponse;
+
+				try {
+					apiResponse = buildResponse(response);
+				} catch (RestException e) {
+					// Releases any buffered content, such as a spilled file
+					closeContent(content);
+					callback.failed(e);
+					return;
+				}
+
+				if (processResponse(apiResponse, resendAllowed) && resendAllowed) {
+					apiResponse.close();
+
+					try {
+						send(callback, false);
+					} catch (RestException e) {
+						callback.failed(e);
+					}
+				} else {
+					callback.completed(apiResponse);
+				}
+			}
+
+			@Override
+			public void cancelled() {
+				callback.cancelled();
+			}
+		});
+	}
+
+	/**
+	 * Sends an HTTP request, letting the consumer process the response content
+	 * as it arrives. Response processors are not notified and the request is
+	 * never resent.
+	 * 
+	 * @param consumer
+	 *            the response consumer
+	 * @param callback
+	 *            notified with the consumer's result
+	 * @throws RestException
+	 *             if request was unsuccessful
+	 */
+	public <R> void send(HttpAsyncResponseConsumer<R> consumer, final Callback<R> callback) throws RestException {
+		execute(consumer, new FutureCallback<R>() {
+			@Override
+			public void failed(Exception ex) {
+				callback.failed(ex);
+			}
+
+			@Override
+			public void completed(R result) {
+				callback.completed(result);
 			}
 
 			@Override
@@ -67,6 +143,202 @@ public class RestAsyncClient extends BaseClient<RestAsyncClient> {
 		});
 	}
 
+	/**
+	 * Sends the prepared request to the consumer, returning a future that
+	 * aborts the exchange when cancelled.
+	 */
+	<R> Future<R> execute(HttpAsyncResponseConsumer<R> consumer, FutureCallback<R> callback) throws RestException {
+		HttpRequestBase request = prepareRequest();
+
+		return client.execute(createProducer(request), consumer, callback);
+	}
+
+	/**
+	 * Opens a stream of server-sent events, or of line-delimited events such
+	 * as chunked JSON, that reconnects with <code>Last-Event-ID</code> when the
+	 * connection drops. <code>text/event-stream</code> is accepted unless an
+	 * <code>Accept</code> header is already set.
+	 * 
+	 * @param handler
+	 *            receives the events
+	 * @return the open stream
+	 * @see EventStream
+	 */
+	public EventStream openEventStream(EventHandler handler) {
+		return openEventStream(handler, null);
+	}
+
+	/**
+	 * Opens a stream of events, running the request processor, such as a
+	 * request signer, before each reconnect.
+	 * 
+	 * @param handler
+	 *            receives the events
+	 * @param requestProcessor
+	 *            run before each reconnect, or <tt>null</tt>
+	 * @return the open stream
+	 * @see EventStream
+	 */
+	public EventStream openEventStream(EventHandler handler, RequestProcessor requestProcessor) {
+		return newEventStream(handler, requestProcessor).open();
+	}
+
+	/**
+	 * Creates a stream of events without opening it, so that it can be tuned
+	 * first.
+	 * 
+	 * @param handler
+	 *            receives the events
+	 * @param requestProcessor
+	 *            run before each reconnect, or <tt>null</tt>
+	 * @return the stream
+	 */
+	public EventStream newEventStream(EventHandler handler, RequestProcessor requestProcessor) {
+		if (getHeader("Accept") == null) {
+			setHeader("Accept", "text/event-stream");
+		}
+
+		// Events are parsed straight off the connection, so ask for them
+		// unencoded
+		if (getHeader(ContentDecoding.ACCEPT_ENCODING) == null) {
+			setHeader(ContentDecoding.ACCEPT_ENCODING, ContentDecoding.IDENTITY);
+		}
+
+		setHeader("Cache-Control", "no-cache");
+
+		return new EventStream(this, handler, requestProcessor);
+	}
+
+	/**
+	 * Sends an HTTP request and writes the response content directly into the
+	 * target file as it arrives, using zero-copy transfers from the socket
+	 * where the transport allows it. The returned response carries the status
+	 * code and headers but no body. Any existing file content is replaced,
+	 * including when the server responds with an error.
+	 * 
+	 * @param target
+	 *            the file to write the response content to
+	 * @param callback
+	 *            notified when the download completes
+	 * @throws RestException
+	 *             if request was unsuccessful
+	 */
+	public void download(final Path target, final Callback<RestResponse> callback) throws RestException {
+		download(target, callback, true);
+	}
+
+	private void download(final Path target, final Callback<RestResponse> callback, final boolean resendAllowed)
+			throws RestException {
+		// The file receives the content as sent, so ask for it unencoded
+		if (getHeader(ContentDecoding.ACCEPT_ENCODING) == null) {
+			setHeader(ContentDecoding.ACCEPT_ENCODING, ContentDecoding.IDENTITY);
+		}
+
+		HttpRequestBase request = prepareRequest();
+		ZeroCopyConsumer<RestResponse> consumer;
+
+		try {
+			Files.newOutputStream(target).close();
+
+			consumer = new ZeroCopyConsumer<RestResponse>(target.toFile()) {
+				@Override
+				protected RestResponse process(HttpResponse response, File file, ContentType contentType) {
+					return new RestResponse(response.getStatusLine().getStatusCode(), new byte[0],
+							HTTP.DEF_CONTENT_CHARSET, response.getAllHeaders());
+				}
+			};
+		} catch (IOException ioe) {
+			throw new RestException(ioe);
+		}
+
+		client.execute(createProducer(request), consumer, new FutureCallback<RestResponse>() {
+			@Override
+			public void failed(Exception ex) {
+				callback.failed(ex);
+			}
+
+			@Override
+			public void completed(RestResponse apiResponse) {
+				if (processResponse(apiResponse, resendAllowed) && resendAllowed) {
+					try {
+						download(target, callback, false);
+					} catch (RestException e) {
+						callback.failed(e);
+					}
+				} else {
+					callback.completed(apiResponse);
+				}
+			}
+
+			@Override
+			public void cancelled() {
+				callback.cancelled();
+			}
+		});
+	}
+
+	/**
+	 * Aborts the exchange started by {@link #send(Callback)}, if it is still
+	 * in progress. The callback is notified of the cancellation.
+	 */
+	void abort() {
+		Future<?> exchange = this.exchange;
+
+		if (exchange != null) {
+			exchange.cancel(true);
+		}
+	}
+
+	/**
+	 * Creates the response consumer, which follows the response buffering
+	 * policy when one is set.
+	 */
+	private HttpAsyncResponseConsumer<HttpResponse> createConsumer() {
+		ResponseBuffering responseBuffering = getResponseBuffering();
+
+		if (responseBuffering == null) {
+			return HttpAsyncMethods.createConsumer();
+		}
+
+		return new BufferingResponseConsumer(responseBuffering);
+	}
+
+	private static void closeContent(HttpEntity entity) {
+		if (entity != null) {
+			try {
+				entity.getContent().close();
+			} catch (IOException ignore) {
+			}
+		}
+	}
+
+	/**
+	 * Creates the request producer, which transfers file bodies straight from
+	 * the file channel to the socket.
+	 */
+	private HttpAsyncRequestProducer createProducer(final HttpRequestBase request) throws RestException {
+		File file = getBodyFile();
+
+		// Compressed bodies have to pass through the compressor
+		if (file == null || !(request instanceof HttpEntityEnclosingRequestBase) || isRequestCompressed()) {
+			return HttpAsyncMethods.create(request);
+		}
+
+		try {
+			return new ZeroCopyPost(request.getURI(), file, ContentType.get(body)) {
+				@Override
+				protected HttpEntityEnclosingRequest createRequest(URI requestURI, HttpEntity entity) {
+					HttpEntityEnclosingRequestBase enclosingRequest = (HttpEntityEnclosingRequestBase) request;
+					enclosingRequest.setEntity(entity);
+
+					return enclosingRequest;
+				}
+			};
+		} catch (FileNotFoundException fnfe) {
+			throw new RestException(fnfe);
+		}
+	}
+
 	public <T> AsyncFuture<T> future(Callback<T> callback) {
 		return new AsyncFuture<T>(callback);
 	}
@@ -20,6 +20,8 @@ package com.monarchapis.client.rest;
 import java.io.Closeable;
 import java.io.IOException;
 
+import org.apache.http.HttpResponse;
+import org.apache.http.client.ResponseHandler;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.impl.client.CloseableHttpClient;
@@ -48,17 +50,80 @@ public class RestClient extends BaseClient<RestClient> {
 	 *             if request was unsuccessful
 	 */
 	public RestResponse send() throws RestException {
-		CloseableHttpResponse response = null;
+		RestResponse apiResponse = execute();
+
+		if (processResponse(apiResponse, true)) {
+			apiResponse.close();
+			apiResponse = execute();
+			processResponse(apiResponse, false);
+		}
+
+		return apiResponse;
+	}
 
+	/**
+	 * Sends an HTTP request using the parameters and headers previously set,
+	 * letting the handler consume the response content as a stream. The
+	 * connection is released once the handler returns.
+	 * 
+	 * @param handler
+	 *            the response handler
+	 * @return the handler's result
+	 * @throws RestException
+	 *             if request was unsuccessful
+	 */
+	public <R> R send(final ResponseHandler<? extends R> handler) throws RestException {
 		try {
 			HttpRequestBase request = prepareRequest();
 
+			return client.execute(request, new ResponseHandler<R>() {
+				@Override
+				public R handleResponse(HttpResponse response) throws IOException {
+					decodeResponse(response);
+
+					return handler.handleResponse(response);
+				}
+			});
+		} catch (IOException ioe) {
+			throw new RestException(ioe);
+		}
+	}
+
+	/**
+	 * Sends an HTTP request using the parameters and headers previously set,
+	 * returning as soon as the response headers arrive so the content can be
+	 * consumed as a stream. Response processors are not notified and the
+	 * request is never resent.
+	 * 
+	 * @return the streaming response, which must be closed
+	 * @throws RestException
+	 *             if request was unsuccessful
+	 */
+	public StreamingResponse stream() throws RestException {
+		HttpRequestBase request = prepareRequest();
+
+		try {
+			return new StreamingResponse(this, request, client.execute(request));
+		} catch (IOException ioe) {
+			throw new RestException(ioe);
+		}
+	}
+
+	private RestResponse execute() throws RestException {
+		HttpRequestBase request = prepareRequest();
+		CloseableHttpResponse response = null;
+
+		try {
 			response = client.execute(request);
 
 			RestResponse apiResponse = buildResponse(response);
 			return apiResponse;
 		} catch (IOException ioe) {
 			throw new RestException(ioe);
+		} catch (RestException e) {
+			// Abort rather than drain what is left of the response
+			request.abort();
+			throw e;
 		} finally {
 			closeSilently(response);
 		}
@@ -19,6 +19,7 @@ package com.monarchapis.client.rest;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PreDestroy;
 
@@ -67,6 +68,14 @@ public class RestClientFactory implements Closeable {
 
 	private int connectionMax = 100;
 
+	private int connectionMaxPerRoute = 2;
+
+	private ContentDecoding contentDecoding = new ContentDecoding();
+
+	private RequestCompression requestCompression;
+
+	private ResponseBuffering responseBuffering;
+
 	// Create an HttpClient with the ThreadSafeClientConnManager.
 	// This connection manager must be used if more than one thread will
 	// be using the HttpClient.
@@ -95,15 +104,43 @@ public class RestClientFactory implements Closeable {
 	}
 
 	public RestClient create(String method, String url) {
-		return new RestClient(method, url, createClient());
+		RestClient client = new RestClient(method, url, createClient());
+		client.setContentDecoding(contentDecoding);
+		client.setRequestCompression(requestCompression);
+		client.setResponseBuffering(responseBuffering);
+
+		return client;
 	}
 
 	public RestAsyncClient createAsync(String method, String url) {
-		return new RestAsyncClient(method, url, createAsyncClient());
+		RestAsyncClient client = new RestAsyncClient(method, url, createAsyncClient());
+		client.setContentDecoding(contentDecoding);
+		client.setRequestCompression(requestCompression);
+		client.setResponseBuffering(responseBuffering);
+
+		return client;
+	}
+
+	/**
+	 * Creates a batch of asynchronous requests that must finish within the
+	 * timeout. The in-flight limit starts at the total connection limit, since
+	 * more could only wait for a pooled connection.
+	 * 
+	 * @param timeout
+	 *            the overall deadline
+	 * @param unit
+	 *            the deadline unit
+	 * @return the empty batch
+	 */
+	public <T> Batch<T> newBatch(long timeout, TimeUnit unit) {
+		Batch<T> batch = new Batch<T>(timeout, unit);
+		batch.setMaxInFlight(connectionMax);
+
+		return batch;
 	}
 
 	@PreDestroy
-	public void close() {
+	public synchronized void close() {
 		if (client != null) {
 			closeSilently(client);
 			client = null;
@@ -115,15 +152,20 @@ public class RestClientFactory implements Closeable {
 		}
 	}
 
-	private CloseableHttpClient createClient() throws RestException {
+	private synchronized CloseableHttpClient createClient() throws RestException {
 		if (client == null) {
 			try {
 				connectionManager = new PoolingHttpClientConnectionManager();
 				connectionManager.setMaxTotal(connectionMax);
+				connectionManager.setDefaultMaxPerRoute(connectionMaxPerRoute);
 
 				HttpClientBuilder builder = HttpClients.custom().setConnectionManager(connectionManager)
 						.setRedirectStrategy(new NoRedirectStrategy());
 
+				// Responses are decoded by the clients so that both behave
+				// the same way.
+				builder.disableContentCompression();
+
 				builder.setConnectionReuseStrategy(new DefaultConnectionReuseStrategy());
 				builder.setKeepAliveStrategy(new DefaultConnectionKeepAliveStrategy());
 
@@ -152,7 +194,7 @@ public class RestClientFactory implements Closeable {
 		return client;
 	}
 
-	private CloseableHttpAsyncClient createAsyncClient() throws RestException {
+	private synchronized CloseableHttpAsyncClient createAsyncClient() throws RestException {
 		if (asyncClient == null) {
 			try {
 				// Create I/O reactor configuration
@@ -164,6 +206,7 @@ public class RestClientFactory implements Closeable {
 
 				asyncConnectionManager = new PoolingNHttpClientConnectionManager(ioReactor);
 				asyncConnectionManager.setMaxTotal(connectionMax);
+				asyncConnectionManager.setDefaultMaxPerRoute(connectionMaxPerRoute);
 
 				HttpAsyncClientBuilder builder = HttpAsyncClients.custom().setConnectionManager(asyncConnectionManager)
 						.setRedirectStrategy(new NoRedirectStrategy());
@@ -294,4 +337,58 @@ public class RestClientFactory implements Closeable {
 	public void setConnectionMax(int connectionMax) {
 		this.connectionMax = connectionMax;
 	}
+
+	public int getConnectionMaxPerRoute() {
+		return connectionMaxPerRoute;
+	}
+
+	public void setConnectionMaxPerRoute(int connectionMaxPerRoute) {
+		this.connectionMaxPerRoute = connectionMaxPerRoute;
+	}
+
+	public ContentDecoding getContentDecoding() {
+		return contentDecoding;
+	}
+
+	/**
+	 * Sets the response content decoding used by the clients created, or
+	 * <tt>null</tt> to disable <code>Accept-Encoding</code> negotiation.
+	 * 
+	 * @param contentDecoding
+	 *            the content decoding
+	 */
+	public void setContentDecoding(ContentDecoding contentDecoding) {
+		this.contentDecoding = contentDecoding;
+	}
+
+	public RequestCompression getRequestCompression() {
+		return requestCompression;
+	}
+
+	/**
+	 * Sets the request body compression used by the clients created. Bodies
+	 * are sent uncompressed when <tt>null</tt>, which is the default.
+	 * 
+	 * @param requestCompression
+	 *            the request compression
+	 */
+	public void setRequestCompression(RequestCompression requestCompression) {
+		this.requestCompression = requestCompression;
+	}
+
+	public ResponseBuffering getResponseBuffering() {
+		return responseBuffering;
+	}
+
+	/**
+	 * Sets how the clients created buffer response bodies, or <tt>null</tt>,
+	 * the default, to always buffer them in memory without a size limit.
+	 * Responses whose body spilled to disk must be closed to delete it.
+	 * 
+	 * @param responseBuffering
+	 *            the response buffering policy
+	 */
+	public void setResponseBuffering(ResponseBuffering responseBuffering) {
+		this.responseBuffering = responseBuffering;
+	}
 }
@@ -17,23 +17,47 @@
 
 package com.monarchapis.client.rest;
 
-import java.util.Arrays;
-import java.util.Collections;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.util.List;
 
+import org.apache.http.Header;
+
 /**
- * Immutable class that holds API response information.
+ * Holds API response information. The body is held as the bytes received, in
+ * memory or in a temporary file for bodies too large to keep in memory, and
+ * only decoded to a string when first requested. Closing the response deletes
+ * the temporary file, after which the body can no longer be read.
  */
-public class RestResponse {
+public class RestResponse implements Closeable {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
 
 	/** HTTP status code. */
 	private final int statusCode;
 
-	/** HTTP response body. */
-	private final String responseBody;
+	/** HTTP response body, decoded on first use. */
+	private volatile String responseBody;
+
+	/** Raw HTTP response body, if it was received as bytes. */
+	private final byte[] responseBytes;
+
+	/** File holding the raw HTTP response body, if it spilled to disk. */
+	private final File responseFile;
+
+	/** Charset used to decode the raw response body. */
+	private final Charset charset;
 
 	/** Array of HTTP headers. */
-	private final List<HttpHeader> headers;
+	private final ResponseHeaders headers;
 
 	/**
 	 * Creates an API response with the specified status code, response body,
@@ -49,7 +73,63 @@ public class RestResponse {
 	public RestResponse(int statusCode, String responseBody, HttpHeader[] headers) {
 		this.statusCode = statusCode;
 		this.responseBody = responseBody;
-		this.headers = Collections.unmodifiableList(Arrays.asList(headers));
+		this.responseBytes = null;
+		this.responseFile = null;
+		this.charset = UTF_8;
+		this.headers = new ResponseHeaders(headers);
+	}
+
+	/**
+	 * Creates an API response with the specified status code, raw response
+	 * body, and http headers.
+	 * 
+	 * @param statusCode
+	 *            status code
+	 * @param responseBytes
+	 *            raw response body
+	 * @param charset
+	 *            charset used to decode the response body
+	 * @param headers
+	 *            http headers
+	 */
+	public RestResponse(int statusCode, byte[] responseBytes, Charset charset, HttpHeader[] headers) {
+		this.statusCode = statusCode;
+		this.responseBytes = responseBytes;
+		this.responseFile = null;
+		this.charset = charset;
+		this.headers = new ResponseHeaders(headers);
+	}
+
+	/**
+	 * Creates an API response that wraps the transport's headers without
+	 * copying them.
+	 * 
+	 * @param statusCode
+	 *            status code
+	 * @param responseBytes
+	 *            raw response body
+	 * @param charset
+	 *            charset used to decode the response body
+	 * @param headers
+	 *            headers as received by the transport
+	 */
+	public RestResponse(int statusCode, byte[] responseBytes, Charset charset, Header[] headers) {
+		this.statusCode = statusCode;
+		this.responseBytes = responseBytes;
+		this.responseFile = null;
+		this.charset = charset;
+		this.headers = new ResponseHeaders(headers);
+	}
+
+	/**
+	 * Creates an API response whose body was spilled to a temporary file.
+	 */
+	RestResponse(int statusCode, File responseFile, Charset charset, Header[] headers) {
+		this.statusCode = statusCode;
+		this.responseBytes = null;
+		this.responseFile = responseFile;
+		this.charset = charset;
+		this.headers = new ResponseHeaders(headers);
 	}
 
 	/**
@@ -62,12 +142,150 @@ public class RestResponse {
 	}
 
 	/**
-	 * Gets HTTP response body.
+	 * Gets HTTP response body. A body held in a temporary file is read into
+	 * memory; use {@link #getResponseStream()} to read it without doing so.
 	 * 
 	 * @return http response body
 	 */
 	public String getResponseBody() {
-		return this.responseBody;
+		String responseBody = this.responseBody;
+
+		if (responseBody == null && (responseBytes != null || responseFile != null)) {
+			responseBody = new String(getRawBytes(), charset);
+			this.responseBody = responseBody;
+		}
+
+		return responseBody;
+	}
+
+	/**
+	 * Gets a copy of the raw HTTP response body. Binary content (e.g. Smile or
+	 * CBOR) must be read from here rather than from the decoded string.
+	 * {@link #getResponseStream()} and {@link #getResponseBuffer()} read the
+	 * body without copying it, or reading a temporary file into memory.
+	 * 
+	 * @return raw http response body
+	 */
+	public byte[] getResponseBytes() {
+		if (responseBytes != null) {
+			return responseBytes.clone();
+		}
+
+		return getRawBytes();
+	}
+
+	/**
+	 * Gets the raw body, without copying it if it is held in memory.
+	 */
+	private byte[] getRawBytes() {
+		if (responseBytes != null) {
+			return responseBytes;
+		}
+
+		if (responseFile != null) {
+			try {
+				return Files.readAllBytes(responseFile.toPath());
+			} catch (IOException ioe) {
+				throw new RestException(ioe);
+			}
+		}
+
+		return responseBody != null ? responseBody.getBytes(UTF_8) : new byte[0];
+	}
+
+	/**
+	 * Gets a read-only view of the raw HTTP response body without copying it.
+	 * 
+	 * <p>
+	 * A body held in a temporary file is memory-mapped. The mapping stays valid
+	 * until the buffer is garbage collected, even after the response is
+	 * closed, and on Windows a mapped file cannot be deleted, so the temporary
+	 * file is then only removed when the JVM exits. Prefer
+	 * {@link #getResponseStream()} for bodies that may be large.
+	 * </p>
+	 * 
+	 * @return raw http response body
+	 */
+	public ByteBuffer getResponseBuffer() {
+		if (responseFile != null) {
+			RandomAccessFile file = null;
+
+			try {
+				file = new RandomAccessFile(responseFile, "r");
+
+				return file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+			} catch (IOException ioe) {
+				throw new RestException(ioe);
+			} finally {
+				closeQuietly(file);
+			}
+		}
+
+		return ByteBuffer.wrap(getRawBytes()).asReadOnlyBuffer();
+	}
+
+	/**
+	 * Gets a stream over the raw HTTP response body without copying it.
+	 * 
+	 * @return raw http response body
+	 */
+	public InputStream getResponseStream() {
+		if (responseFile != null) {
+			try {
+				return new FileInputStream(responseFile);
+			} catch (IOException ioe) {
+				throw new RestException(ioe);
+			}
+		}
+
+		return new ByteArrayInputStream(getRawBytes());
+	}
+
+	/**
+	 * Gets the length of the raw HTTP response body.
+	 * 
+	 * @return the length in bytes
+	 */
+	public long getContentLength() {
+		if (responseFile != null) {
+			return responseFile.length();
+		}
+
+		if (responseBytes != null) {
+			return responseBytes.length;
+		}
+
+		return getRawBytes().length;
+	}
+
+	/**
+	 * Deletes the temporary file holding the response body, if any. The body
+	 * must not be read afterwards.
+	 */
+	@Override
+	public void close() {
+		if (responseFile != null && !responseFile.delete() && responseFile.exists()) {
+			// Still mapped by a buffer from getResponseBuffer()
+			responseFile.deleteOnExit();
+		}
+	}
+
+	private static void closeQuietly(Closeable closeable) {
+		if (closeable != null) {
+			try {
+				closeable.close();
+			} catch (IOException ignore) {
+			}
+		}
+	}
+
+	/**
+	 * Gets the charset the response body is decoded with.
+	 * 
+	 * @return the charset
+	 */
+	public Charset getCharset() {
+		return charset;
 	}
 
 	/**
@@ -87,24 +305,13 @@ public class RestResponse {
 
 	/**
 	 * Gets the the value of the specified http header name or <tt>null</tt> if
-	 * none is found.
+	 * none is found. The name is matched ignoring case.
 	 * 
 	 * @param name
 	 *            header name
 	 * @return http header value
 	 */
 	public String getHeader(String name) {
-		// Linear search is used for finding value.
-		// Although asympotically this is O(n), where n is the number of
-		// headers, linear search is in practice faster for a sufficiently
-		// small array than an algorithm that would require building a data
-		// structure.
-		for (HttpHeader header : headers) {
-			if (header.getName().equals(name)) {
-				return header.getValue();
-			}
-		}
-
-		return null;
+		return headers.getValue(name);
 	}
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+/**
+ * An event received from an {@link EventStream}. For
+ * <code>text/event-stream</code> content it carries the fields of a
+ * server-sent event; for line-delimited content, such as chunked JSON, each
+ * line is an event whose data is the line.
+ */
+public final class ServerSentEvent {
+	/** The event type used when the server does not name one. */
+	public static final String DEFAULT_TYPE = "message";
+
+	private final String id;
+
+	private final String type;
+
+	private final String data;
+
+	public ServerSentEvent(String id, String type, String data) {
+		this.id = id;
+		this.type = type != null ? type : DEFAULT_TYPE;
+		this.data = data;
+	}
+
+	/**
+	 * Gets the last event ID as of this event, which is sent as
+	 * <code>Last-Event-ID</code> when reconnecting.
+	 * 
+	 * @return the event ID or <tt>null</tt> if none was set
+	 */
+	public String getId() {
+		return id;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public String getData() {
+		return data;
+	}
+
+	@Override
+	public String toString() {
+		return "ServerSentEvent [id=" + id + ", type=" + type + ", data=" + data + "]";
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.entity.ContentType;
+
+/**
+ * A response whose content is read straight from the connection rather than
+ * buffered. The connection goes back to the pool once the content has been
+ * read to the end; closing the response before that aborts the connection
+ * instead of draining the remaining content. Either way the response must be
+ * closed.
+ */
+public class StreamingResponse implements Closeable {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private final BaseClient<?> client;
+
+	private final HttpRequestBase request;
+
+	private final CloseableHttpResponse response;
+
+	private final ResponseHeaders headers;
+
+	private InputStream content;
+
+	StreamingResponse(BaseClient<?> client, HttpRequestBase request, CloseableHttpResponse response) {
+		this.client = client;
+		this.request = request;
+		this.response = response;
+		this.headers = new ResponseHeaders(response.getAllHeaders());
+	}
+
+	public int getStatusCode() {
+		return response.getStatusLine().getStatusCode();
+	}
+
+	/**
+	 * Gets the value of the specified http header name, matched ignoring case,
+	 * or <tt>null</tt> if none is found.
+	 *
+	 * @param name
+	 *            header name
+	 * @return http header value
+	 */
+	public String getHeader(String name) {
+		return headers.getValue(name);
+	}
+
+	public List<HttpHeader> getAllHeaders() {
+		return headers;
+	}
+
+	/**
+	 * Gets the charset declared for the content, or UTF-8 if none is.
+	 *
+	 * @return the charset
+	 */
+	public Charset getCharset() {
+		HttpEntity entity = response.getEntity();
+		ContentType contentType = entity != null ? ContentType.get(entity) : null;
+
+		return contentType != null && contentType.getCharset() != null ? contentType.getCharset() : UTF_8;
+	}
+
+	/**
+	 * Gets the response content, decoded if it was compressed. The same stream
+	 * is returned on each call.
+	 *
+	 * @return the content stream
+	 * @throws RestException
+	 *             if the content could not be opened
+	 */
+	public InputStream getContent() throws RestException {
+		if (content == null) {
+			client.decodeResponse(response);
+			HttpEntity entity = response.getEntity();
+
+			try {
+				content = entity != null ? entity.getContent() : new ByteArrayInputStream(new byte[0]);
+			} catch (IOException ioe) {
+				throw new RestException(ioe);
+			}
+		}
+
+		return content;
+	}
+
+	/**
+	 * Reads the whole content into a {@link RestResponse} and closes this
+	 * response, e.g. to report an error. The content must not have been read.
+	 *
+	 * @return the buffered response
+	 * @throws RestException
+	 *             if the content could not be read
+	 */
+	public RestResponse buffer() throws RestException {
+		try {
+			return client.buildResponse(response);
+		} finally {
+			close();
+		}
+	}
+
+	@Override
+	public void close() {
+		// A no-op if the content was read to the end, which already
+		// released the connection back to the pool
+		request.abort();
+
+		try {
+			response.close();
+		} catch (IOException ignore) {
+		}
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.authentication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.monarchapis.client.rest.OAuthToken;
+
+public class AccessTokenStoreTest {
+	@Test
+	public void testPutAndGet() {
+		AccessTokenStore store = new AccessTokenStore(10);
+		store.put("alice", new OAuthToken("a", 3600, null));
+		store.put("alice", new OAuthToken("b", 3600, null));
+
+		assertEquals("b", store.getAccessToken("alice"));
+		assertNull(store.getAccessToken("bob"));
+		assertEquals(1, store.size());
+	}
+
+	@Test
+	public void testEvictsClosestToExpiry() {
+		AccessTokenStore store = new AccessTokenStore(2);
+		store.put("alice", new OAuthToken("a", 3600, null));
+		store.put("bob", new OAuthToken("b", 60, null));
+		store.put("carol", new OAuthToken("c", OAuthToken.NO_EXPIRATION, null));
+
+		assertEquals(2, store.size());
+		assertEquals("a", store.getAccessToken("alice"));
+		assertNull(store.getAccessToken("bob"));
+		assertEquals("c", store.getAccessToken("carol"));
+	}
+
+	@Test
+	public void testConcurrentPutsKeepSizeBound() throws Exception {
+		final AccessTokenStore store = new AccessTokenStore(4);
+		List<Thread> threads = new ArrayList<Thread>();
+
+		for (int i = 0; i < 8; i++) {
+			final int offset = i;
+			Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < 10000; j++) {
+						store.put("p" + ((j + offset) % 6), new OAuthToken("t" + j, 60 + j % 100, null));
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(4, store.size());
+
+		for (int i = 0; i < 4; i++) {
+			store.put("q" + i, new OAuthToken("q", 7200, null));
+		}
+
+		for (int i = 0; i < 4; i++) {
+			assertEquals("q", store.getAccessToken("q" + i));
+		}
+
+		assertEquals(4, store.size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullPrincipal() {
+		new AccessTokenStore(1).getAccessToken(null);
+	}
+}
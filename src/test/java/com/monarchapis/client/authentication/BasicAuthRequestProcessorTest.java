@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.authentication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.monarchapis.client.rest.RestClient;
+import com.monarchapis.client.rest.RestClientFactory;
+
+public class BasicAuthRequestProcessorTest {
+	private final RestClientFactory clientFactory = new RestClientFactory();
+
+	@After
+	public void tearDown() {
+		clientFactory.close();
+	}
+
+	@Test
+	public void testHeaderEncodesCredentials() {
+		// The example from RFC 7617
+		assertEquals("Basic QWxhZGRpbjpvcGVuIHNlc2FtZQ==", authorize(new BasicAuthRequestProcessor("Aladdin",
+				"open sesame")));
+		assertEquals("Basic dGVzdDoxMjPCow==", authorize(new BasicAuthRequestProcessor("test", "123\u00a3")));
+	}
+
+	@Test
+	public void testLongCredentialsAreNotWrapped() {
+		StringBuilder password = new StringBuilder();
+
+		for (int i = 0; i < 100; i++) {
+			password.append('p');
+		}
+
+		String header = authorize(new BasicAuthRequestProcessor("user", password.toString()));
+
+		assertFalse(header, header.contains("\n") || header.contains("\r"));
+	}
+
+	@Test
+	public void testHeaderIsEncodedOnce() {
+		BasicAuthRequestProcessor processor = new BasicAuthRequestProcessor("Aladdin", "open sesame");
+
+		assertSame(authorize(processor), authorize(processor));
+	}
+
+	private String authorize(BasicAuthRequestProcessor processor) {
+		RestClient client = clientFactory.create("GET", "http://localhost/");
+		processor.processRequest(client);
+
+		return client.getHeader("Authorization");
+	}
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.authentication;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.RandomStringUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.monarchapis.client.rest.RestClient;
+import com.monarchapis.client.rest.RestClientFactory;
+
+/**
+ * Measures Hawk request signing with the per-thread nonce generator against
+ * the shared <code>Random</code> of <code>RandomStringUtils</code>. The nonce
+ * is also measured on its own to separate nonce contention from the HMAC.
+ * {@link #main(String[])} runs the benchmarks with 1 to 64 threads to show how
+ * signing scales.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HawkSigningBenchmark {
+	@Param({ "perThread", "sharedRandom" })
+	public String nonceGenerator;
+
+	private HawkV1RequestProcessor processor;
+
+	private NonceGenerator nonces;
+
+	@Setup
+	public void setUp() {
+		if ("sharedRandom".equals(nonceGenerator)) {
+			nonces = new NonceGenerator() {
+				@Override
+				public String generateNonce() {
+					return RandomStringUtils.randomAlphanumeric(6);
+				}
+			};
+		} else {
+			nonces = new RandomNonceGenerator();
+		}
+
+		processor = new HawkV1RequestProcessor("key", "secret", "sha256");
+		processor.setNonceGenerator(nonces);
+	}
+
+	@Benchmark
+	public String nonce() {
+		return nonces.generateNonce();
+	}
+
+	@Benchmark
+	public String sign(Request request) {
+		processor.processRequest(request.client);
+
+		return request.client.getHeader("Authorization");
+	}
+
+	/**
+	 * A request per signing thread. Signing replaces the authorization header,
+	 * so the same client can be signed repeatedly.
+	 */
+	@State(Scope.Thread)
+	public static class Request {
+		private RestClientFactory clientFactory;
+
+		private RestClient client;
+
+		@Setup
+		public void setUp() {
+			clientFactory = new RestClientFactory();
+			client = clientFactory.create("POST", "http://localhost:8080/orders");
+			client.contentType("application/json").setBody("{\"id\":\"1001\",\"quantity\":3}");
+		}
+
+		@TearDown
+		public void tearDown() {
+			clientFactory.close();
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		for (int threads = 1; threads <= 64; threads *= 2) {
+			new Runner(new OptionsBuilder() //
+					.include(HawkSigningBenchmark.class.getSimpleName()) //
+					.threads(threads) //
+					.build()).run();
+		}
+	}
+}
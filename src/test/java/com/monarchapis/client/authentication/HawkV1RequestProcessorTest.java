@@ -0,0 +1,331 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.authentication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.http.client.utils.DateUtils;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.InputStreamEntity;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.monarchapis.client.resource.JacksonCodec;
+import com.monarchapis.client.resource.JacksonEntity;
+import com.monarchapis.client.rest.HttpHeader;
+import com.monarchapis.client.rest.RestClient;
+import com.monarchapis.client.rest.RestClientFactory;
+import com.monarchapis.client.rest.RestResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class HawkV1RequestProcessorTest {
+	private static final String SECRET = "secret";
+
+	/** How far ahead of the client the server's clock runs, in seconds. */
+	private static final long SKEW = 3600;
+
+	private static final long ALLOWED_SKEW = 60;
+
+	private static final Pattern TS = Pattern.compile("ts=\"(\\d+)\"");
+
+	private static final Pattern HASH = Pattern.compile("hash=\"([^\"]+)\"");
+
+	private HttpServer server;
+
+	private RestClientFactory clientFactory;
+
+	private HawkV1RequestProcessor processor;
+
+	/** The Authorization header of each request received. */
+	private final List<String> authorizations = new CopyOnWriteArrayList<String>();
+
+	/** The secret the server signs its timestamp with. */
+	private volatile String serverSecret = SECRET;
+
+	/** Whether the server rejects every request as stale. */
+	private volatile boolean alwaysStale;
+
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/hawk", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+				authorizations.add(authorization);
+
+				long serverTime = now() + SKEW;
+
+				if (alwaysStale || Math.abs(getTimestamp(authorization) - serverTime) > ALLOWED_SKEW) {
+					String tsm = sign("hawk.1.ts\n" + serverTime + "\n", serverSecret);
+					exchange.getResponseHeaders().set("WWW-Authenticate",
+							"Hawk ts=\"" + serverTime + "\", tsm=\"" + tsm + "\", error=\"Stale timestamp\"");
+					respond(exchange, 401);
+				} else {
+					respond(exchange, 200);
+				}
+			}
+		});
+		server.start();
+
+		clientFactory = new RestClientFactory();
+		processor = new HawkV1RequestProcessor("key", SECRET, "sha256");
+	}
+
+	@After
+	public void tearDown() {
+		clientFactory.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void testStaleTimestampIsCorrectedWithOneResend() {
+		RestClient client = newClient("127.0.0.1");
+		processor.processRequest(client);
+
+		RestResponse response = client.send();
+
+		assertEquals(200, response.getStatusCode());
+		assertEquals(2, authorizations.size());
+		assertSkewed(false, getTimestamp(authorizations.get(0)));
+		assertSkewed(true, getTimestamp(authorizations.get(1)));
+	}
+
+	@Test
+	public void testForgedTimestampIsIgnored() {
+		serverSecret = "forged";
+
+		RestClient client = newClient("127.0.0.1");
+		processor.processRequest(client);
+		String authorization = client.getHeader("Authorization");
+
+		assertEquals(401, client.send().getStatusCode());
+		assertEquals(1, authorizations.size());
+		assertEquals(authorization, client.getHeader("Authorization"));
+
+		// Nothing was learned, so the next request is not corrected either
+		RestClient next = newClient("127.0.0.1");
+		processor.processRequest(next);
+		assertSkewed(false, getTimestamp(next.getHeader("Authorization")));
+	}
+
+	@Test
+	public void testSecondRejectionIsNotSignedAgain() {
+		alwaysStale = true;
+
+		RestClient client = newClient("127.0.0.1");
+		processor.processRequest(client);
+
+		assertEquals(401, client.send().getStatusCode());
+		assertEquals(2, authorizations.size());
+
+		// The header sent last is still the client's, as no resend follows
+		assertEquals(authorizations.get(1), client.getHeader("Authorization"));
+	}
+
+	@Test
+	public void testOffsetIsLearnedFromDateHeaderPerHost() {
+		// The stand-in server always sends its own Date, so the response is
+		// handed to the processor directly
+		RestClient client = newClient("127.0.0.1");
+		processor.processRequest(client);
+
+		String date = DateUtils.formatDate(new Date((now() + SKEW) * 1000));
+		RestResponse response = new RestResponse(200, "{}", new HttpHeader[] { new HttpHeader("Date", date) });
+		assertFalse(processor.processResponse(client, response));
+
+		RestClient next = newClient("127.0.0.1");
+		processor.processRequest(next);
+		assertSkewed(true, getTimestamp(next.getHeader("Authorization")));
+
+		// The offset belongs to the host it was learned from
+		RestClient other = newClient("localhost");
+		processor.processRequest(other);
+		assertSkewed(false, getTimestamp(other.getHeader("Authorization")));
+	}
+
+	@Test
+	public void testStringBodyHashMatchesBufferedHash() throws Exception {
+		String body = "{\"name\":\"caf\u00e9 \u20ac\"}";
+		RestClient client = newClient("127.0.0.1", "POST").contentType("application/json; charset=UTF-8")
+				.setBody(body);
+		processor.processRequest(client);
+
+		assertEquals(bufferedHash("application/json", body.getBytes("UTF-8")), getHash(client));
+	}
+
+	@Test
+	public void testFileBodyHashMatchesBufferedHash() throws Exception {
+		// Several hashing buffers long, ending part way through one
+		byte[] body = new byte[100000];
+		new Random(1).nextBytes(body);
+		File file = File.createTempFile("hawk", ".bin");
+
+		try {
+			Files.write(file.toPath(), body);
+
+			RestClient client = newClient("127.0.0.1", "POST").setBody(file, "application/octet-stream");
+			processor.processRequest(client);
+
+			assertEquals(bufferedHash("application/octet-stream", body), getHash(client));
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testEntityHashUsesExplicitContentType() throws Exception {
+		byte[] body = "a=1&b=2".getBytes("UTF-8");
+		RestClient client = newClient("127.0.0.1", "POST").setBody(new ByteArrayEntity(body,
+				ContentType.APPLICATION_FORM_URLENCODED));
+		processor.processRequest(client);
+
+		assertEquals(bufferedHash("application/x-www-form-urlencoded", body), getHash(client));
+
+		client.contentType("text/plain");
+		processor.processRequest(client);
+
+		assertEquals(bufferedHash("text/plain", body), getHash(client));
+	}
+
+	@Test
+	public void testSerializedBodyHashMatchesBufferedHash() throws Exception {
+		JacksonCodec codec = JacksonCodec.getDefault();
+		Map<String, Object> value = Collections.<String, Object> singletonMap("name", "value");
+		RestClient client = newClient("127.0.0.1", "POST").setBody(new JacksonEntity(codec, value));
+		processor.processRequest(client);
+
+		assertEquals(bufferedHash("application/json", codec.writeValueAsBytes(value)), getHash(client));
+	}
+
+	@Test
+	public void testEmptyBodyHashMatchesBufferedHash() throws Exception {
+		RestClient client = newClient("127.0.0.1");
+		processor.processRequest(client);
+
+		assertEquals(bufferedHash("", new byte[0]), getHash(client));
+	}
+
+	@Test
+	public void testNonRepeatableBodyIsNotHashed() {
+		RestClient client = newClient("127.0.0.1", "POST").setBody(new InputStreamEntity(new ByteArrayInputStream(
+				new byte[10]), ContentType.APPLICATION_OCTET_STREAM));
+
+		try {
+			processor.processRequest(client);
+			fail("Expected a non-repeatable body to be rejected");
+		} catch (RuntimeException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+
+		assertNull(client.getHeader("Authorization"));
+	}
+
+	/**
+	 * Hashes the payload as it was hashed before streaming, from the whole
+	 * body held in memory.
+	 */
+	private static String bufferedHash(String mimeType, byte[] body) throws Exception {
+		ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		payload.write(("hawk.1.payload\n" + mimeType + "\n").getBytes("UTF-8"));
+		payload.write(body);
+		payload.write('\n');
+
+		return Base64.encodeBase64String(MessageDigest.getInstance("SHA-256").digest(payload.toByteArray()));
+	}
+
+	private static String getHash(RestClient client) {
+		Matcher matcher = HASH.matcher(client.getHeader("Authorization"));
+
+		return matcher.find() ? matcher.group(1) : null;
+	}
+
+	private RestClient newClient(String host) {
+		return newClient(host, "GET");
+	}
+
+	private RestClient newClient(String host, String method) {
+		return clientFactory.create(method, "http://" + host + ":" + server.getAddress().getPort() + "/hawk");
+	}
+
+	private static void assertSkewed(boolean skewed, long ts) {
+		long expected = now() + (skewed ? SKEW : 0);
+
+		assertTrue("ts " + ts + " is not within range of " + expected, Math.abs(ts - expected) <= ALLOWED_SKEW);
+	}
+
+	private static long now() {
+		return System.currentTimeMillis() / 1000;
+	}
+
+	private static long getTimestamp(String authorization) {
+		Matcher matcher = TS.matcher(authorization);
+
+		return matcher.find() ? Long.parseLong(matcher.group(1)) : 0;
+	}
+
+	private static String sign(String data, String secret) {
+		try {
+			Mac mac = Mac.getInstance("HmacSHA256");
+			mac.init(new SecretKeySpec(secret.getBytes("UTF-8"), "HmacSHA256"));
+
+			return Base64.encodeBase64String(mac.doFinal(data.getBytes("UTF-8")));
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static void respond(HttpExchange exchange, int status) throws IOException {
+		byte[] body = "{}".getBytes("UTF-8");
+		exchange.sendResponseHeaders(status, body.length);
+
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+}
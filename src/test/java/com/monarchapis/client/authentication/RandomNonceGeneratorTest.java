@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.authentication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class RandomNonceGeneratorTest {
+	private static final String ALPHABET = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz";
+
+	@Test
+	public void testDefaultLength() {
+		assertEquals(6, new RandomNonceGenerator().generateNonce().length());
+	}
+
+	@Test
+	public void testLengths() {
+		for (int length = 1; length <= 32; length++) {
+			RandomNonceGenerator generator = new RandomNonceGenerator(length);
+			assertEquals(length, generator.getLength());
+			assertEquals(length, generator.generateNonce().length());
+		}
+	}
+
+	@Test
+	public void testAlphabet() {
+		RandomNonceGenerator generator = new RandomNonceGenerator(17, true);
+		Set<Character> seen = new HashSet<Character>();
+
+		for (int i = 0; i < 2000; i++) {
+			for (char c : generator.generateNonce().toCharArray()) {
+				assertTrue("Unexpected character " + c, ALPHABET.indexOf(c) >= 0);
+				seen.add(c);
+			}
+		}
+
+		assertEquals(ALPHABET.length(), seen.size());
+	}
+
+	@Test
+	public void testRandomFactory() {
+		RandomNonceGenerator.RandomFactory factory = new RandomNonceGenerator.RandomFactory() {
+			@Override
+			public Random newRandom() {
+				return new Random(42);
+			}
+		};
+
+		String expected = new RandomNonceGenerator(12, factory).generateNonce();
+		assertEquals(expected, new RandomNonceGenerator(12, factory).generateNonce());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testZeroLength() {
+		new RandomNonceGenerator(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullRandomFactory() {
+		new RandomNonceGenerator(6, (RandomNonceGenerator.RandomFactory) null);
+	}
+}
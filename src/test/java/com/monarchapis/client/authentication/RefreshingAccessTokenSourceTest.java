@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.authentication;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.monarchapis.client.rest.OAuthToken;
+
+public class RefreshingAccessTokenSourceTest {
+	@Test
+	public void testConcurrentReadersFetchOnce() throws Exception {
+		final AtomicInteger fetches = new AtomicInteger();
+		final RefreshingAccessTokenSource source = new RefreshingAccessTokenSource(new OAuthTokenProvider() {
+			@Override
+			public OAuthToken getToken(OAuthToken current) {
+				sleep(50);
+
+				return new OAuthToken("token" + fetches.incrementAndGet(), 3600, null);
+			}
+		});
+
+		final CountDownLatch start = new CountDownLatch(1);
+		ExecutorService readers = Executors.newFixedThreadPool(16);
+		List<Future<List<String>>> results = new ArrayList<Future<List<String>>>();
+
+		try {
+			for (int i = 0; i < 16; i++) {
+				results.add(readers.submit(new Callable<List<String>>() {
+					@Override
+					public List<String> call() throws Exception {
+						start.await();
+
+						// Stagger the readers so that some arrive after the
+						// first refresh has completed.
+						List<String> tokens = new ArrayList<String>();
+
+						for (int j = 0; j < 5; j++) {
+							tokens.add(source.getAccessToken());
+							sleep(20);
+						}
+
+						return tokens;
+					}
+				}));
+			}
+
+			start.countDown();
+
+			for (Future<List<String>> result : results) {
+				assertEquals(Collections.nCopies(5, "token1"), result.get(10, TimeUnit.SECONDS));
+			}
+		} finally {
+			readers.shutdownNow();
+		}
+
+		source.close();
+		assertEquals(1, fetches.get());
+	}
+
+	@Test
+	public void testRefreshReplacesScheduledRefresh() {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+		executor.setRemoveOnCancelPolicy(true);
+
+		RefreshingAccessTokenSource source = new RefreshingAccessTokenSource(new OAuthTokenProvider() {
+			@Override
+			public OAuthToken getToken(OAuthToken current) {
+				return new OAuthToken("token", 3600, null);
+			}
+		}, 60, executor);
+
+		for (int i = 0; i < 5; i++) {
+			source.refresh();
+		}
+
+		assertEquals(1, executor.getQueue().size());
+
+		source.close();
+		assertEquals(0, executor.getQueue().size());
+		executor.shutdownNow();
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
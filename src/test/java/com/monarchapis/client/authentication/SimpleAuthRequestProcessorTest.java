@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.authentication;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.monarchapis.client.rest.RestClient;
+import com.monarchapis.client.rest.RestClientFactory;
+
+public class SimpleAuthRequestProcessorTest {
+	private final RestClientFactory clientFactory = new RestClientFactory();
+
+	/** The token the source hands out. */
+	private volatile String accessToken;
+
+	private final AccessTokenSource accessTokenSource = new AccessTokenSource() {
+		@Override
+		public String getAccessToken() {
+			return accessToken;
+		}
+	};
+
+	@After
+	public void tearDown() {
+		clientFactory.close();
+	}
+
+	@Test
+	public void testApiKeyWithoutTokenSource() {
+		RestClient client = process(new SimpleAuthRequestProcessor("key"));
+
+		assertEquals("key", client.getHeader("X-Api-Key"));
+		assertNull(client.getHeader("Authorization"));
+	}
+
+	@Test
+	public void testBearerHeaderIsReusedWhileTokenIsUnchanged() {
+		SimpleAuthRequestProcessor processor = new SimpleAuthRequestProcessor("key", accessTokenSource);
+		accessToken = new String("token1");
+
+		String first = process(processor).getHeader("Authorization");
+
+		assertEquals("Bearer token1", first);
+
+		// An equal token from another source instance still reuses the value
+		accessToken = new String("token1");
+
+		assertSame(first, process(processor).getHeader("Authorization"));
+	}
+
+	@Test
+	public void testBearerHeaderFollowsTokenChanges() {
+		SimpleAuthRequestProcessor processor = new SimpleAuthRequestProcessor("key", accessTokenSource);
+		accessToken = "token1";
+		String first = process(processor).getHeader("Authorization");
+
+		accessToken = "token2";
+		String second = process(processor).getHeader("Authorization");
+
+		assertEquals("Bearer token2", second);
+		assertNotSame(first, second);
+
+		accessToken = "token1";
+
+		assertEquals("Bearer token1", process(processor).getHeader("Authorization"));
+	}
+
+	@Test
+	public void testBlankTokenIsNotSent() {
+		accessToken = " ";
+		RestClient client = process(new SimpleAuthRequestProcessor("key", accessTokenSource));
+
+		assertEquals("key", client.getHeader("X-Api-Key"));
+		assertNull(client.getHeader("Authorization"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBlankApiKeyIsRejected() {
+		new SimpleAuthRequestProcessor(" ");
+	}
+
+	private RestClient process(SimpleAuthRequestProcessor processor) {
+		RestClient client = clientFactory.create("GET", "http://localhost/");
+		processor.processRequest(client);
+
+		return client;
+	}
+}
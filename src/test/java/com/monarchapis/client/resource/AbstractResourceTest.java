@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.monarchapis.client.rest.BaseClient;
+import com.monarchapis.client.rest.ResponseBuffering;
+import com.monarchapis.client.rest.ResponseProcessor;
+import com.monarchapis.client.rest.RestClient;
+import com.monarchapis.client.rest.RestClientFactory;
+import com.monarchapis.client.rest.RestException;
+import com.monarchapis.client.rest.RestResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class AbstractResourceTest {
+	private static final int ITEMS = 500;
+
+	private HttpServer server;
+
+	private RestClientFactory clientFactory;
+
+	private File tempDirectory;
+
+	private TestResource resource;
+
+	private final AtomicInteger retries = new AtomicInteger();
+
+	/** The client port of each request, which repeats when a connection is reused. */
+	private final List<Integer> clientPorts = new CopyOnWriteArrayList<Integer>();
+
+	@Before
+	public void setUp() throws IOException {
+		tempDirectory = Files.createTempDirectory("resource").toFile();
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/items", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 200, items());
+			}
+		});
+		server.createContext("/missing", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 404, items());
+			}
+		});
+		server.createContext("/retry", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, retries.getAndIncrement() == 0 ? 401 : 200, items());
+			}
+		});
+		server.createContext("/cursor", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				// Two pages, each large enough to spill
+				boolean first = exchange.getRequestURI().getQuery() == null;
+				String items = new String(items(), "UTF-8");
+				String body = "{\"items\":" + items + (first ? ",\"next\":\"page-2\"}" : "}");
+				respond(exchange, 200, body.getBytes("UTF-8"));
+			}
+		});
+		server.createContext("/nested", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				clientPorts.add(exchange.getRemoteAddress().getPort());
+				respond(exchange, 200, ("{\"data\":{\"items\":[1,2,3]},\"total\":3}").getBytes("UTF-8"));
+			}
+		});
+		server.createContext("/pointer", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 200, ("{\"meta\":{\"skip\":[1,{\"items\":[9]}],\"items\":\"no\"},"
+						+ "\"data\":{\"items\":[{\"id\":1},{\"id\":2}],\"total\":2}}").getBytes("UTF-8"));
+			}
+		});
+		server.start();
+
+		// Spill every body to disk
+		ResponseBuffering responseBuffering = new ResponseBuffering();
+		responseBuffering.setMemoryThreshold(1024);
+		responseBuffering.setTempDirectory(tempDirectory);
+
+		clientFactory = new RestClientFactory();
+		clientFactory.setResponseBuffering(responseBuffering);
+		resource = new TestResource("http://127.0.0.1:" + server.getAddress().getPort(), clientFactory);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		clientFactory.close();
+		server.stop(0);
+		FileUtils.deleteDirectory(tempDirectory);
+	}
+
+	@Test
+	public void testParseAsDeletesSpilledBody() {
+		RestResponse response = resource.newClient("GET", "/items").send();
+		assertEquals(1, tempDirectory.list().length);
+
+		List<?> items = resource.parseAs(response, List.class);
+
+		assertEquals(ITEMS, items.size());
+		assertEquals(0, tempDirectory.list().length);
+	}
+
+	@Test
+	public void testParseAsDeletesSpilledErrorBody() {
+		RestResponse response = resource.newClient("GET", "/missing").send();
+
+		try {
+			resource.parseAs(response, List.class);
+			fail("The error status should be thrown");
+		} catch (RestException e) {
+			assertEquals(404, e.getStatusCode());
+		}
+
+		assertEquals(0, tempDirectory.list().length);
+	}
+
+	@Test
+	public void testResendClosesFirstResponse() {
+		RestClient client = resource.newClient("GET", "/retry");
+		client.addResponseProcessor(new ResponseProcessor() {
+			@Override
+			public boolean processResponse(BaseClient<?> client, RestResponse response) {
+				return response.getStatusCode() == 401;
+			}
+		});
+
+		RestResponse response = client.send();
+
+		assertEquals(200, response.getStatusCode());
+		assertEquals(2, retries.get());
+		assertEquals(1, tempDirectory.list().length);
+
+		response.close();
+		assertEquals(0, tempDirectory.list().length);
+	}
+
+	@Test
+	public void testCursorPagesAreClosedOnceTheCursorIsRead() throws Exception {
+		PagePublisherTest.TestSubscriber subscriber = new PagePublisherTest.TestSubscriber(Long.MAX_VALUE);
+		resource.paginate("/cursor", Pagination.cursor("cursor", "/next"), "/items", String.class).subscribe(
+				subscriber);
+
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+		assertNull(subscriber.error);
+		assertEquals(ITEMS * 2, subscriber.items.size());
+		assertEquals(0, tempDirectory.list().length);
+	}
+
+	@Test
+	public void testExhaustedIteratorReusesConnection() {
+		for (int i = 0; i < 2; i++) {
+			List<Integer> values = new ArrayList<Integer>();
+
+			for (Integer value : resource.iterate(resource.newClient("GET", "/nested"), "/data/items",
+					Integer.class)) {
+				values.add(value);
+			}
+
+			assertEquals(3, values.size());
+		}
+
+		assertEquals(2, clientPorts.size());
+		assertEquals(clientPorts.get(0), clientPorts.get(1));
+	}
+
+	@Test
+	public void testParseAtNestedPointer() {
+		List<Map<String, Integer>> items = resource.parseAt(resource.newClient("GET", "/pointer").send(),
+				"/data/items", new TypeReference<List<Map<String, Integer>>>() {
+				});
+
+		assertEquals(2, items.size());
+		assertEquals(Integer.valueOf(2), items.get(1).get("id"));
+
+		// Skips the earlier nested values, including a same-named field
+		assertEquals(Integer.valueOf(2), parseAt("/data/items/1/id"));
+		assertEquals(Integer.valueOf(2), parseAt("/data/total"));
+	}
+
+	@Test
+	public void testParseAtMissingPointer() {
+		assertNull(parseAt("/data/count"));
+		assertNull(parseAt("/data/items/2/id"));
+		assertNull(parseAt("/data/total/id"));
+		assertNull(parseAt("/absent/items"));
+	}
+
+	private Integer parseAt(String pointer) {
+		return resource.parseAt(resource.newClient("GET", "/pointer").send(), pointer, Integer.class);
+	}
+
+	private static byte[] items() throws IOException {
+		StringBuilder json = new StringBuilder("[");
+
+		for (int i = 0; i < ITEMS; i++) {
+			json.append(i > 0 ? "," : "").append("\"item-").append(i).append('"');
+		}
+
+		return json.append(']').toString().getBytes("UTF-8");
+	}
+
+	private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "application/json");
+		exchange.sendResponseHeaders(status, body.length);
+
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+	static class TestResource extends AbstractResource {
+		TestResource(String baseUrl, RestClientFactory clientFactory) {
+			super(baseUrl, clientFactory);
+		}
+
+		@Override
+		protected void throwErrorException(RestResponse response) {
+			throw new RestException(response.getStatusCode(), response.getResponseBody());
+		}
+	}
+}
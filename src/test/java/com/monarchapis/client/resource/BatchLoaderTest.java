@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.monarchapis.client.rest.AsyncFuture;
+import com.monarchapis.client.rest.Callback;
+
+public class BatchLoaderTest {
+	/** Holds back the blocking batch function until the test ends. */
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@After
+	public void tearDown() {
+		release.countDown();
+	}
+
+	@Test
+	public void testCoalescesKeysWithinTheDelay() throws Exception {
+		RecordingFunction function = new RecordingFunction();
+		BatchLoader<String, String> loader = new BatchLoader<String, String>(function);
+		loader.setDelay(50);
+
+		AsyncFuture<String> a = loader.load("a");
+		AsyncFuture<String> b = loader.load("b");
+		AsyncFuture<String> again = loader.load("a");
+		AsyncFuture<String> missing = loader.load("missing");
+
+		assertEquals("value-a", a.get(5, TimeUnit.SECONDS));
+		assertEquals("value-b", b.get(5, TimeUnit.SECONDS));
+		assertEquals("value-a", again.get(5, TimeUnit.SECONDS));
+		assertNull(missing.get(5, TimeUnit.SECONDS));
+		assertEquals(1, function.batches.size());
+		assertEquals(Arrays.asList("a", "b", "missing"), function.batches.get(0));
+	}
+
+	@Test
+	public void testSplitsAtMaxBatchSize() throws Exception {
+		RecordingFunction function = new RecordingFunction();
+		BatchLoader<String, String> loader = new BatchLoader<String, String>(function);
+		loader.setDelay(60000);
+		loader.setMaxBatchSize(2);
+
+		AsyncFuture<String> a = loader.load("a");
+		AsyncFuture<String> b = loader.load("b");
+
+		// Full batches go out without waiting for the delay
+		assertEquals("value-a", a.get(5, TimeUnit.SECONDS));
+		assertEquals("value-b", b.get(5, TimeUnit.SECONDS));
+
+		AsyncFuture<String> c = loader.load("c");
+		loader.dispatch();
+
+		assertEquals("value-c", c.get(5, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("c")), function.batches);
+	}
+
+	@Test
+	public void testFailureReachesEveryCaller() throws Exception {
+		final IllegalStateException failure = new IllegalStateException("Load failed");
+		BatchLoader<String, String> loader = new BatchLoader<String, String>(
+				new BatchLoader.BatchFunction<String, String>() {
+					@Override
+					public void load(List<String> keys, Callback<Map<String, String>> callback) {
+						callback.failed(failure);
+					}
+				});
+
+		List<AsyncFuture<String>> futures = Arrays.asList(loader.load("a"), loader.load("b"), loader.load("a"));
+
+		for (AsyncFuture<String> future : futures) {
+			try {
+				future.get(5, TimeUnit.SECONDS);
+				fail("The load should have failed");
+			} catch (ExecutionException e) {
+				assertSame(failure, e.getCause());
+			}
+		}
+	}
+
+	@Test
+	public void testThrowingBatchFunctionFailsTheBatch() throws Exception {
+		final IllegalStateException failure = new IllegalStateException("Load failed");
+		BatchLoader<String, String> loader = new BatchLoader<String, String>(
+				new BatchLoader.BatchFunction<String, String>() {
+					@Override
+					public void load(List<String> keys, Callback<Map<String, String>> callback) {
+						throw failure;
+					}
+				});
+
+		try {
+			loader.load("a").get(5, TimeUnit.SECONDS);
+			fail("The load should have failed");
+		} catch (ExecutionException e) {
+			assertSame(failure, e.getCause());
+		}
+	}
+
+	@Test
+	public void testSlowBatchFunctionDoesNotHoldUpOtherLoaders() throws Exception {
+		final CountDownLatch blocked = new CountDownLatch(1);
+		BatchLoader<String, String> slow = new BatchLoader<String, String>(
+				new BatchLoader.BatchFunction<String, String>() {
+					@Override
+					public void load(List<String> keys, Callback<Map<String, String>> callback) {
+						blocked.countDown();
+
+						try {
+							release.await(30, TimeUnit.SECONDS);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+
+						callback.completed(null);
+					}
+				});
+		BatchLoader<String, String> fast = new BatchLoader<String, String>(new RecordingFunction());
+
+		// A blocking batch function gets an executor of its own, which leaves
+		// the shared tick thread free to time the other loader
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		slow.setExecutor(executor);
+
+		try {
+			slow.load("a");
+			assertTrue(blocked.await(5, TimeUnit.SECONDS));
+
+			assertEquals("value-b", fast.load("b").get(5, TimeUnit.SECONDS));
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Loads a value for every key but "missing", recording each batch.
+	 */
+	private static class RecordingFunction implements BatchLoader.BatchFunction<String, String> {
+		final List<List<String>> batches = new CopyOnWriteArrayList<List<String>>();
+
+		@Override
+		public void load(List<String> keys, Callback<Map<String, String>> callback) {
+			batches.add(keys);
+
+			Map<String, String> values = new LinkedHashMap<String, String>();
+
+			for (String key : keys) {
+				if (!"missing".equals(key)) {
+					values.put(key, "value-" + key);
+				}
+			}
+
+			callback.completed(values);
+		}
+	}
+}
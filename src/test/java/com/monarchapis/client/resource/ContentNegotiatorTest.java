@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.Charset;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.monarchapis.client.rest.HttpHeader;
+import com.monarchapis.client.rest.RestResponse;
+
+public class ContentNegotiatorTest {
+	private final JacksonCodec json = JacksonCodec.getDefault();
+
+	private final JacksonCodec smile = JacksonCodec.createSmileCodec();
+
+	@Test
+	public void testGetResponseCodecDoesNotRecord() {
+		ContentNegotiator negotiator = new ContentNegotiator(json, smile);
+
+		assertSame(smile, negotiator.getResponseCodec(JacksonCodec.SMILE));
+		assertSame(json, negotiator.getResponseCodec("application/json; charset=UTF-8"));
+		assertSame(json, negotiator.getRequestCodec());
+	}
+
+	@Test
+	public void testRecordResponse() {
+		ContentNegotiator negotiator = new ContentNegotiator(json, smile);
+
+		negotiator.recordResponse(JacksonCodec.SMILE);
+		assertSame(smile, negotiator.getRequestCodec());
+
+		negotiator.recordResponse("text/plain");
+		assertSame(smile, negotiator.getRequestCodec());
+
+		negotiator.recordResponse("application/json; charset=UTF-8");
+		assertSame(json, negotiator.getRequestCodec());
+	}
+
+	@Test
+	public void testReadValueRecordsResponse() throws Exception {
+		ContentNegotiator negotiator = new ContentNegotiator(json, smile);
+		byte[] body = smile.writeValueAsBytes(new JacksonCodecTest.Item("a", 1));
+		RestResponse response = new RestResponse(200, body, null,
+				new HttpHeader[] { new HttpHeader("Content-Type", JacksonCodec.SMILE) });
+
+		JacksonCodecTest.Item item = negotiator.readValue(response, JacksonCodecTest.Item.class);
+
+		assertEquals("a", item.getName());
+		assertSame(smile, negotiator.getRequestCodec());
+	}
+
+	@Test
+	public void testReadValueWithCharset() throws Exception {
+		ContentNegotiator negotiator = new ContentNegotiator(json);
+		Charset latin1 = Charset.forName("ISO-8859-1");
+		RestResponse response = new RestResponse(200, "{\"name\":\"caf\u00e9\"}".getBytes(latin1), latin1,
+				new HttpHeader[] { new HttpHeader("Content-Type", "application/json; charset=ISO-8859-1") });
+
+		Map<String, String> value = negotiator.readValue(response, new TypeReference<Map<String, String>>() {
+		}.getType());
+
+		assertEquals("caf\u00e9", value.get("name"));
+	}
+
+	@Test
+	public void testResponseBytesAreCopied() {
+		byte[] body = "{}".getBytes();
+		RestResponse response = new RestResponse(200, body, Charset.forName("UTF-8"), new HttpHeader[0]);
+
+		assertNotSame(body, response.getResponseBytes());
+		response.getResponseBytes()[0] = 'x';
+		assertEquals("{}", response.getResponseBody());
+	}
+}
@@ -0,0 +1,244 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.guava.GuavaModule;
+import com.fasterxml.jackson.datatype.joda.JodaModule;
+
+/**
+ * Compares serialization and deserialization throughput of the codec
+ * configurations: the previous reflection based mapper, the default mapper
+ * with Afterburner, and the Smile and CBOR codecs. Each is measured with a
+ * single order and with a page of orders, as returned by list resources.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JacksonCodecBenchmark {
+	private static final Type ORDER_PAGE = new TypeReference<List<Order>>() {
+	}.getType();
+
+	@Param({ "reflection", "afterburner", "smile", "cbor" })
+	public String codecName;
+
+	private JacksonCodec codec;
+
+	private Order order;
+
+	private List<Order> page;
+
+	private byte[] orderBytes;
+
+	private byte[] pageBytes;
+
+	@Setup
+	public void setUp() throws IOException {
+		if ("reflection".equals(codecName)) {
+			ObjectMapper mapper = new ObjectMapper();
+			mapper.registerModule(new JodaModule());
+			mapper.registerModule(new GuavaModule());
+			mapper.configure(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS, false);
+			mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+			codec = new JacksonCodec(mapper);
+		} else if ("smile".equals(codecName)) {
+			codec = JacksonCodec.createSmileCodec();
+		} else if ("cbor".equals(codecName)) {
+			codec = JacksonCodec.createCborCodec();
+		} else {
+			codec = new JacksonCodec(JacksonCodec.createDefaultObjectMapper());
+		}
+
+		order = newOrder(1);
+		page = new ArrayList<Order>();
+
+		for (int i = 0; i < 50; i++) {
+			page.add(newOrder(i));
+		}
+
+		orderBytes = codec.writeValueAsBytes(order);
+		pageBytes = codec.writeValueAsBytes(page);
+	}
+
+	@Benchmark
+	public byte[] serializeOrder() throws IOException {
+		return codec.writeValueAsBytes(order);
+	}
+
+	@Benchmark
+	public Order deserializeOrder() throws IOException {
+		return codec.readValue(orderBytes, Order.class);
+	}
+
+	@Benchmark
+	public byte[] serializePage() throws IOException {
+		return codec.writeValueAsBytes(page);
+	}
+
+	@Benchmark
+	public List<Order> deserializePage() throws IOException {
+		return codec.readValue(pageBytes, ORDER_PAGE);
+	}
+
+	private static Order newOrder(int number) {
+		Order order = new Order();
+		order.setId("order-" + number);
+		order.setCustomerId("customer-" + (number % 7));
+		order.setCreated(new DateTime(2015, 3, 1, 12, 0, DateTimeZone.UTC).plusMinutes(number));
+		order.setPaid(number % 2 == 0);
+		order.setAttributes(new LinkedHashMap<String, String>());
+		order.getAttributes().put("channel", "web");
+		order.getAttributes().put("region", "us-east");
+		order.setLines(new ArrayList<OrderLine>());
+
+		for (int i = 0; i < 5; i++) {
+			OrderLine line = new OrderLine();
+			line.setSku("sku-" + (number * 5 + i));
+			line.setDescription("Line item " + i + " of order " + number);
+			line.setQuantity(i + 1);
+			line.setPrice(9.99 + i);
+			order.getLines().add(line);
+		}
+
+		return order;
+	}
+
+	public static class Order {
+		private String id;
+		private String customerId;
+		private DateTime created;
+		private boolean paid;
+		private Map<String, String> attributes;
+		private List<OrderLine> lines;
+
+		public String getId() {
+			return id;
+		}
+
+		public void setId(String id) {
+			this.id = id;
+		}
+
+		public String getCustomerId() {
+			return customerId;
+		}
+
+		public void setCustomerId(String customerId) {
+			this.customerId = customerId;
+		}
+
+		public DateTime getCreated() {
+			return created;
+		}
+
+		public void setCreated(DateTime created) {
+			this.created = created;
+		}
+
+		public boolean isPaid() {
+			return paid;
+		}
+
+		public void setPaid(boolean paid) {
+			this.paid = paid;
+		}
+
+		public Map<String, String> getAttributes() {
+			return attributes;
+		}
+
+		public void setAttributes(Map<String, String> attributes) {
+			this.attributes = attributes;
+		}
+
+		public List<OrderLine> getLines() {
+			return lines;
+		}
+
+		public void setLines(List<OrderLine> lines) {
+			this.lines = lines;
+		}
+	}
+
+	public static class OrderLine {
+		private String sku;
+		private String description;
+		private int quantity;
+		private double price;
+
+		public String getSku() {
+			return sku;
+		}
+
+		public void setSku(String sku) {
+			this.sku = sku;
+		}
+
+		public String getDescription() {
+			return description;
+		}
+
+		public void setDescription(String description) {
+			this.description = description;
+		}
+
+		public int getQuantity() {
+			return quantity;
+		}
+
+		public void setQuantity(int quantity) {
+			this.quantity = quantity;
+		}
+
+		public double getPrice() {
+			return price;
+		}
+
+		public void setPrice(double price) {
+			this.price = price;
+		}
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+public class JacksonCodecTest {
+	@Test
+	public void testReaderCachedByClass() {
+		JacksonCodec codec = new JacksonCodec(JacksonCodec.createDefaultObjectMapper());
+
+		assertSame(codec.getReader(Item.class), codec.getReader(Item.class));
+		assertNotSame(codec.getReader(Item.class), codec.getReader(String.class));
+	}
+
+	@Test
+	public void testReaderCachedByGenericType() {
+		JacksonCodec codec = new JacksonCodec(JacksonCodec.createDefaultObjectMapper());
+
+		// Separate type references for the same generic type share a reader.
+		assertSame(codec.getReader(new TypeReference<List<Item>>() {
+		}.getType()), codec.getReader(new TypeReference<List<Item>>() {
+		}.getType()));
+		assertNotSame(codec.getReader(new TypeReference<List<Item>>() {
+		}.getType()), codec.getReader(new TypeReference<Map<String, Item>>() {
+		}.getType()));
+	}
+
+	@Test
+	public void testWriterCachedByClass() {
+		JacksonCodec codec = new JacksonCodec(JacksonCodec.createDefaultObjectMapper());
+
+		assertSame(codec.getWriter(Item.class), codec.getWriter(Item.class));
+		assertNotSame(codec.getWriter(Item.class), codec.getWriter(String.class));
+	}
+
+	@Test
+	public void testWarmUp() {
+		JacksonCodec codec = new JacksonCodec(JacksonCodec.createDefaultObjectMapper());
+		codec.warmUp(Item.class);
+
+		assertSame(codec.getReader(Item.class), codec.getReader(Item.class));
+		assertSame(codec.getWriter(Item.class), codec.getWriter(Item.class));
+	}
+
+	@Test
+	public void testGenericRoundTrip() throws Exception {
+		JacksonCodec codec = JacksonCodec.getDefault();
+		String json = codec.writeValueAsString(Arrays.asList(new Item("a", 1), new Item("b", 2)));
+
+		// Twice, so that the second read goes through the cached reader.
+		for (int i = 0; i < 2; i++) {
+			List<Item> items = codec.readValue(json, new TypeReference<List<Item>>() {
+			}.getType());
+
+			assertEquals(2, items.size());
+			assertTrue(items.get(0) instanceof Item);
+			assertEquals("b", items.get(1).getName());
+			assertEquals(2, items.get(1).getCount());
+		}
+	}
+
+	@Test
+	public void testBinaryRoundTrip() throws Exception {
+		for (JacksonCodec codec : Arrays.asList(JacksonCodec.createSmileCodec(), JacksonCodec.createCborCodec())) {
+			assertTrue(codec.isBinary());
+
+			for (int i = 0; i < 2; i++) {
+				Item item = codec.readValue(codec.writeValueAsBytes(new Item("a", i)), Item.class);
+
+				assertEquals("a", item.getName());
+				assertEquals(i, item.getCount());
+			}
+		}
+	}
+
+	@Test
+	public void testWriteNull() throws Exception {
+		assertEquals("null", JacksonCodec.getDefault().writeValueAsString(null));
+	}
+
+	public static class Item {
+		private String name;
+		private int count;
+
+		public Item() {
+		}
+
+		public Item(String name, int count) {
+			this.name = name;
+			this.count = count;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public void setName(String name) {
+			this.name = name;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public void setCount(int count) {
+			this.count = count;
+		}
+	}
+}
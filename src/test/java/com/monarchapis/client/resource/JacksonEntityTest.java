@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.nio.ContentEncoder;
+import org.junit.Test;
+
+import com.monarchapis.client.rest.AsyncFuture;
+import com.monarchapis.client.rest.Callback;
+import com.monarchapis.client.rest.RestClientFactory;
+import com.monarchapis.client.rest.RestResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class JacksonEntityTest {
+	private final JacksonCodec codec = JacksonCodec.getDefault();
+
+	@Test
+	public void testWritesValueWithoutClosingTheStream() throws IOException {
+		JacksonEntity entity = new JacksonEntity(codec, items(3));
+		RecordingOutputStream out = new RecordingOutputStream();
+		entity.writeTo(out);
+
+		assertEquals("[\"item-0\",\"item-1\",\"item-2\"]", out.toString("UTF-8"));
+		assertFalse(out.closed);
+		assertTrue(entity.isChunked());
+		assertEquals(-1, entity.getContentLength());
+		assertEquals("application/json; charset=UTF-8", entity.getContentType().getValue());
+	}
+
+	@Test
+	public void testWritesAreRepeatable() throws IOException {
+		JacksonEntity entity = new JacksonEntity(codec, items(100));
+		byte[] expected = codec.writeValueAsBytes(items(100));
+
+		assertTrue(entity.isRepeatable());
+		assertArrayEquals(expected, write(entity));
+		assertArrayEquals(expected, write(entity));
+		assertArrayEquals(expected, IOUtils.toByteArray(entity.getContent()));
+	}
+
+	@Test
+	public void testBufferedEntityHasContentLength() throws IOException {
+		JacksonEntity entity = new JacksonEntity(codec, items(100), true);
+		byte[] expected = codec.writeValueAsBytes(items(100));
+
+		assertFalse(entity.isChunked());
+		assertEquals(expected.length, entity.getContentLength());
+		assertArrayEquals(expected, write(entity));
+		assertArrayEquals(expected, IOUtils.toByteArray(entity.getContent()));
+	}
+
+	@Test
+	public void testWritesNull() throws IOException {
+		assertEquals("null", new String(write(new JacksonEntity(codec, null)), "UTF-8"));
+	}
+
+	@Test
+	public void testProducesContentAsTheChannelAcceptsIt() throws IOException {
+		JacksonEntity entity = new JacksonEntity(codec, items(2000));
+		byte[] expected = codec.writeValueAsBytes(items(2000));
+
+		// Produced twice, as for a resend
+		for (int i = 0; i < 2; i++) {
+			SlowEncoder encoder = new SlowEncoder(1000);
+			int calls = 0;
+
+			while (!encoder.isCompleted()) {
+				encoder.budget = 1000;
+				entity.produceContent(encoder, null);
+				calls++;
+			}
+
+			assertArrayEquals(expected, encoder.written.toByteArray());
+			assertTrue(calls > 1);
+		}
+	}
+
+	@Test
+	public void testAsyncClientStreamsTheValue() throws Exception {
+		final List<byte[]> received = new ArrayList<byte[]>();
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/echo", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				received.add(IOUtils.toByteArray(exchange.getRequestBody()));
+				exchange.sendResponseHeaders(204, -1);
+				exchange.close();
+			}
+		});
+		server.start();
+
+		RestClientFactory clientFactory = new RestClientFactory();
+
+		try {
+			final AsyncFuture<RestResponse> response = new AsyncFuture<RestResponse>(null);
+			clientFactory.createAsync("POST", "http://127.0.0.1:" + server.getAddress().getPort() + "/echo")
+					.setBody(new JacksonEntity(codec, items(20000))).send(new Callback<RestResponse>() {
+						@Override
+						public void completed(RestResponse result) {
+							response.completed(result);
+						}
+
+						@Override
+						public void failed(Exception ex) {
+							response.failed(ex);
+						}
+
+						@Override
+						public void cancelled() {
+							response.cancel(true);
+						}
+					});
+
+			assertEquals(204, response.get(10, TimeUnit.SECONDS).getStatusCode());
+			assertArrayEquals(codec.writeValueAsBytes(items(20000)), received.get(0));
+		} finally {
+			clientFactory.close();
+			server.stop(0);
+		}
+	}
+
+	private static byte[] write(JacksonEntity entity) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		entity.writeTo(out);
+
+		return out.toByteArray();
+	}
+
+	private static List<String> items(int count) {
+		List<String> items = new ArrayList<String>();
+
+		for (int i = 0; i < count; i++) {
+			items.add("item-" + i);
+		}
+
+		return items;
+	}
+
+	private static class RecordingOutputStream extends ByteArrayOutputStream {
+		private boolean closed;
+
+		@Override
+		public void close() throws IOException {
+			closed = true;
+		}
+	}
+
+	/**
+	 * Accepts a few bytes per write, up to a budget per round.
+	 */
+	private static class SlowEncoder implements ContentEncoder {
+		private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+		private int budget;
+
+		private boolean completed;
+
+		SlowEncoder(int budget) {
+			this.budget = budget;
+		}
+
+		@Override
+		public int write(ByteBuffer src) {
+			int length = Math.min(Math.min(src.remaining(), 100), budget);
+
+			for (int i = 0; i < length; i++) {
+				written.write(src.get());
+			}
+
+			budget -= length;
+
+			return length;
+		}
+
+		@Override
+		public void complete() {
+			completed = true;
+		}
+
+		@Override
+		public boolean isCompleted() {
+			return completed;
+		}
+	}
+}
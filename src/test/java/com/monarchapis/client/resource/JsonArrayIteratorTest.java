@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.fasterxml.jackson.core.JsonParser;
+
+public class JsonArrayIteratorTest {
+	@Test
+	public void testReadsAllElements() throws IOException {
+		DrainingStream source = new DrainingStream("[1,2,3]");
+		JsonArrayIterator<Integer> iterator = newIterator(source);
+		List<Integer> values = new ArrayList<Integer>();
+
+		for (Integer value : iterator) {
+			values.add(value);
+		}
+
+		assertEquals(3, values.size());
+		assertTrue(source.closed);
+	}
+
+	@Test
+	public void testExhaustedNestedArrayReadsToTheEnd() throws IOException {
+		DrainingStream source = new DrainingStream("{\"data\":{\"items\":[1,2]},\"total\":2}");
+		JacksonCodec codec = JacksonCodec.getDefault();
+		JsonParser parser = codec.createParser(source, null);
+
+		assertTrue(JsonNavigator.seek(parser, "/data/items"));
+
+		JsonArrayIterator<Integer> iterator = newIterator(parser, source);
+
+		assertEquals(Integer.valueOf(1), iterator.next());
+		assertEquals(Integer.valueOf(2), iterator.next());
+		assertFalse(iterator.hasNext());
+
+		// Like a pooled connection, aborting at the end of input is a no-op
+		assertTrue(source.closed);
+		assertTrue(source.endBeforeAbort);
+	}
+
+	@Test
+	public void testCloseAbortsBeforeDraining() throws IOException {
+		StringBuilder json = new StringBuilder("[0");
+
+		for (int i = 1; i < 100000; i++) {
+			json.append(',').append(i);
+		}
+
+		DrainingStream source = new DrainingStream(json.append(']').toString());
+		JsonArrayIterator<Integer> iterator = newIterator(source);
+
+		assertEquals(Integer.valueOf(0), iterator.next());
+		iterator.close();
+
+		assertTrue(source.closed);
+		assertEquals(0, source.drained);
+		assertFalse(iterator.hasNext());
+	}
+
+	private static JsonArrayIterator<Integer> newIterator(DrainingStream source) throws IOException {
+		JsonParser parser = JacksonCodec.getDefault().createParser(source, null);
+		parser.nextToken();
+
+		return newIterator(parser, source);
+	}
+
+	private static JsonArrayIterator<Integer> newIterator(JsonParser parser, final DrainingStream source) {
+		JacksonCodec codec = JacksonCodec.getDefault();
+
+		return new JsonArrayIterator<Integer>(parser, codec.getReader(Integer.class), new Closeable() {
+			@Override
+			public void close() {
+				source.aborted = true;
+				source.endBeforeAbort = source.end;
+			}
+		});
+	}
+
+	/**
+	 * A response body that, like a pooled connection's, reads the rest of its
+	 * content when closed unless the exchange was aborted first.
+	 */
+	private static class DrainingStream extends ByteArrayInputStream {
+		private boolean aborted;
+
+		private boolean closed;
+
+		private int drained;
+
+		private boolean end;
+
+		private boolean endBeforeAbort;
+
+		DrainingStream(String content) {
+			super(content.getBytes());
+		}
+
+		@Override
+		public synchronized int read(byte[] b, int off, int len) {
+			int read = super.read(b, off, len);
+			end |= read == -1;
+
+			return read;
+		}
+
+		@Override
+		public void close() {
+			closed = true;
+
+			if (!aborted) {
+				drained += available();
+				skip(available());
+			}
+		}
+	}
+}
@@ -0,0 +1,346 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpVersion;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.junit.After;
+import org.junit.Test;
+
+import com.monarchapis.client.rest.RestException;
+
+public class NdjsonDecoderTest {
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void testOrdered() {
+		final List<Integer> records = Collections.synchronizedList(new ArrayList<Integer>());
+		NdjsonDecoder<Integer> decoder = newDecoder(new RecordHandler<Integer>() {
+			@Override
+			public void onRecord(Integer record) {
+				records.add(record);
+			}
+		});
+
+		assertEquals(10000, decoder.decode(new ByteArrayInputStream(lines(10000))));
+
+		for (int i = 0; i < 10000; i++) {
+			assertEquals(Integer.valueOf(i), records.get(i));
+		}
+	}
+
+	@Test
+	public void testUnorderedHandlerCalledSerially() {
+		final AtomicInteger concurrent = new AtomicInteger();
+		final AtomicInteger maxConcurrent = new AtomicInteger();
+		NdjsonDecoder<Integer> decoder = newDecoder(new RecordHandler<Integer>() {
+			@Override
+			public void onRecord(Integer record) {
+				maxConcurrent.set(Math.max(maxConcurrent.get(), concurrent.incrementAndGet()));
+				concurrent.decrementAndGet();
+			}
+		});
+		decoder.setOrdered(false);
+
+		assertEquals(10000, decoder.decode(new ByteArrayInputStream(lines(10000))));
+		assertEquals(1, maxConcurrent.get());
+	}
+
+	@Test
+	public void testCapacityCheckDoesNotWaitForHandler() throws Exception {
+		final CountDownLatch handling = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		NdjsonDecoder<Integer> decoder = newDecoder(new RecordHandler<Integer>() {
+			@Override
+			public void onRecord(Integer record) throws Exception {
+				handling.countDown();
+				release.await();
+			}
+		});
+
+		byte[] content = lines(10);
+		decoder.feed(content, 0, content.length);
+		assertTrue(handling.await(5, TimeUnit.SECONDS));
+
+		// The handler is blocked; checking for capacity must not wait for it
+		long start = System.nanoTime();
+		decoder.hasCapacity();
+		assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+
+		release.countDown();
+		decoder.finish();
+		assertEquals(10, decoder.await());
+	}
+
+	@Test
+	public void testHandlerFailure() {
+		NdjsonDecoder<Integer> decoder = newDecoder(new RecordHandler<Integer>() {
+			@Override
+			public void onRecord(Integer record) {
+				if (record == 5000) {
+					throw new IllegalStateException("Handler failed");
+				}
+			}
+		});
+
+		try {
+			decoder.decode(new ByteArrayInputStream(lines(10000)));
+			fail("The handler failure should be reported");
+		} catch (RestException e) {
+			assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+	}
+
+	@Test
+	public void testDecodeFailure() {
+		NdjsonDecoder<Integer> decoder = newDecoder(new RecordHandler<Integer>() {
+			@Override
+			public void onRecord(Integer record) {
+			}
+		});
+
+		try {
+			decoder.decode(new ByteArrayInputStream("1\n2\nnot json\n4\n".getBytes()));
+			fail("The decode failure should be reported");
+		} catch (RestException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testInFlightBatchesAreCapped() throws Exception {
+		final List<Integer> records = Collections.synchronizedList(new ArrayList<Integer>());
+		final CountDownLatch release = new CountDownLatch(1);
+		final AtomicInteger tasks = new AtomicInteger();
+		NdjsonDecoder<Integer> decoder = newDecoder(new RecordHandler<Integer>() {
+			@Override
+			public void onRecord(Integer record) throws Exception {
+				release.await();
+				records.add(record);
+			}
+		});
+		decoder.setMaxInFlight(2);
+		decoder.setExecutor(new Executor() {
+			@Override
+			public void execute(Runnable command) {
+				tasks.incrementAndGet();
+				executor.execute(command);
+			}
+		});
+
+		// One chunk completing 20 batches
+		byte[] content = lines(1000);
+		decoder.feed(content, 0, content.length);
+
+		assertEquals(2, tasks.get());
+		assertFalse(decoder.hasCapacity());
+
+		release.countDown();
+		decoder.finish();
+
+		assertEquals(1000, decoder.await());
+		assertEquals(20, tasks.get());
+
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(Integer.valueOf(i), records.get(i));
+		}
+	}
+
+	@Test
+	public void testConsumerSuspendsInputWithoutCapacity() throws Exception {
+		final CountDownLatch release = new CountDownLatch(1);
+		NdjsonDecoder<Integer> decoder = newDecoder(new RecordHandler<Integer>() {
+			@Override
+			public void onRecord(Integer record) throws Exception {
+				release.await();
+			}
+		});
+		decoder.setMaxInFlight(2);
+
+		NdjsonResponseConsumer consumer = new NdjsonResponseConsumer(decoder);
+		consumer.responseReceived(new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK"));
+
+		byte[] content = lines(10000);
+		TestContentDecoder contentDecoder = new TestContentDecoder(content);
+		TestIOControl ioctrl = new TestIOControl();
+		consumer.consumeContent(contentDecoder, ioctrl);
+
+		// Stops after the first chunk fills the decoder
+		assertTrue(ioctrl.suspended);
+		assertTrue(contentDecoder.source.hasRemaining());
+		assertTrue(content.length - contentDecoder.source.remaining() <= 8192);
+
+		release.countDown();
+
+		assertTrue(ioctrl.requested.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	public void testLineLongerThanMaximumFails() {
+		NdjsonDecoder<Integer> decoder = newDecoder(new RecordHandler<Integer>() {
+			@Override
+			public void onRecord(Integer record) {
+			}
+		});
+		decoder.setMaxLineLength(100);
+
+		byte[] content = "1\n2\n".getBytes();
+		decoder.feed(content, 0, content.length);
+
+		// A line arriving in pieces without a newline
+		byte[] piece = new byte[60];
+		Arrays.fill(piece, (byte) '1');
+		decoder.feed(piece, 0, piece.length);
+
+		try {
+			decoder.feed(piece, 0, piece.length);
+			fail("The line should exceed the maximum length");
+		} catch (RestException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("maximum length of 100"));
+		}
+
+		try {
+			decoder.await();
+			fail("The decoding should have failed");
+		} catch (RestException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testCompleteLineLongerThanMaximumFails() {
+		NdjsonDecoder<Integer> decoder = newDecoder(new RecordHandler<Integer>() {
+			@Override
+			public void onRecord(Integer record) {
+			}
+		});
+		decoder.setMaxLineLength(100);
+
+		byte[] content = new byte[202];
+		Arrays.fill(content, (byte) '1');
+		content[200] = '\n';
+		content[201] = '\n';
+
+		try {
+			decoder.decode(new ByteArrayInputStream(content));
+			fail("The line should exceed the maximum length");
+		} catch (RestException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("maximum length of 100"));
+		}
+	}
+
+	private NdjsonDecoder<Integer> newDecoder(RecordHandler<Integer> handler) {
+		NdjsonDecoder<Integer> decoder = new NdjsonDecoder<Integer>(JacksonCodec.getDefault().getReader(
+				Integer.class), handler);
+		decoder.setExecutor(executor);
+		decoder.setBatchSize(50);
+
+		return decoder;
+	}
+
+	private static byte[] lines(int count) {
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 0; i < count; i++) {
+			sb.append(i).append('\n');
+		}
+
+		return sb.toString().getBytes();
+	}
+
+	private static class TestContentDecoder implements ContentDecoder {
+		private final ByteBuffer source;
+
+		TestContentDecoder(byte[] content) {
+			source = ByteBuffer.wrap(content);
+		}
+
+		@Override
+		public int read(ByteBuffer dst) {
+			if (!source.hasRemaining()) {
+				return -1;
+			}
+
+			int length = Math.min(dst.remaining(), source.remaining());
+			ByteBuffer slice = source.slice();
+			slice.limit(length);
+			dst.put(slice);
+			source.position(source.position() + length);
+
+			return length;
+		}
+
+		@Override
+		public boolean isCompleted() {
+			return !source.hasRemaining();
+		}
+	}
+
+	private static class TestIOControl implements IOControl {
+		private final CountDownLatch requested = new CountDownLatch(1);
+
+		private volatile boolean suspended;
+
+		@Override
+		public void requestInput() {
+			requested.countDown();
+		}
+
+		@Override
+		public void suspendInput() {
+			suspended = true;
+		}
+
+		@Override
+		public void requestOutput() {
+		}
+
+		@Override
+		public void suspendOutput() {
+		}
+
+		@Override
+		public void shutdown() {
+		}
+	}
+}
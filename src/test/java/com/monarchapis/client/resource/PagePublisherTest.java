@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.monarchapis.client.rest.RestAsyncClient;
+import com.monarchapis.client.rest.RestClientFactory;
+import com.monarchapis.client.rest.RestResponse;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class PagePublisherTest {
+	private static final int PAGES = 3;
+
+	private HttpServer server;
+
+	private RestClientFactory clientFactory;
+
+	private PagePublisher<String> publisher;
+
+	/** Holds back every page until opened. */
+	private volatile CountDownLatch gate = new CountDownLatch(0);
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/items", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					gate.await(10, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+				String query = exchange.getRequestURI().getQuery();
+				int page = query != null ? Integer.parseInt(query.substring("page=".length())) : 1;
+				byte[] body = ("[\"a" + page + "\", null, \"b" + page + "\"]").getBytes("UTF-8");
+
+				if (page < PAGES) {
+					exchange.getResponseHeaders().set("Link", "</items?page=" + (page + 1) + ">; rel=\"next\"");
+				}
+
+				exchange.getResponseHeaders().set("Content-Type", "application/json");
+				exchange.sendResponseHeaders(200, body.length);
+
+				OutputStream out = exchange.getResponseBody();
+				out.write(body);
+				out.close();
+			}
+		});
+		server.start();
+
+		clientFactory = new RestClientFactory();
+
+		final ObjectMapper mapper = new ObjectMapper();
+		PagePublisher.ClientFactory clients = new PagePublisher.ClientFactory() {
+			@Override
+			public RestAsyncClient newClient(String url) {
+				return clientFactory.createAsync("GET", url);
+			}
+		};
+		PagePublisher.PageReader<String> reader = new PagePublisher.PageReader<String>() {
+			@Override
+			public List<String> read(RestResponse response) throws Exception {
+				return mapper.readValue(response.getResponseBody(), new TypeReference<List<String>>() {
+				});
+			}
+		};
+
+		publisher = new PagePublisher<String>("http://127.0.0.1:" + server.getAddress().getPort() + "/items",
+				Pagination.link(), null, clients, reader);
+	}
+
+	@After
+	public void tearDown() {
+		gate.countDown();
+		clientFactory.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void testPublishesEveryPageOnDemand() throws Exception {
+		TestSubscriber subscriber = new TestSubscriber(1);
+		publisher.subscribe(subscriber);
+
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+		assertNull(subscriber.error);
+		assertEquals(Arrays.asList("a1", "b1", "a2", "b2", "a3", "b3"), subscriber.items);
+		assertEquals(Collections.singleton("page-publisher"), subscriber.threads);
+	}
+
+	@Test
+	public void testCancelStopsDelivery() throws Exception {
+		final CountDownLatch cancelled = new CountDownLatch(1);
+		TestSubscriber subscriber = new TestSubscriber(1) {
+			@Override
+			public void onNext(String item) {
+				super.onNext(item);
+
+				if (items.size() == 3) {
+					subscription.cancel();
+					cancelled.countDown();
+				}
+			}
+		};
+		publisher.subscribe(subscriber);
+
+		assertTrue(cancelled.await(10, TimeUnit.SECONDS));
+		Thread.sleep(200);
+		assertEquals(Arrays.asList("a1", "b1", "a2"), subscriber.items);
+		assertEquals(1, subscriber.done.getCount());
+	}
+
+	@Test
+	public void testNonPositiveRequestFails() throws Exception {
+		TestSubscriber subscriber = new TestSubscriber(0);
+		publisher.subscribe(subscriber);
+		subscriber.subscription.request(0);
+
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+		assertTrue(subscriber.error instanceof IllegalArgumentException);
+	}
+
+	@Test
+	public void testInvalidRequestDuringFetchEndsTheSubscription() throws Exception {
+		gate = new CountDownLatch(1);
+
+		TestSubscriber subscriber = new TestSubscriber(1);
+		publisher.subscribe(subscriber);
+
+		// The first page is in flight when the request is rejected
+		subscriber.subscription.request(0);
+
+		assertTrue(subscriber.done.await(10, TimeUnit.SECONDS));
+		assertTrue(subscriber.error instanceof IllegalArgumentException);
+
+		gate.countDown();
+		Thread.sleep(500);
+
+		assertTrue(subscriber.items.isEmpty());
+		assertEquals(1, subscriber.signals.get());
+	}
+
+	static class TestSubscriber implements Subscriber<String> {
+		final List<String> items = Collections.synchronizedList(new ArrayList<String>());
+
+		final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+
+		/** Every call after onSubscribe, which must end with the terminal one. */
+		final AtomicInteger signals = new AtomicInteger();
+
+		final CountDownLatch done = new CountDownLatch(1);
+
+		final long batch;
+
+		volatile Subscription subscription;
+
+		volatile Throwable error;
+
+		TestSubscriber(long batch) {
+			this.batch = batch;
+		}
+
+		@Override
+		public void onSubscribe(Subscription subscription) {
+			this.subscription = subscription;
+
+			if (batch > 0) {
+				subscription.request(batch);
+			}
+		}
+
+		@Override
+		public void onNext(String item) {
+			signals.incrementAndGet();
+			threads.add(Thread.currentThread().getName());
+			items.add(item);
+			subscription.request(batch);
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			signals.incrementAndGet();
+			error = t;
+			done.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			signals.incrementAndGet();
+			done.countDown();
+		}
+	}
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class BatchTest {
+	private static final Batch.ResponseParser<String> BODY = new Batch.ResponseParser<String>() {
+		@Override
+		public String parse(RestResponse response) {
+			return response.getResponseBody();
+		}
+	};
+
+	private HttpServer server;
+
+	private ExecutorService serverThreads;
+
+	private RestClientFactory clientFactory;
+
+	/** Holds back the slow handler until the test ends. */
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@Before
+	public void setUp() throws IOException {
+		serverThreads = Executors.newCachedThreadPool();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/echo", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, exchange.getRequestURI().getQuery());
+			}
+		});
+		server.createContext("/slow", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					release.await(30, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+				respond(exchange, "slow");
+			}
+		});
+		server.setExecutor(serverThreads);
+		server.start();
+
+		clientFactory = new RestClientFactory();
+	}
+
+	@After
+	public void tearDown() {
+		release.countDown();
+		clientFactory.close();
+		server.stop(0);
+		serverThreads.shutdownNow();
+	}
+
+	@Test
+	public void testResultsKeepRequestOrder() throws Exception {
+		Batch<String> batch = clientFactory.newBatch(10, TimeUnit.SECONDS);
+		batch.setMaxInFlight(2);
+
+		for (int i = 0; i < 6; i++) {
+			assertEquals(i, batch.add(clientFactory.createAsync("GET", url("/echo?" + i)), BODY));
+		}
+
+		BatchResults<String> results = batch.execute().get(10, TimeUnit.SECONDS);
+
+		assertTrue(results.isAllSucceeded());
+
+		for (int i = 0; i < 6; i++) {
+			assertEquals(i, results.get(i).getIndex());
+			assertEquals(String.valueOf(i), results.get(i).getValue());
+		}
+	}
+
+	@Test
+	public void testDeadlineTimesOutUnfinishedRequests() throws Exception {
+		Batch<String> batch = clientFactory.newBatch(500, TimeUnit.MILLISECONDS);
+		batch.add(clientFactory.createAsync("GET", url("/echo?fast")), BODY);
+		batch.add(clientFactory.createAsync("GET", url("/slow")), BODY);
+
+		BatchResults<String> results = batch.execute().get(10, TimeUnit.SECONDS);
+
+		assertEquals(BatchResult.Status.SUCCEEDED, results.get(0).getStatus());
+		assertEquals("fast", results.get(0).getValue());
+		assertEquals(BatchResult.Status.TIMED_OUT, results.get(1).getStatus());
+		assertTrue(results.get(1).getException() instanceof TimeoutException);
+	}
+
+	@Test
+	public void testCancelAbortsUnfinishedRequests() throws Exception {
+		final Map<Integer, BatchResult<String>> reported = new ConcurrentHashMap<Integer, BatchResult<String>>();
+		final CountDownLatch done = new CountDownLatch(2);
+
+		Batch<String> batch = clientFactory.newBatch(10, TimeUnit.SECONDS);
+		batch.setMaxInFlight(1);
+		batch.setListener(new Batch.Listener<String>() {
+			@Override
+			public void onResult(BatchResult<String> result) {
+				reported.put(result.getIndex(), result);
+				done.countDown();
+			}
+		});
+		batch.add(clientFactory.createAsync("GET", url("/slow")), BODY);
+		batch.add(clientFactory.createAsync("GET", url("/slow")), BODY);
+
+		AsyncFuture<BatchResults<String>> future = batch.execute();
+		Thread.sleep(200);
+		future.cancel(true);
+
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertEquals(BatchResult.Status.CANCELLED, reported.get(0).getStatus());
+		assertEquals(BatchResult.Status.CANCELLED, reported.get(1).getStatus());
+	}
+
+	private String url(String path) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	private static void respond(HttpExchange exchange, String body) throws IOException {
+		byte[] content = body.getBytes("UTF-8");
+		exchange.sendResponseHeaders(200, content.length);
+
+		OutputStream out = exchange.getResponseBody();
+		out.write(content);
+		out.close();
+	}
+}
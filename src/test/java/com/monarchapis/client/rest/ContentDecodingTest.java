@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class ContentDecodingTest {
+	private HttpServer server;
+
+	private RestClientFactory clientFactory;
+
+	private ContentDecoding contentDecoding;
+
+	private byte[] content;
+
+	/** The Accept-Encoding header of the last request received. */
+	private volatile String acceptEncoding;
+
+	@Before
+	public void setUp() throws IOException {
+		StringBuilder sb = new StringBuilder();
+
+		for (int i = 0; i < 2000; i++) {
+			sb.append("{\"id\":").append(i).append(",\"name\":\"item ").append(i).append("\"}\n");
+		}
+
+		content = sb.toString().getBytes("UTF-8");
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/gzip", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+				OutputStream out = new GZIPOutputStream(encoded);
+				out.write(content);
+				out.close();
+				respond(exchange, "gzip", encoded.toByteArray());
+			}
+		});
+		server.createContext("/deflate", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+				OutputStream out = new DeflaterOutputStream(encoded);
+				out.write(content);
+				out.close();
+				respond(exchange, "deflate", encoded.toByteArray());
+			}
+		});
+		server.createContext("/raw-deflate", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+				OutputStream out = new DeflaterOutputStream(encoded, new Deflater(Deflater.DEFAULT_COMPRESSION, true));
+				out.write(content);
+				out.close();
+				respond(exchange, "deflate", encoded.toByteArray());
+			}
+		});
+		server.createContext("/plain", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, null, content);
+			}
+		});
+		server.createContext("/brotli", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, "br", content);
+			}
+		});
+		server.start();
+
+		contentDecoding = new ContentDecoding();
+		clientFactory = new RestClientFactory();
+		clientFactory.setContentDecoding(contentDecoding);
+	}
+
+	@After
+	public void tearDown() {
+		clientFactory.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void testOptionalCodingsAreNotOfferedWhenMissing() {
+		// Neither the Brotli nor the Zstandard decoder is on the class path
+		assertEquals("gzip, deflate", contentDecoding.getAcceptEncoding());
+	}
+
+	@Test
+	public void testRestClientDecodesGzip() {
+		assertDecoded(clientFactory.create("GET", url("/gzip")).send());
+	}
+
+	@Test
+	public void testRestClientDecodesDeflate() {
+		assertDecoded(clientFactory.create("GET", url("/deflate")).send());
+	}
+
+	@Test
+	public void testRestClientDecodesRawDeflate() {
+		assertDecoded(clientFactory.create("GET", url("/raw-deflate")).send());
+	}
+
+	@Test
+	public void testRestAsyncClientDecodesGzip() throws Exception {
+		RestAsyncClientTest.TestCallback<RestResponse> callback = new RestAsyncClientTest.TestCallback<RestResponse>();
+		clientFactory.createAsync("GET", url("/gzip")).send(callback);
+		assertDecoded(callback.get());
+	}
+
+	@Test
+	public void testRestAsyncClientDecodesDeflate() throws Exception {
+		RestAsyncClientTest.TestCallback<RestResponse> callback = new RestAsyncClientTest.TestCallback<RestResponse>();
+		clientFactory.createAsync("GET", url("/deflate")).send(callback);
+		assertDecoded(callback.get());
+	}
+
+	@Test
+	public void testUnsupportedCodingFails() {
+		try {
+			clientFactory.create("GET", url("/brotli")).send();
+			fail("Expected the br coding to be rejected");
+		} catch (RestException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Unsupported Content-Encoding: br"));
+		}
+	}
+
+	@Test
+	public void testCountsWireAndDecodedBytes() {
+		clientFactory.create("GET", url("/gzip")).send();
+		long wireBytes = contentDecoding.getWireBytes();
+
+		assertTrue(wireBytes > 0);
+		assertTrue(wireBytes < content.length / 4);
+		assertEquals(content.length, contentDecoding.getDecodedBytes());
+
+		// Unencoded content is counted the same on both sides
+		clientFactory.create("GET", url("/plain")).send();
+
+		assertEquals(wireBytes + content.length, contentDecoding.getWireBytes());
+		assertEquals(2L * content.length, contentDecoding.getDecodedBytes());
+	}
+
+	private void assertDecoded(RestResponse response) {
+		assertEquals(200, response.getStatusCode());
+		assertEquals("gzip, deflate", acceptEncoding);
+		assertNull(response.getHeader("Content-Encoding"));
+		assertArrayEquals(content, response.getResponseBytes());
+	}
+
+	private String url(String path) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	private void respond(HttpExchange exchange, String contentEncoding, byte[] body) throws IOException {
+		acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+		IOUtils.toByteArray(exchange.getRequestBody());
+
+		if (contentEncoding != null) {
+			exchange.getResponseHeaders().set("Content-Encoding", contentEncoding);
+		}
+
+		exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+		exchange.sendResponseHeaders(200, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+}
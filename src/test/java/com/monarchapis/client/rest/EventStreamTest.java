@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class EventStreamTest {
+	private static final int EVENTS = 4000;
+
+	private static final int EVENT_SIZE = 8192;
+
+	private HttpServer server;
+
+	private RestClientFactory clientFactory;
+
+	private volatile boolean served;
+
+	private final List<String> resumedFrom = new CopyOnWriteArrayList<String>();
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/events", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				char[] padding = new char[EVENT_SIZE];
+				Arrays.fill(padding, 'x');
+
+				exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+				exchange.sendResponseHeaders(200, 0);
+
+				OutputStream out = exchange.getResponseBody();
+
+				try {
+					for (int i = 0; i < EVENTS; i++) {
+						out.write(("id: " + i + "\ndata: " + i + "\n: " + new String(padding) + "\n\n").getBytes("UTF-8"));
+					}
+
+					served = true;
+				} finally {
+					out.close();
+				}
+			}
+		});
+		server.createContext("/dropped", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				String lastEventId = exchange.getRequestHeaders().getFirst("Last-Event-ID");
+				resumedFrom.add(String.valueOf(lastEventId));
+
+				exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+				exchange.sendResponseHeaders(200, 0);
+
+				OutputStream out = exchange.getResponseBody();
+
+				if (lastEventId == null) {
+					// The second event's ID arrives, but the connection drops
+					// before the event is complete
+					out.write("id: 1\ndata: a\n\nid: 2\ndata: b\n".getBytes("UTF-8"));
+					out.flush();
+					throw new IOException("Dropped");
+				}
+
+				out.write("id: 2\ndata: b\n\n".getBytes("UTF-8"));
+				out.close();
+			}
+		});
+		server.start();
+
+		clientFactory = new RestClientFactory();
+	}
+
+	@After
+	public void tearDown() {
+		clientFactory.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void testEventsAreDeliveredInOrderOffTheReactor() throws Exception {
+		TestHandler handler = new TestHandler(EVENTS);
+		EventStream stream = newStream(handler);
+		stream.open();
+
+		assertTrue(handler.received.await(30, TimeUnit.SECONDS));
+		stream.close();
+		assertTrue(handler.ended.await(10, TimeUnit.SECONDS));
+
+		for (int i = 0; i < EVENTS; i++) {
+			assertEquals(String.valueOf(i), handler.data.get(i));
+		}
+
+		assertEquals(Collections.singleton("event-stream-dispatch"), handler.threads);
+		assertEquals(Arrays.asList("closed"), handler.notifications);
+	}
+
+	@Test
+	public void testSlowHandlerSuspendsReading() throws Exception {
+		final CountDownLatch gate = new CountDownLatch(1);
+		TestHandler handler = new TestHandler(EVENTS) {
+			@Override
+			public void onEvent(ServerSentEvent event) {
+				await(gate);
+				super.onEvent(event);
+			}
+		};
+		EventStream stream = newStream(handler);
+		stream.setMaxQueuedEvents(2);
+		stream.open();
+
+		// The content is far larger than the socket buffers, so the server
+		// can only finish once the client reads on
+		Thread.sleep(1000);
+		assertFalse(served);
+
+		gate.countDown();
+		assertTrue(handler.received.await(30, TimeUnit.SECONDS));
+		assertTrue(served);
+		stream.close();
+	}
+
+	@Test
+	public void testHandlerExceptionFailsTheStream() throws Exception {
+		final RuntimeException error = new IllegalStateException("Handler failed");
+		TestHandler handler = new TestHandler(EVENTS) {
+			@Override
+			public void onEvent(ServerSentEvent event) {
+				super.onEvent(event);
+
+				if (data.size() == 3) {
+					throw error;
+				}
+			}
+		};
+		EventStream stream = newStream(handler);
+		stream.open();
+
+		assertTrue(handler.ended.await(10, TimeUnit.SECONDS));
+		assertTrue(stream.isClosed());
+		assertEquals(3, handler.data.size());
+		assertEquals(Arrays.asList("failed"), handler.notifications);
+		assertSame(error, handler.failure);
+	}
+
+	@Test
+	public void testResumesFromLastDispatchedEvent() throws Exception {
+		TestHandler handler = new TestHandler(2);
+		EventStream stream = newStream(handler, "/dropped");
+		stream.setReconnectDelay(10);
+		stream.open();
+
+		assertTrue(handler.received.await(10, TimeUnit.SECONDS));
+		stream.close();
+
+		assertEquals(Arrays.asList("a", "b"), handler.data.subList(0, 2));
+		// The drop can come before any content is read, so there may be more
+		// than one fresh attempt, but never a resume past the first event
+		assertEquals("1", resumedFrom.get(resumedFrom.size() - 1));
+		assertFalse(resumedFrom.contains("2"));
+	}
+
+	private EventStream newStream(EventHandler handler) {
+		EventStream stream = newStream(handler, "/events");
+		stream.setReconnectDelay(60000);
+
+		return stream;
+	}
+
+	private EventStream newStream(EventHandler handler, String path) {
+		return clientFactory.createAsync("GET", "http://127.0.0.1:" + server.getAddress().getPort() + path)
+				.newEventStream(handler, null);
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	static class TestHandler implements EventHandler {
+		final List<String> data = Collections.synchronizedList(new ArrayList<String>());
+
+		final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+
+		final List<String> notifications = Collections.synchronizedList(new ArrayList<String>());
+
+		final CountDownLatch received;
+
+		final CountDownLatch ended = new CountDownLatch(1);
+
+		volatile Exception failure;
+
+		TestHandler(int expected) {
+			received = new CountDownLatch(expected);
+		}
+
+		@Override
+		public void onEvent(ServerSentEvent event) {
+			assertTrue(notifications.isEmpty());
+			data.add(event.getData());
+			threads.add(Thread.currentThread().getName());
+			received.countDown();
+		}
+
+		@Override
+		public void failed(Exception ex) {
+			failure = ex;
+			notifications.add("failed");
+			ended.countDown();
+		}
+
+		@Override
+		public void closed() {
+			notifications.add("closed");
+			ended.countDown();
+		}
+	}
+}
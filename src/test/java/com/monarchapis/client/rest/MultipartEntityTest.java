@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.http.nio.ContentEncoder;
+import org.apache.http.nio.FileContentEncoder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MultipartEntityTest {
+	private File file;
+
+	private byte[] fileContent;
+
+	@Before
+	public void setUp() throws IOException {
+		fileContent = new byte[100000];
+		new Random(1).nextBytes(fileContent);
+		file = File.createTempFile("multipart", ".bin");
+		Files.write(file.toPath(), fileContent);
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testProduceContentMatchesWriteTo() throws IOException {
+		byte[] expected = write(newEntity(true));
+
+		assertEquals(newEntity(true).getContentLength(), expected.length);
+		assertArrayEquals(expected, produce(newEntity(true), new BufferEncoder()));
+	}
+
+	@Test
+	public void testProduceContentTransfersFiles() throws IOException {
+		TransferEncoder encoder = new TransferEncoder();
+
+		assertArrayEquals(write(newEntity(true)), produce(newEntity(true), encoder));
+		assertEquals(2 * fileContent.length, encoder.transferred);
+	}
+
+	@Test
+	public void testProduceContentWithStreamPart() throws IOException {
+		byte[] expected = write(newEntity(false));
+
+		assertTrue(newEntity(false).isChunked());
+		assertArrayEquals(expected, produce(newEntity(false), new BufferEncoder()));
+	}
+
+	@Test
+	public void testProduceContentIsRepeatable() throws IOException {
+		MultipartEntity entity = newEntity(true);
+		byte[] first = produce(entity, new TransferEncoder());
+
+		assertArrayEquals(first, produce(entity, new BufferEncoder()));
+	}
+
+	private MultipartEntity newEntity(boolean repeatable) {
+		List<MultipartEntity.Part> parts = Arrays.asList(MultipartEntity.text("text", "value"),
+				MultipartEntity.file("file", file, null), MultipartEntity.path("path", file.toPath(), "image/png"));
+
+		if (!repeatable) {
+			parts = Arrays.asList(parts.get(0), parts.get(1),
+					MultipartEntity.stream("stream", new ByteArrayInputStream(fileContent), "data.bin", null));
+		}
+
+		return new MultipartEntity("boundary", parts);
+	}
+
+	private static byte[] write(MultipartEntity entity) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		entity.writeTo(out);
+
+		return out.toByteArray();
+	}
+
+	private static byte[] produce(MultipartEntity entity, BufferEncoder encoder) throws IOException {
+		for (int i = 0; !encoder.isCompleted(); i++) {
+			assertTrue("Content was not completed", i < 100000);
+			entity.produceContent(encoder, null);
+		}
+
+		return encoder.out.toByteArray();
+	}
+
+	/**
+	 * Accepts at most 1000 bytes per write, like a congested connection.
+	 */
+	private static class BufferEncoder implements ContentEncoder {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+		private boolean completed;
+
+		@Override
+		public int write(ByteBuffer src) {
+			int length = Math.min(src.remaining(), 1000);
+			byte[] bytes = new byte[length];
+			src.get(bytes);
+			out.write(bytes, 0, length);
+
+			return length;
+		}
+
+		@Override
+		public void complete() {
+			completed = true;
+		}
+
+		@Override
+		public boolean isCompleted() {
+			return completed;
+		}
+	}
+
+	private static class TransferEncoder extends BufferEncoder implements FileContentEncoder {
+		private long transferred;
+
+		@Override
+		public long transfer(FileChannel src, long position, long count) throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count, 3000));
+			int read = src.read(buffer, position);
+			buffer.flip();
+			out.write(buffer.array(), 0, buffer.limit());
+			transferred += read;
+
+			return read;
+		}
+	}
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class RangedDownloaderTest {
+	private static final String LAST_MODIFIED = "Sun, 18 Oct 2026 12:00:00 GMT";
+
+	private HttpServer server;
+
+	private ExecutorService serverExecutor;
+
+	private RestClientFactory clientFactory;
+
+	private File file;
+
+	private byte[] content;
+
+	/** The ETag advertised by HEAD requests. */
+	private volatile String probedEtag = "\"v1\"";
+
+	/** The ETag ranges are checked against. */
+	private volatile String currentEtag = "\"v1\"";
+
+	private volatile String digest;
+
+	/** Whether to cut off the next ranged response half way. */
+	private final AtomicBoolean truncateNext = new AtomicBoolean();
+
+	private final List<String> ranges = new CopyOnWriteArrayList<String>();
+
+	private final List<String> validators = new CopyOnWriteArrayList<String>();
+
+	@Before
+	public void setUp() throws Exception {
+		content = new byte[1024 * 1024];
+		new Random(1).nextBytes(content);
+		digest = "SHA-256=" + Base64.encodeBase64String(MessageDigest.getInstance("SHA-256").digest(content));
+		file = File.createTempFile("ranged", ".bin");
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/file", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				serve(exchange);
+			}
+		});
+		serverExecutor = Executors.newCachedThreadPool();
+		server.setExecutor(serverExecutor);
+		server.start();
+
+		clientFactory = new RestClientFactory();
+		clientFactory.setConnectionMaxPerRoute(4);
+	}
+
+	@After
+	public void tearDown() {
+		clientFactory.close();
+		server.stop(0);
+		serverExecutor.shutdownNow();
+		file.delete();
+	}
+
+	@Test
+	public void testParallelRanges() throws Exception {
+		RangedDownloader downloader = newDownloader();
+		downloader.download(url(), file.toPath());
+
+		assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+		assertEquals(4, ranges.size());
+		assertEquals("\"v1\"", validators.get(0));
+	}
+
+	@Test
+	public void testParallelismLimitedToConnectionsPerRoute() throws Exception {
+		clientFactory.setConnectionMaxPerRoute(2);
+		newDownloader().download(url(), file.toPath());
+
+		assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+		assertEquals(2, ranges.size());
+	}
+
+	@Test
+	public void testResumesPartialRange() throws Exception {
+		truncateNext.set(true);
+		newDownloader().download(url(), file.toPath());
+
+		assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+		assertEquals(5, ranges.size());
+
+		// The resumed range starts where the truncated one stopped
+		boolean resumed = false;
+
+		for (String range : ranges) {
+			long start = Long.parseLong(StringUtils.substringBetween(range, "=", "-"));
+			resumed |= start % (content.length / 4) != 0;
+		}
+
+		assertTrue("No range was resumed: " + ranges, resumed);
+	}
+
+	@Test
+	public void testIfRangeMismatch() throws Exception {
+		currentEtag = "\"v2\"";
+
+		try {
+			newDownloader().download(url(), file.toPath());
+			fail("The download should fail when the resource changes");
+		} catch (RestException e) {
+			assertEquals(200, e.getStatusCode());
+		}
+	}
+
+	@Test
+	public void testWeakEtagUsesLastModified() throws Exception {
+		probedEtag = "W/\"v1\"";
+		newDownloader().download(url(), file.toPath());
+
+		assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+
+		for (String validator : validators) {
+			assertEquals(LAST_MODIFIED, validator);
+		}
+	}
+
+	@Test
+	public void testDigestMismatch() throws Exception {
+		digest = "SHA-256=" + Base64.encodeBase64String(new byte[32]);
+
+		try {
+			newDownloader().download(url(), file.toPath());
+			fail("The download should fail verification");
+		} catch (RestException e) {
+			assertTrue(e.getMessage().contains("digest"));
+		}
+	}
+
+	private RangedDownloader newDownloader() {
+		RangedDownloader downloader = new RangedDownloader(clientFactory);
+		downloader.setMinRangeSize(64 * 1024);
+
+		return downloader;
+	}
+
+	private String url() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/file";
+	}
+
+	private void serve(HttpExchange exchange) throws IOException {
+		IOUtils.toByteArray(exchange.getRequestBody());
+		Headers headers = exchange.getResponseHeaders();
+		headers.set("Accept-Ranges", "bytes");
+		headers.set("Last-Modified", LAST_MODIFIED);
+		headers.set("Digest", digest);
+
+		if ("HEAD".equals(exchange.getRequestMethod())) {
+			headers.set("ETag", probedEtag);
+			headers.set("Content-Length", String.valueOf(content.length));
+			exchange.sendResponseHeaders(200, -1);
+			exchange.close();
+			return;
+		}
+
+		headers.set("ETag", currentEtag);
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		String validator = exchange.getRequestHeaders().getFirst("If-Range");
+
+		if (validator != null) {
+			validators.add(validator);
+		}
+
+		boolean valid = validator == null || validator.equals(currentEtag) || validator.equals(LAST_MODIFIED);
+
+		if (range == null || !valid) {
+			send(exchange, 200, 0, content.length, false);
+			return;
+		}
+
+		ranges.add(range);
+		long start = Long.parseLong(StringUtils.substringBetween(range, "=", "-"));
+		long end = Long.parseLong(StringUtils.substringAfter(range, "-"));
+		headers.set("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+		send(exchange, 206, (int) start, (int) (end - start + 1), truncateNext.compareAndSet(true, false));
+	}
+
+	private void send(HttpExchange exchange, int statusCode, int offset, int length, boolean truncate)
+			throws IOException {
+		exchange.sendResponseHeaders(statusCode, length);
+		OutputStream out = exchange.getResponseBody();
+
+		out.write(content, offset, truncate ? length / 2 : length);
+		out.flush();
+
+		if (truncate) {
+			// Failing the exchange drops the connection part way through
+			throw new IOException("Truncated");
+		}
+
+		out.close();
+	}
+}
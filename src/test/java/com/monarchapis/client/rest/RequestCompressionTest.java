@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.junit.Test;
+
+public class RequestCompressionTest {
+	private final RequestCompression compression = new RequestCompression();
+
+	private final HttpPost request = new HttpPost("http://localhost/");
+
+	@Test
+	public void testSmallKnownLength() {
+		HttpEntity entity = new ByteArrayEntity(new byte[100]);
+
+		assertSame(entity, compression.compress(request, entity));
+	}
+
+	@Test
+	public void testLargeKnownLength() throws IOException {
+		byte[] content = newContent(5000);
+
+		assertArrayEquals(content, decompress(compression.compress(request, new ByteArrayEntity(content))));
+	}
+
+	@Test
+	public void testSmallUnknownLength() throws IOException {
+		byte[] content = newContent(100);
+		InputStreamEntity entity = new InputStreamEntity(new ByteArrayInputStream(content), -1);
+		entity.setContentType("text/plain");
+		HttpEntity compressed = compression.compress(request, entity);
+
+		assertTrue(compressed.getContentEncoding() == null);
+		assertEquals(100, compressed.getContentLength());
+		assertEquals("text/plain", compressed.getContentType().getValue());
+		assertArrayEquals(content, IOUtils.toByteArray(compressed.getContent()));
+	}
+
+	@Test
+	public void testLargeUnknownLength() throws IOException {
+		byte[] content = newContent(5000);
+		HttpEntity compressed = compression.compress(request,
+				new InputStreamEntity(new ByteArrayInputStream(content), -1));
+
+		assertEquals("gzip", compressed.getContentEncoding().getValue());
+		assertArrayEquals(content, decompress(compressed));
+	}
+
+	@Test
+	public void testLargeUnknownLengthRepeatable() throws IOException {
+		byte[] content = newContent(5000);
+		HttpEntity compressed = compression.compress(request, new RepeatableEntity(content));
+
+		assertEquals("gzip", compressed.getContentEncoding().getValue());
+		assertArrayEquals(content, decompress(compressed));
+	}
+
+	@Test
+	public void testThresholdBoundary() throws IOException {
+		byte[] content = newContent((int) compression.getThreshold());
+
+		assertEquals("gzip", compression.compress(request, new RepeatableEntity(content)).getContentEncoding()
+				.getValue());
+	}
+
+	@Test
+	public void testDisabledHost() {
+		HttpEntity entity = new RepeatableEntity(newContent(5000));
+		compression.disable(request.getURI());
+
+		assertSame(entity, compression.compress(request, entity));
+	}
+
+	private static byte[] newContent(int length) {
+		byte[] content = new byte[length];
+		new Random(1).nextBytes(content);
+
+		return content;
+	}
+
+	private static byte[] decompress(HttpEntity entity) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		entity.writeTo(out);
+
+		return IOUtils.toByteArray(new GZIPInputStream(new ByteArrayInputStream(out.toByteArray())));
+	}
+
+	/**
+	 * A repeatable entity of unknown length, like a streamed serialization.
+	 */
+	private static class RepeatableEntity extends AbstractHttpEntity {
+		private final byte[] content;
+
+		RepeatableEntity(byte[] content) {
+			this.content = content;
+		}
+
+		@Override
+		public boolean isRepeatable() {
+			return true;
+		}
+
+		@Override
+		public long getContentLength() {
+			return -1;
+		}
+
+		@Override
+		public InputStream getContent() {
+			return new ByteArrayInputStream(content);
+		}
+
+		@Override
+		public void writeTo(OutputStream outstream) throws IOException {
+			outstream.write(content);
+		}
+
+		@Override
+		public boolean isStreaming() {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class ResponseBufferingTest {
+	private HttpServer server;
+
+	private RestClientFactory clientFactory;
+
+	private File tempDirectory;
+
+	private byte[] content;
+
+	@Before
+	public void setUp() throws IOException {
+		content = new byte[200000];
+		new Random(1).nextBytes(content);
+		tempDirectory = Files.createTempDirectory("buffering").toFile();
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/content", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				IOUtils.toByteArray(exchange.getRequestBody());
+				exchange.sendResponseHeaders(200, content.length);
+				OutputStream out = exchange.getResponseBody();
+				out.write(content);
+				out.close();
+			}
+		});
+		server.start();
+
+		ResponseBuffering responseBuffering = new ResponseBuffering();
+		responseBuffering.setMemoryThreshold(1024);
+		responseBuffering.setTempDirectory(tempDirectory);
+
+		clientFactory = new RestClientFactory();
+		clientFactory.setResponseBuffering(responseBuffering);
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		clientFactory.close();
+		server.stop(0);
+		FileUtils.deleteDirectory(tempDirectory);
+	}
+
+	@Test
+	public void testDisabledByDefault() {
+		RestClientFactory factory = new RestClientFactory();
+
+		assertNull(factory.getResponseBuffering());
+		factory.close();
+	}
+
+	@Test
+	public void testSpillToDisk() throws IOException {
+		RestResponse response = clientFactory.create("GET", url()).send();
+
+		assertSpilled(response);
+	}
+
+	@Test
+	public void testAsyncSpillToDisk() throws Exception {
+		RestAsyncClientTest.TestCallback<RestResponse> callback = new RestAsyncClientTest.TestCallback<RestResponse>();
+		clientFactory.createAsync("GET", url()).send(callback);
+
+		assertSpilled(callback.get());
+	}
+
+	@Test
+	public void testMaxSize() {
+		clientFactory.getResponseBuffering().setMaxSize(1000);
+
+		try {
+			clientFactory.create("GET", url()).send();
+			fail("The response should exceed the maximum size");
+		} catch (RestException e) {
+			assertEquals(0, tempDirectory.list().length);
+		}
+	}
+
+	private void assertSpilled(RestResponse response) throws IOException {
+		// The body is held in a single file, not copied again
+		assertEquals(1, tempDirectory.list().length);
+		assertEquals(content.length, response.getContentLength());
+
+		InputStream stream = response.getResponseStream();
+
+		try {
+			assertArrayEquals(content, IOUtils.toByteArray(stream));
+		} finally {
+			stream.close();
+		}
+
+		response.close();
+		assertEquals(0, tempDirectory.list().length);
+	}
+
+	private String url() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/content";
+	}
+}
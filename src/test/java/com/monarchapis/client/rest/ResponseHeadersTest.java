@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Locale;
+
+import org.apache.http.Header;
+import org.apache.http.message.BasicHeader;
+import org.junit.Test;
+
+public class ResponseHeadersTest {
+	@Test
+	public void testLookupIgnoresCase() {
+		ResponseHeaders headers = new ResponseHeaders(new Header[] { new BasicHeader("Content-Type", "text/plain"),
+				new BasicHeader("x-request-id", "42") });
+
+		assertEquals("text/plain", headers.getValue("content-type"));
+		assertEquals("text/plain", headers.getValue("CONTENT-TYPE"));
+		assertEquals("42", headers.getValue("X-Request-Id"));
+		assertNull(headers.getValue("ETag"));
+		assertNull(headers.getValue(null));
+	}
+
+	@Test
+	public void testIndexedLookupIgnoresCase() {
+		ResponseHeaders headers = new ResponseHeaders(headers(ResponseHeaders.INDEX_THRESHOLD));
+
+		assertEquals("text/plain", headers.getValue("content-type"));
+		assertEquals("text/plain", headers.getValue("CONTENT-TYPE"));
+		assertEquals("42", headers.getValue("X-Request-Id"));
+		assertEquals("value 3", headers.getValue("x-custom-3"));
+		assertNull(headers.getValue("ETag"));
+		assertNull(headers.getValue(null));
+	}
+
+	@Test
+	public void testLookupMatchesOnEitherSideOfIndexThreshold() {
+		for (int size = ResponseHeaders.INDEX_THRESHOLD - 1; size <= ResponseHeaders.INDEX_THRESHOLD + 1; size++) {
+			Header[] transportHeaders = headers(size);
+			ResponseHeaders headers = new ResponseHeaders(transportHeaders);
+
+			for (Header header : transportHeaders) {
+				assertEquals(header.getValue(), headers.getValue(header.getName().toLowerCase(Locale.ROOT)));
+			}
+		}
+	}
+
+	@Test
+	public void testFirstValueWins() {
+		for (int size : new int[] { 2, ResponseHeaders.INDEX_THRESHOLD }) {
+			Header[] transportHeaders = headers(size);
+			transportHeaders[transportHeaders.length - 1] = new BasicHeader("content-type", "application/json");
+			ResponseHeaders headers = new ResponseHeaders(transportHeaders);
+
+			assertEquals("text/plain", headers.getValue("Content-Type"));
+		}
+	}
+
+	@Test
+	public void testFirstValueWinsForHttpHeaders() {
+		HttpHeader[] httpHeaders = new HttpHeader[ResponseHeaders.INDEX_THRESHOLD];
+
+		for (int i = 0; i < httpHeaders.length; i++) {
+			httpHeaders[i] = new HttpHeader("Set-Cookie", "cookie" + i);
+		}
+
+		assertEquals("cookie0", new ResponseHeaders(httpHeaders).getValue("set-cookie"));
+		assertEquals("cookie0", new ResponseHeaders(new HttpHeader[] { httpHeaders[0], httpHeaders[1] })
+				.getValue("SET-COOKIE"));
+	}
+
+	@Test
+	public void testListViewWrapsTransportHeaders() {
+		Header[] transportHeaders = headers(3);
+		ResponseHeaders headers = new ResponseHeaders(transportHeaders);
+
+		assertEquals(3, headers.size());
+
+		for (int i = 0; i < transportHeaders.length; i++) {
+			assertEquals(transportHeaders[i].getName(), headers.get(i).getName());
+			assertEquals(transportHeaders[i].getValue(), headers.get(i).getValue());
+		}
+
+		assertSame(headers.get(1), headers.get(1));
+	}
+
+	/**
+	 * Creates headers starting with <code>Content-Type</code> and
+	 * <code>X-Request-Id</code>, padded with custom headers.
+	 */
+	private static Header[] headers(int size) {
+		Header[] headers = new Header[size];
+		headers[0] = new BasicHeader("Content-Type", "text/plain");
+		headers[1] = new BasicHeader("X-Request-Id", "42");
+
+		for (int i = 2; i < size; i++) {
+			headers[i] = new BasicHeader("X-Custom-" + i, "value " + i);
+		}
+
+		return headers;
+	}
+}
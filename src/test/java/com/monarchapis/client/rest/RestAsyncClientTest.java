@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class RestAsyncClientTest {
+	private HttpServer server;
+
+	private RestClientFactory clientFactory;
+
+	private byte[] content;
+
+	private File file;
+
+	/** The request last received by the echo handler. */
+	private volatile byte[] received;
+
+	private volatile String receivedLength;
+
+	private volatile String receivedEncoding;
+
+	@Before
+	public void setUp() throws IOException {
+		content = new byte[300000];
+		new Random(1).nextBytes(content);
+		file = File.createTempFile("async", ".bin");
+
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/content", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 200, content);
+			}
+		});
+		server.createContext("/missing", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				respond(exchange, 404, "Not found".getBytes("UTF-8"));
+			}
+		});
+		server.createContext("/echo", new HttpHandler() {
+			@Override
+			public void handle(HttpExchange exchange) throws IOException {
+				receivedLength = exchange.getRequestHeaders().getFirst("Content-Length");
+				receivedEncoding = exchange.getRequestHeaders().getFirst("Transfer-Encoding");
+				received = IOUtils.toByteArray(exchange.getRequestBody());
+				respond(exchange, 200, "OK".getBytes("UTF-8"));
+			}
+		});
+		server.start();
+
+		clientFactory = new RestClientFactory();
+	}
+
+	@After
+	public void tearDown() {
+		clientFactory.close();
+		server.stop(0);
+		file.delete();
+	}
+
+	@Test
+	public void testDownload() throws Exception {
+		TestCallback<RestResponse> callback = new TestCallback<RestResponse>();
+		clientFactory.createAsync("GET", url("/content")).download(file.toPath(), callback);
+		RestResponse response = callback.get();
+
+		assertEquals(200, response.getStatusCode());
+		assertEquals(0, response.getContentLength());
+		assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+	}
+
+	@Test
+	public void testDownloadReplacesExistingContent() throws Exception {
+		Files.write(file.toPath(), content);
+
+		TestCallback<RestResponse> callback = new TestCallback<RestResponse>();
+		clientFactory.createAsync("GET", url("/missing")).download(file.toPath(), callback);
+
+		assertEquals(404, callback.get().getStatusCode());
+		assertEquals("Not found", new String(Files.readAllBytes(file.toPath()), "UTF-8"));
+	}
+
+	@Test
+	public void testFileBody() throws Exception {
+		Files.write(file.toPath(), content);
+
+		TestCallback<RestResponse> callback = new TestCallback<RestResponse>();
+		clientFactory.createAsync("POST", url("/echo")).setBody(file, "application/octet-stream").send(callback);
+
+		assertEquals(200, callback.get().getStatusCode());
+		assertEquals(String.valueOf(content.length), receivedLength);
+		assertNull(receivedEncoding);
+		assertArrayEquals(content, received);
+	}
+
+	private String url(String path) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	private static void respond(HttpExchange exchange, int statusCode, byte[] body) throws IOException {
+		IOUtils.toByteArray(exchange.getRequestBody());
+		exchange.sendResponseHeaders(statusCode, body.length);
+		OutputStream out = exchange.getResponseBody();
+		out.write(body);
+		out.close();
+	}
+
+	/**
+	 * A callback that can be waited on.
+	 */
+	static class TestCallback<T> implements Callback<T> {
+		private final AsyncFuture<T> future = new AsyncFuture<T>(null);
+
+		@Override
+		public void completed(T result) {
+			future.completed(result);
+		}
+
+		@Override
+		public void failed(Exception ex) {
+			future.failed(ex);
+		}
+
+		@Override
+		public void cancelled() {
+			future.cancel(true);
+		}
+
+		T get() throws InterruptedException, ExecutionException, TimeoutException {
+			return future.get(10, TimeUnit.SECONDS);
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2015 CapTech Ventures, Inc.
+ * (http://www.captechconsulting.com) All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.monarchapis.client.rest;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class RestResponseTest {
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+	private static final String TEXT = "caf\u00e9 \u00fcber";
+
+	private HttpServer server;
+
+	private RestClientFactory clientFactory;
+
+	@Before
+	public void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/json", new Responder("application/json", ("{\"name\":\"" + TEXT + " \u20ac\"}")
+				.getBytes(UTF_8)));
+		server.createContext("/text", new Responder("text/plain", TEXT.getBytes(ISO_8859_1)));
+		server.createContext("/text-utf8", new Responder("text/plain; charset=UTF-8", TEXT.getBytes(UTF_8)));
+		server.start();
+
+		clientFactory = new RestClientFactory();
+	}
+
+	@After
+	public void tearDown() {
+		clientFactory.close();
+		server.stop(0);
+	}
+
+	@Test
+	public void testUndeclaredCharsetDefaultsToUtf8() {
+		RestResponse response = clientFactory.create("GET", url("/json")).send();
+
+		assertEquals(UTF_8, response.getCharset());
+		assertEquals("{\"name\":\"" + TEXT + " \u20ac\"}", response.getResponseBody());
+	}
+
+	@Test
+	public void testUndeclaredTextCharsetDefaultsToIso88591() {
+		RestResponse response = clientFactory.create("GET", url("/text")).send();
+
+		assertEquals(ISO_8859_1, response.getCharset());
+		assertEquals(TEXT, response.getResponseBody());
+	}
+
+	@Test
+	public void testDeclaredCharsetIsUsed() {
+		RestResponse response = clientFactory.create("GET", url("/text-utf8")).send();
+
+		assertEquals(UTF_8, response.getCharset());
+		assertEquals(TEXT, response.getResponseBody());
+	}
+
+	@Test
+	public void testBodyIsDecodedOnceOnDemand() {
+		byte[] bytes = TEXT.getBytes(ISO_8859_1);
+		RestResponse response = new RestResponse(200, bytes, ISO_8859_1, new HttpHeader[0]);
+
+		// The raw bytes are available without decoding
+		assertArrayEquals(bytes, response.getResponseBytes());
+		assertNotSame(bytes, response.getResponseBytes());
+		assertEquals(bytes.length, response.getContentLength());
+
+		String body = response.getResponseBody();
+
+		assertEquals(TEXT, body);
+		assertSame(body, response.getResponseBody());
+	}
+
+	@Test
+	public void testBufferAndStreamViewTheRawBytes() throws IOException {
+		byte[] bytes = TEXT.getBytes(UTF_8);
+		RestResponse response = new RestResponse(200, bytes, UTF_8, new HttpHeader[0]);
+
+		ByteBuffer buffer = response.getResponseBuffer();
+		byte[] viewed = new byte[buffer.remaining()];
+		buffer.get(viewed);
+
+		assertTrue(buffer.isReadOnly());
+		assertArrayEquals(bytes, viewed);
+		assertArrayEquals(bytes, IOUtils.toByteArray(response.getResponseStream()));
+	}
+
+	@Test
+	public void testStringBodyIsEncodedAsUtf8() {
+		RestResponse response = new RestResponse(200, TEXT, new HttpHeader[0]);
+
+		assertEquals(UTF_8, response.getCharset());
+		assertSame(TEXT, response.getResponseBody());
+		assertArrayEquals(TEXT.getBytes(UTF_8), response.getResponseBytes());
+	}
+
+	private String url(String path) {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+	}
+
+	private static class Responder implements HttpHandler {
+		private final String contentType;
+
+		private final byte[] body;
+
+		Responder(String contentType, byte[] body) {
+			this.contentType = contentType;
+			this.body = body;
+		}
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			IOUtils.toByteArray(exchange.getRequestBody());
+			exchange.getResponseHeaders().set("Content-Type", contentType);
+			exchange.sendResponseHeaders(200, body.length);
+			OutputStream out = exchange.getResponseBody();
+			out.write(body);
+			out.close();
+		}
+	}
+}